@@ -51,6 +51,8 @@ dependencies {
     implementation ("androidx.cardview:cardview:1.0.0")
     implementation ("androidx.swiperefreshlayout:swiperefreshlayout:1.1.0")
     implementation ("com.github.PhilJay:MPAndroidChart:v3.1.0")
+    implementation ("androidx.work:work-runtime:2.9.0")
+    implementation ("androidx.recyclerview:recyclerview:1.3.2")
 
 
     // Firebase
@@ -7,6 +7,7 @@ import android.view.Menu;
 import android.view.MenuItem;
 
 import com.example.myapplication.controller.SessionManager;
+import com.example.myapplication.repository.SyncEngine;
 import com.example.myapplication.view.WelcomeActivity;
 import com.google.android.material.snackbar.Snackbar;
 import com.google.android.material.navigation.NavigationView;
@@ -55,6 +56,9 @@ public class MainActivity extends AppCompatActivity {
         NavController navController = Navigation.findNavController(this, R.id.nav_host_fragment_content_main);
         NavigationUI.setupActionBarWithNavController(this, navController, mAppBarConfiguration);
         NavigationUI.setupWithNavController(navigationView, navController);
+
+        // Screens read the local database; bring it up to date in the background
+        SyncEngine.getInstance(this).syncAll(sessionManager);
     }
 
     @Override
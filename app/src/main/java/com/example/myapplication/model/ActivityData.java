@@ -1,5 +1,7 @@
 package com.example.myapplication.model;
 
+import com.google.firebase.firestore.ServerTimestamp;
+
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
@@ -11,6 +13,8 @@ public class ActivityData {
     private String activityLevel;
     private long activeTime; // in minutes
     private long date; // timestamp
+    @ServerTimestamp
+    private Date updatedAt; // Set by the server on every write; drives incremental sync
     
     // Required empty constructor for Firestore
     public ActivityData() {}
@@ -30,6 +34,7 @@ public class ActivityData {
     public String getActivityLevel() { return activityLevel; }
     public long getActiveTime() { return activeTime; }
     public long getDate() { return date; }
+    public Date getUpdatedAt() { return updatedAt; }
     
     // Setters for Firestore
     public void setId(String id) { this.id = id; }
@@ -38,6 +43,7 @@ public class ActivityData {
     public void setActivityLevel(String activityLevel) { this.activityLevel = activityLevel; }
     public void setActiveTime(long activeTime) { this.activeTime = activeTime; }
     public void setDate(long date) { this.date = date; }
+    public void setUpdatedAt(Date updatedAt) { this.updatedAt = updatedAt; }
     
     // Helper method to format date - exclude from Firestore
     @com.google.firebase.firestore.Exclude
@@ -0,0 +1,66 @@
+package com.example.myapplication.model;
+
+import com.google.firebase.firestore.ServerTimestamp;
+
+import java.util.Date;
+
+// Step and active-time totals of one day, ISO week or month, kept up to date as sessions are
+// saved. Each contributor (a device, or the one-time build from older sessions) has its own
+// share of a bucket, stored as
+// users/{safeUserId}/activity_rollups/{period}_{yyyy-MM-dd of the start}_{contributor};
+// a bucket's total is the sum of its shares.
+public class ActivityRollup {
+    public static final String PERIOD_DAY = "day";
+    public static final String PERIOD_WEEK = "week";
+    public static final String PERIOD_MONTH = "month";
+
+    private String id;
+    private String userId;
+    private String period;
+    private long periodStart; // Local start of the day, Monday of the week or 1st of the month
+    private String contributor; // Null on a bucket's total
+    private long stepCount;
+    private long activeTime; // in minutes
+    private int sessionCount;
+    @ServerTimestamp
+    private Date updatedAt; // Set by the server on every write; drives incremental sync
+
+    // Required empty constructor for Firestore
+    public ActivityRollup() {}
+
+    public ActivityRollup(String id, String userId, String period, long periodStart, String contributor) {
+        this.id = id;
+        this.userId = userId;
+        this.period = period;
+        this.periodStart = periodStart;
+        this.contributor = contributor;
+    }
+
+    // Getters and setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getUserId() { return userId; }
+    public void setUserId(String userId) { this.userId = userId; }
+
+    public String getPeriod() { return period; }
+    public void setPeriod(String period) { this.period = period; }
+
+    public long getPeriodStart() { return periodStart; }
+    public void setPeriodStart(long periodStart) { this.periodStart = periodStart; }
+
+    public String getContributor() { return contributor; }
+    public void setContributor(String contributor) { this.contributor = contributor; }
+
+    public long getStepCount() { return stepCount; }
+    public void setStepCount(long stepCount) { this.stepCount = stepCount; }
+
+    public long getActiveTime() { return activeTime; }
+    public void setActiveTime(long activeTime) { this.activeTime = activeTime; }
+
+    public int getSessionCount() { return sessionCount; }
+    public void setSessionCount(int sessionCount) { this.sessionCount = sessionCount; }
+
+    public Date getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Date updatedAt) { this.updatedAt = updatedAt; }
+}
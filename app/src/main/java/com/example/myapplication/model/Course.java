@@ -1,4 +1,6 @@
 package com.example.myapplication.model;
+import com.google.firebase.firestore.ServerTimestamp;
+
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
@@ -18,6 +20,9 @@ public class Course {
 
     private boolean completed;
 
+    @ServerTimestamp
+    private Date updatedAt; // Rempli par le serveur à chaque écriture (sync incrémentale)
+
     // Constructeur vide requis par Firestore
     public Course() {}
 
@@ -59,6 +64,7 @@ public class Course {
     public float getAvgSpeed() { return avgSpeed; }
     public float getMaxSpeed() { return maxSpeed; }
     public boolean isCompleted() { return completed; }
+    public Date getUpdatedAt() { return updatedAt; }
 
     /* ================= SETTERS FOR FIRESTORE ================= */
     public void setId(String id) { this.id = id; }
@@ -70,6 +76,7 @@ public class Course {
     public void setAvgSpeed(float avgSpeed) { this.avgSpeed = avgSpeed; }
     public void setMaxSpeed(float maxSpeed) { this.maxSpeed = maxSpeed; }
     public void setCompleted(boolean completed) { this.completed = completed; }
+    public void setUpdatedAt(Date updatedAt) { this.updatedAt = updatedAt; }
 
     public static String formatTimestamp(long timestamp) {
         Date date = new Date(timestamp);
@@ -0,0 +1,108 @@
+package com.example.myapplication.model;
+
+import com.google.firebase.firestore.Blob;
+import com.google.firebase.firestore.Exclude;
+import com.google.firebase.firestore.ServerTimestamp;
+
+import java.util.Date;
+
+// One day of steps per minute, stored as users/{safeUserId}/step_series/{yyyy-MM-dd}.
+// minuteSteps packs MINUTES_PER_DAY big-endian shorts (slot = minute of the local day),
+// so a whole day is one small document instead of one per step event.
+public class DailyStepSeries {
+    public static final int MINUTES_PER_DAY = 24 * 60;
+
+    private String id;
+    private String userId;
+    private long dayStart; // Local midnight, timestamp
+    private int totalSteps;
+    private Blob minuteSteps;
+    @ServerTimestamp
+    private Date updatedAt; // Set by the server on every write; drives incremental sync
+
+    // Decoded minuteSteps, filled on first use
+    private short[] minutes;
+
+    // Required empty constructor for Firestore
+    public DailyStepSeries() {}
+
+    public DailyStepSeries(String id, String userId, long dayStart) {
+        this.id = id;
+        this.userId = userId;
+        this.dayStart = dayStart;
+        this.minutes = new short[MINUTES_PER_DAY];
+    }
+
+    // Getters and setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getUserId() { return userId; }
+    public void setUserId(String userId) { this.userId = userId; }
+
+    public long getDayStart() { return dayStart; }
+    public void setDayStart(long dayStart) { this.dayStart = dayStart; }
+
+    public int getTotalSteps() { return totalSteps; }
+    public void setTotalSteps(int totalSteps) { this.totalSteps = totalSteps; }
+
+    public Date getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Date updatedAt) { this.updatedAt = updatedAt; }
+
+    public Blob getMinuteSteps() {
+        if (minutes == null) {
+            return minuteSteps;
+        }
+        byte[] bytes = new byte[MINUTES_PER_DAY * 2];
+        for (int i = 0; i < MINUTES_PER_DAY; i++) {
+            bytes[2 * i] = (byte) (minutes[i] >> 8);
+            bytes[2 * i + 1] = (byte) minutes[i];
+        }
+        return Blob.fromBytes(bytes);
+    }
+
+    public void setMinuteSteps(Blob minuteSteps) {
+        this.minuteSteps = minuteSteps;
+        this.minutes = null;
+    }
+
+    // Adds steps to a minute of the day (0..MINUTES_PER_DAY-1)
+    @Exclude
+    public void addSteps(int minute, int steps) {
+        short[] slots = getMinutes();
+        slots[minute] = (short) Math.min(Short.MAX_VALUE, slots[minute] + steps);
+        totalSteps += steps;
+    }
+
+    // Steps in [fromMinute, toMinute) of the day
+    @Exclude
+    public int getSteps(int fromMinute, int toMinute) {
+        short[] slots = getMinutes();
+        int sum = 0;
+        for (int i = Math.max(0, fromMinute); i < Math.min(MINUTES_PER_DAY, toMinute); i++) {
+            sum += slots[i];
+        }
+        return sum;
+    }
+
+    @Exclude
+    public int[] getHourlySteps() {
+        int[] hours = new int[24];
+        for (int hour = 0; hour < 24; hour++) {
+            hours[hour] = getSteps(hour * 60, (hour + 1) * 60);
+        }
+        return hours;
+    }
+
+    private short[] getMinutes() {
+        if (minutes == null) {
+            minutes = new short[MINUTES_PER_DAY];
+            byte[] bytes = minuteSteps != null ? minuteSteps.toBytes() : new byte[0];
+            // A short or missing blob leaves the remaining minutes at zero
+            for (int i = 0; i < MINUTES_PER_DAY && 2 * i + 1 < bytes.length; i++) {
+                minutes[i] = (short) (((bytes[2 * i] & 0xFF) << 8) | (bytes[2 * i + 1] & 0xFF));
+            }
+        }
+        return minutes;
+    }
+}
@@ -4,16 +4,20 @@ package com.example.myapplication.model;
 import java.util.Date;
 
 public class LightData {
+    public static final float DARK_THRESHOLD_LUX = 10.0f;
+
     private Date timestamp;
     private float lightLevel; // in lux
     private boolean isDark; // < 10 lux
+    private float durationSeconds; // How long the level held, from timestamp on
 
     public LightData() {}
 
-    public LightData(Date timestamp, float lightLevel) {
+    public LightData(Date timestamp, float lightLevel, float durationSeconds) {
         this.timestamp = timestamp;
         this.lightLevel = lightLevel;
-        this.isDark = lightLevel < 10.0f; // 10 lux threshold for darkness
+        this.isDark = lightLevel < DARK_THRESHOLD_LUX;
+        this.durationSeconds = durationSeconds;
     }
 
     // Getters and setters
@@ -25,4 +29,7 @@ public class LightData {
 
     public boolean isDark() { return isDark; }
     public void setDark(boolean dark) { isDark = dark; }
+
+    public float getDurationSeconds() { return durationSeconds; }
+    public void setDurationSeconds(float durationSeconds) { this.durationSeconds = durationSeconds; }
 }
\ No newline at end of file
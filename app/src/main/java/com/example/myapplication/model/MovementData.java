@@ -4,22 +4,27 @@ package com.example.myapplication.model;
 import java.util.Date;
 
 public class MovementData {
+    // Applies to the dynamic acceleration; raw magnitude includes ~9.8 m/s² of gravity
+    public static final float SIGNIFICANT_MOVEMENT_THRESHOLD = 1.2f;
+
     private Date timestamp;
     private float x;
     private float y;
     private float z;
     private float magnitude;
+    private float dynamicMagnitude; // Magnitude with gravity removed, m/s²
     private boolean isSignificantMovement;
 
     public MovementData() {}
 
-    public MovementData(Date timestamp, float x, float y, float z) {
+    public MovementData(Date timestamp, float x, float y, float z, float dynamicMagnitude) {
         this.timestamp = timestamp;
         this.x = x;
         this.y = y;
         this.z = z;
         this.magnitude = (float) Math.sqrt(x*x + y*y + z*z);
-        this.isSignificantMovement = magnitude > 1.2f; // Threshold for significant movement
+        this.dynamicMagnitude = dynamicMagnitude;
+        this.isSignificantMovement = dynamicMagnitude > SIGNIFICANT_MOVEMENT_THRESHOLD;
     }
 
     // Getters and setters
@@ -38,6 +43,9 @@ public class MovementData {
     public float getMagnitude() { return magnitude; }
     public void setMagnitude(float magnitude) { this.magnitude = magnitude; }
 
+    public float getDynamicMagnitude() { return dynamicMagnitude; }
+    public void setDynamicMagnitude(float dynamicMagnitude) { this.dynamicMagnitude = dynamicMagnitude; }
+
     public boolean isSignificantMovement() { return isSignificantMovement; }
     public void setSignificantMovement(boolean significantMovement) { isSignificantMovement = significantMovement; }
 }
@@ -1,5 +1,8 @@
 package com.example.myapplication.model;
 
+import com.google.firebase.firestore.Exclude;
+import com.google.firebase.firestore.ServerTimestamp;
+
 import java.util.Date;
 
 public class SleepRecord {
@@ -11,6 +14,9 @@ public class SleepRecord {
     private int sleepQuality; // 1-5 scale
     private String notes;
     private Date recordDate;
+    @ServerTimestamp
+    private Date updatedAt; // Set by the server on every write; drives incremental sync
+    private boolean pendingSync; // Local only: an edit the server has not acknowledged yet
 
     public SleepRecord() {
         // Required for Firestore
@@ -59,4 +65,12 @@ public class SleepRecord {
 
     public Date getRecordDate() { return recordDate; }
     public void setRecordDate(Date recordDate) { this.recordDate = recordDate; }
+
+    public Date getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Date updatedAt) { this.updatedAt = updatedAt; }
+
+    @Exclude
+    public boolean isPendingSync() { return pendingSync; }
+    @Exclude
+    public void setPendingSync(boolean pendingSync) { this.pendingSync = pendingSync; }
 }
\ No newline at end of file
@@ -0,0 +1,61 @@
+package com.example.myapplication.model;
+
+import com.google.firebase.firestore.Blob;
+
+import java.util.Date;
+
+// One numbered slice of a sleep sensor session's raw samples,
+// stored under sleep_sensor_sessions/{sessionId}/chunks.
+// The series are SensorSeriesCodec blobs; decode them with SensorSeriesCodec.decodeMovement/decodeLight
+public class SleepSensorChunk {
+    private String sessionId;
+    private String userId;
+    private int chunkIndex;
+    private Date startTime;
+    private Date endTime;
+    private int seriesFormat;
+    private int movementCount;
+    private int lightCount;
+    private Blob movementSeries;
+    private Blob lightSeries;
+
+    // Required empty constructor for Firestore
+    public SleepSensorChunk() {}
+
+    public SleepSensorChunk(String sessionId, String userId, int chunkIndex) {
+        this.sessionId = sessionId;
+        this.userId = userId;
+        this.chunkIndex = chunkIndex;
+    }
+
+    // Getters and setters
+    public String getSessionId() { return sessionId; }
+    public void setSessionId(String sessionId) { this.sessionId = sessionId; }
+
+    public String getUserId() { return userId; }
+    public void setUserId(String userId) { this.userId = userId; }
+
+    public int getChunkIndex() { return chunkIndex; }
+    public void setChunkIndex(int chunkIndex) { this.chunkIndex = chunkIndex; }
+
+    public Date getStartTime() { return startTime; }
+    public void setStartTime(Date startTime) { this.startTime = startTime; }
+
+    public Date getEndTime() { return endTime; }
+    public void setEndTime(Date endTime) { this.endTime = endTime; }
+
+    public int getSeriesFormat() { return seriesFormat; }
+    public void setSeriesFormat(int seriesFormat) { this.seriesFormat = seriesFormat; }
+
+    public int getMovementCount() { return movementCount; }
+    public void setMovementCount(int movementCount) { this.movementCount = movementCount; }
+
+    public int getLightCount() { return lightCount; }
+    public void setLightCount(int lightCount) { this.lightCount = lightCount; }
+
+    public Blob getMovementSeries() { return movementSeries; }
+    public void setMovementSeries(Blob movementSeries) { this.movementSeries = movementSeries; }
+
+    public Blob getLightSeries() { return lightSeries; }
+    public void setLightSeries(Blob lightSeries) { this.lightSeries = lightSeries; }
+}
@@ -1,5 +1,7 @@
 package com.example.myapplication.model;
 
+import com.google.firebase.firestore.ServerTimestamp;
+
 import java.util.Date;
 import java.util.List;
 
@@ -8,13 +10,37 @@ public class SleepSensorData {
     private String userId;
     private Date sessionStartTime;
     private Date sessionEndTime;
-    private List<MovementData> movementData;
-    private List<LightData> lightData;
+    private int chunkCount; // Raw samples live in the chunks subcollection
+    @ServerTimestamp
+    private Date updatedAt; // Set by the server on every write; drives incremental sync
     private int estimatedSleepQuality;
     private float averageMovementPerHour;
+    private float movementVariance;
     private float averageLightLevel;
     private boolean wasDarkEnvironment;
 
+    // Actigraphy: per-epoch activity counts and the sleep/wake scoring derived from them
+    private int epochLengthSeconds;
+    private Date epochStartTime;
+    private List<Integer> epochActivityCounts;
+    private Date sleepOnsetTime;
+    private int totalSleepMinutes;
+    private int wakeAfterSleepOnsetMinutes;
+    private float sleepEfficiency; // Percent of recorded time asleep
+    private int awakenings;
+
+    // Sensor delivery stats: with hardware batching each batch is one CPU wake-up
+    private boolean batchingEnabled;
+    private int batchCount;
+    private int maxBatchSize;
+    private float averageBatchSize;
+
+    // Adaptive accelerometer sampling: the interval in effect from each change time on
+    private long activeSamplingIntervalMs;
+    private List<Date> samplingChangeTimes;
+    private List<Long> samplingIntervalsMs;
+    private int stillSamplingMinutes;
+
     // Constructors
     public SleepSensorData() {}
 
@@ -36,11 +62,8 @@ public class SleepSensorData {
     public Date getSessionEndTime() { return sessionEndTime; }
     public void setSessionEndTime(Date sessionEndTime) { this.sessionEndTime = sessionEndTime; }
 
-    public List<MovementData> getMovementData() { return movementData; }
-    public void setMovementData(List<MovementData> movementData) { this.movementData = movementData; }
-
-    public List<LightData> getLightData() { return lightData; }
-    public void setLightData(List<LightData> lightData) { this.lightData = lightData; }
+    public int getChunkCount() { return chunkCount; }
+    public void setChunkCount(int chunkCount) { this.chunkCount = chunkCount; }
 
     public int getEstimatedSleepQuality() { return estimatedSleepQuality; }
     public void setEstimatedSleepQuality(int estimatedSleepQuality) { this.estimatedSleepQuality = estimatedSleepQuality; }
@@ -48,9 +71,63 @@ public class SleepSensorData {
     public float getAverageMovementPerHour() { return averageMovementPerHour; }
     public void setAverageMovementPerHour(float averageMovementPerHour) { this.averageMovementPerHour = averageMovementPerHour; }
 
+    public float getMovementVariance() { return movementVariance; }
+    public void setMovementVariance(float movementVariance) { this.movementVariance = movementVariance; }
+
     public float getAverageLightLevel() { return averageLightLevel; }
     public void setAverageLightLevel(float averageLightLevel) { this.averageLightLevel = averageLightLevel; }
 
     public boolean isWasDarkEnvironment() { return wasDarkEnvironment; }
     public void setWasDarkEnvironment(boolean wasDarkEnvironment) { this.wasDarkEnvironment = wasDarkEnvironment; }
+
+    public int getEpochLengthSeconds() { return epochLengthSeconds; }
+    public void setEpochLengthSeconds(int epochLengthSeconds) { this.epochLengthSeconds = epochLengthSeconds; }
+
+    public Date getEpochStartTime() { return epochStartTime; }
+    public void setEpochStartTime(Date epochStartTime) { this.epochStartTime = epochStartTime; }
+
+    public List<Integer> getEpochActivityCounts() { return epochActivityCounts; }
+    public void setEpochActivityCounts(List<Integer> epochActivityCounts) { this.epochActivityCounts = epochActivityCounts; }
+
+    public Date getSleepOnsetTime() { return sleepOnsetTime; }
+    public void setSleepOnsetTime(Date sleepOnsetTime) { this.sleepOnsetTime = sleepOnsetTime; }
+
+    public int getTotalSleepMinutes() { return totalSleepMinutes; }
+    public void setTotalSleepMinutes(int totalSleepMinutes) { this.totalSleepMinutes = totalSleepMinutes; }
+
+    public int getWakeAfterSleepOnsetMinutes() { return wakeAfterSleepOnsetMinutes; }
+    public void setWakeAfterSleepOnsetMinutes(int wakeAfterSleepOnsetMinutes) { this.wakeAfterSleepOnsetMinutes = wakeAfterSleepOnsetMinutes; }
+
+    public float getSleepEfficiency() { return sleepEfficiency; }
+    public void setSleepEfficiency(float sleepEfficiency) { this.sleepEfficiency = sleepEfficiency; }
+
+    public int getAwakenings() { return awakenings; }
+    public void setAwakenings(int awakenings) { this.awakenings = awakenings; }
+
+    public boolean isBatchingEnabled() { return batchingEnabled; }
+    public void setBatchingEnabled(boolean batchingEnabled) { this.batchingEnabled = batchingEnabled; }
+
+    public int getBatchCount() { return batchCount; }
+    public void setBatchCount(int batchCount) { this.batchCount = batchCount; }
+
+    public int getMaxBatchSize() { return maxBatchSize; }
+    public void setMaxBatchSize(int maxBatchSize) { this.maxBatchSize = maxBatchSize; }
+
+    public float getAverageBatchSize() { return averageBatchSize; }
+    public void setAverageBatchSize(float averageBatchSize) { this.averageBatchSize = averageBatchSize; }
+
+    public long getActiveSamplingIntervalMs() { return activeSamplingIntervalMs; }
+    public void setActiveSamplingIntervalMs(long activeSamplingIntervalMs) { this.activeSamplingIntervalMs = activeSamplingIntervalMs; }
+
+    public List<Date> getSamplingChangeTimes() { return samplingChangeTimes; }
+    public void setSamplingChangeTimes(List<Date> samplingChangeTimes) { this.samplingChangeTimes = samplingChangeTimes; }
+
+    public List<Long> getSamplingIntervalsMs() { return samplingIntervalsMs; }
+    public void setSamplingIntervalsMs(List<Long> samplingIntervalsMs) { this.samplingIntervalsMs = samplingIntervalsMs; }
+
+    public Date getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Date updatedAt) { this.updatedAt = updatedAt; }
+
+    public int getStillSamplingMinutes() { return stillSamplingMinutes; }
+    public void setStillSamplingMinutes(int stillSamplingMinutes) { this.stillSamplingMinutes = stillSamplingMinutes; }
 }
\ No newline at end of file
@@ -8,6 +8,8 @@ import android.os.Build;
 import android.util.Log;
 
 import com.example.myapplication.service.AutoStopSleepService;
+import com.example.myapplication.service.SleepSensorService;
+import com.example.myapplication.service.StepCounterService;
 
 public class BootReceiver extends BroadcastReceiver {
     private static final String TAG = "BootReceiver";
@@ -31,11 +33,8 @@ public class BootReceiver extends BroadcastReceiver {
              * Start StepCounterService
              * ----------------------------- */
             try {
-                Intent stepServiceIntent = new Intent();
-                stepServiceIntent.setClassName(
-                        context.getPackageName(),
-                        "com.example.myapplication.service.StepCounterService"
-                );
+                // Resumes a counting session; the service stops itself if none was running
+                Intent stepServiceIntent = new Intent(context, StepCounterService.class);
 
                 if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
                     context.startForegroundService(stepServiceIntent);
@@ -71,6 +70,18 @@ public class BootReceiver extends BroadcastReceiver {
                     }
 
                     Log.d(TAG, "AutoStopSleepService started after boot");
+
+                    // Recover the interrupted session from its local log
+                    Intent sleepIntent = new Intent(context, SleepSensorService.class);
+                    sleepIntent.putExtra("action", "resume");
+
+                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                        context.startForegroundService(sleepIntent);
+                    } else {
+                        context.startService(sleepIntent);
+                    }
+
+                    Log.d(TAG, "SleepSensorService resumed after boot");
                 } else {
                     Log.d(TAG, "Sleep monitoring was not active before shutdown");
                 }
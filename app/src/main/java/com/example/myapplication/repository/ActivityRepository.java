@@ -0,0 +1,76 @@
+package com.example.myapplication.repository;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.lifecycle.LiveData;
+
+import com.example.myapplication.model.ActivityData;
+import com.google.firebase.firestore.CollectionReference;
+
+import java.util.Date;
+import java.util.List;
+
+// Step activities of users/{safeUserId}/activities, read from the local database
+public class ActivityRepository extends SyncedRepository<ActivityData> {
+    private static final String ORDER_NEWEST_FIRST = "date DESC";
+
+    public ActivityRepository(Context context) {
+        super(context, LocalDatabase.TABLE_ACTIVITIES, ActivityData.class);
+    }
+
+    public LiveData<List<ActivityData>> getRecentActivities(String safeUserId, int limit) {
+        return observeLocal(safeUserId, ORDER_NEWEST_FIRST, limit);
+    }
+
+    // Also adds the session to its day, week and month rollups; onSynced hears a rejection
+    public void addActivity(ActivityData activity, Runnable onSaved, SyncEngine.Callback onSynced) {
+        saveLocal(activity, activity.getUserId(), onSaved, onSynced);
+    }
+
+    // Activities are only ever added, so every one stored goes into the rollups, atomically
+    @Override
+    void onStoredLocally(SQLiteDatabase db, ActivityData activity, String owner) {
+        new ActivityRollupRepository(context).addSession(db, activity, owner);
+    }
+
+    @Override
+    CollectionReference remoteCollection(String owner) {
+        return firestore.collection("users").document(owner).collection("activities");
+    }
+
+    @Override
+    String getId(ActivityData item) { return item.getId(); }
+
+    @Override
+    void setId(ActivityData item, String id) { item.setId(id); }
+
+    @Override
+    Date getUpdatedAt(ActivityData item) { return item.getUpdatedAt(); }
+
+    @Override
+    void setUpdatedAt(ActivityData item, Date updatedAt) { item.setUpdatedAt(updatedAt); }
+
+    @Override
+    void putValues(ActivityData item, ContentValues values) {
+        values.put("step_count", item.getStepCount());
+        values.put("activity_level", item.getActivityLevel());
+        values.put("active_time", item.getActiveTime());
+        values.put("date", item.getDate());
+    }
+
+    @Override
+    ActivityData fromCursor(Cursor cursor) {
+        ActivityData activity = new ActivityData();
+        activity.setId(getString(cursor, LocalDatabase.COL_ID));
+        activity.setUserId(getString(cursor, LocalDatabase.COL_OWNER));
+        activity.setUpdatedAt(getDate(cursor, LocalDatabase.COL_UPDATED_AT));
+        activity.setStepCount(getInt(cursor, "step_count"));
+        activity.setActivityLevel(getString(cursor, "activity_level"));
+        activity.setActiveTime(getLong(cursor, "active_time"));
+        activity.setDate(getLong(cursor, "date"));
+        return activity;
+    }
+}
@@ -0,0 +1,352 @@
+package com.example.myapplication.repository;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+
+import com.example.myapplication.model.ActivityData;
+import com.example.myapplication.model.ActivityRollup;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+// Day, ISO week and month totals of users/{safeUserId}/activities, in activity_rollups.
+// Each saved session adds itself to its three buckets, so a chart reads a few rows per bar
+// whatever the number of sessions behind it. Every device keeps its share of a bucket in a
+// document of its own holding absolute totals: devices never overwrite each other, and a
+// push retried after a lost acknowledgement writes the same content again. The chart sums
+// the shares. Sessions saved before the rollups existed go into a "history" share, built
+// once by the one device that claims the build on the server.
+public class ActivityRollupRepository extends SyncedRepository<ActivityRollup> {
+    private static final String TAG = "ActivityRollupRepo";
+    private static final String[] PERIODS = {
+            ActivityRollup.PERIOD_DAY, ActivityRollup.PERIOD_WEEK, ActivityRollup.PERIOD_MONTH};
+    static final String HISTORY_CONTRIBUTOR = "history";
+
+    // users/{safeUserId}/sync_markers/activity_rollups, created by the device that builds the history
+    private static final String MARKERS_COLLECTION = "sync_markers";
+    private static final String BUILD_MARKER = "activity_rollups";
+    private static final String FIELD_BUILT_BY = "builtBy";
+    private static final String FIELD_ACTIVITIES_HIGH_WATER_MARK = "activitiesHighWaterMark";
+    private static final String FIELD_CLAIMED_AT = "claimedAt";
+
+    private static final String PREFS_NAME = "activity_rollups";
+    private static final String KEY_DEVICE_ID = "device_id";
+
+    public ActivityRollupRepository(Context context) {
+        super(context, LocalDatabase.TABLE_ACTIVITY_ROLLUPS, ActivityRollup.class);
+    }
+
+    // Totals of one period's buckets starting at or after fromStart, oldest first; empty buckets have no row
+    public LiveData<List<ActivityRollup>> getRollups(String safeUserId, String period, long fromStart) {
+        return new LocalQueryLiveData<>(database, LocalDatabase.TABLE_ACTIVITY_ROLLUPS,
+                db -> queryTotals(db, safeUserId, period, fromStart));
+    }
+
+    private List<ActivityRollup> queryTotals(SQLiteDatabase db, String owner, String period, long fromStart) {
+        List<ActivityRollup> totals = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery("SELECT period_start, SUM(step_count), SUM(active_time), SUM(session_count)"
+                        + " FROM " + LocalDatabase.TABLE_ACTIVITY_ROLLUPS + " WHERE " + LocalDatabase.COL_OWNER
+                        + " = ? AND " + LocalDatabase.COL_DELETED + " = 0 AND period = ? AND period_start >= ?"
+                        + " GROUP BY period_start ORDER BY period_start ASC",
+                new String[]{owner, period, String.valueOf(fromStart)})) {
+            while (cursor.moveToNext()) {
+                long start = cursor.getLong(0);
+                ActivityRollup total = new ActivityRollup(getRollupId(period, start), owner, period, start, null);
+                total.setStepCount(cursor.getLong(1));
+                total.setActiveTime(cursor.getLong(2));
+                total.setSessionCount(cursor.getInt(3));
+                totals.add(total);
+            }
+        }
+        return totals;
+    }
+
+    // Called in the transaction that stores a new session. Once the history is built the session
+    // goes into this device's share; before that it is listed for the build to sort out.
+    void addSession(SQLiteDatabase db, ActivityData activity, String owner) {
+        boolean built = isBuilt(owner);
+        if (built) {
+            addToShare(db, owner, getDeviceId(), activity);
+        } else {
+            ContentValues values = new ContentValues();
+            values.put(LocalDatabase.COL_ID, activity.getId());
+            values.put(LocalDatabase.COL_OWNER, owner);
+            db.insertWithOnConflict(LocalDatabase.TABLE_UNROLLED_ACTIVITIES, null, values,
+                    SQLiteDatabase.CONFLICT_IGNORE);
+        }
+        // Queued behind the caller's transaction
+        database.getExecutor().execute(() -> {
+            if (built) {
+                database.notifyTableChanged(LocalDatabase.TABLE_ACTIVITY_ROLLUPS);
+                SyncEngine.getInstance(context).syncAfterWrite(this, owner, null);
+            } else {
+                rebuildIfMissing(owner);
+            }
+        });
+    }
+
+    // Builds the history share once per user, after a full sync of the activities so the build
+    // sees every session the server has. Tried again the next time the screen opens or a
+    // session is saved until it succeeds.
+    public void rebuildIfMissing(String safeUserId) {
+        database.getExecutor().execute(() -> {
+            if (isBuilt(safeUserId)) {
+                return;
+            }
+            new ActivityRepository(context).sync(safeUserId, error -> {
+                if (error == null) {
+                    SyncEngine.getInstance(context).getExecutor().execute(() -> build(safeUserId));
+                }
+            });
+        });
+    }
+
+    // On the SyncEngine thread, so no pull of the activities runs in between. The server marker
+    // is checked and claimed in one transaction, so only one device ever builds the history;
+    // it records the activities high-water mark the build covers. Sessions updated on the
+    // server after it are counted by the device that saved them.
+    private void build(String safeUserId) {
+        if (isBuilt(safeUserId)) {
+            return;
+        }
+        ActivityRepository activities = new ActivityRepository(context);
+        String deviceId = getDeviceId();
+        Map<String, Object> marker;
+        try {
+            marker = claimBuild(safeUserId, deviceId,
+                    database.getHighWaterMark(activities.syncKey(safeUserId)));
+        } catch (Exception e) {
+            Log.w(TAG, "Could not claim the rollup build, trying again later", e);
+            return;
+        }
+        boolean builder = deviceId.equals(marker.get(FIELD_BUILT_BY));
+        Object mark = marker.get(FIELD_ACTIVITIES_HIGH_WATER_MARK);
+        long historyHighWaterMark = mark instanceof Number ? ((Number) mark).longValue() : 0;
+
+        SQLiteDatabase db = database.getWritableDatabase();
+        int historyShares = 0;
+        int counted = 0;
+        db.beginTransaction();
+        try {
+            if (builder) {
+                // Also after a crash between claim and build: the same sessions give the same shares
+                List<ActivityData> sessions = activities.queryLocal(db, safeUserId,
+                        LocalDatabase.COL_UPDATED_AT + " IS NULL OR " + LocalDatabase.COL_UPDATED_AT + " <= ?",
+                        new String[]{String.valueOf(historyHighWaterMark)}, null, 0);
+                historyShares = storeHistory(db, safeUserId, sessions);
+            }
+            for (ActivityData session : loadUnrolled(db, activities, safeUserId)) {
+                Date updatedAt = session.getUpdatedAt();
+                if (!isInHistory(updatedAt != null ? updatedAt.getTime() : null, historyHighWaterMark, builder)) {
+                    addToShare(db, safeUserId, deviceId, session);
+                    counted++;
+                }
+            }
+            db.delete(LocalDatabase.TABLE_UNROLLED_ACTIVITIES, LocalDatabase.COL_OWNER + " = ?",
+                    new String[]{safeUserId});
+            database.setSyncState(builtKey(safeUserId), 1);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        Log.d(TAG, "Rollups built for " + safeUserId + ": " + historyShares + " history shares, "
+                + counted + " sessions counted on this device");
+        if (historyShares > 0 || counted > 0) {
+            database.notifyTableChanged(LocalDatabase.TABLE_ACTIVITY_ROLLUPS);
+            SyncEngine.getInstance(context).syncAfterWrite(this, safeUserId, null);
+        }
+    }
+
+    // Returns the marker, created for this device when there was none
+    private Map<String, Object> claimBuild(String safeUserId, String deviceId, long highWaterMark) throws Exception {
+        DocumentReference markerRef = firestore.collection("users").document(safeUserId)
+                .collection(MARKERS_COLLECTION).document(BUILD_MARKER);
+        return await(firestore.runTransaction(transaction -> {
+            DocumentSnapshot snapshot = transaction.get(markerRef);
+            if (snapshot.exists() && snapshot.getData() != null) {
+                return snapshot.getData();
+            }
+            Map<String, Object> claim = new HashMap<>();
+            claim.put(FIELD_BUILT_BY, deviceId);
+            claim.put(FIELD_ACTIVITIES_HIGH_WATER_MARK, highWaterMark);
+            Map<String, Object> stored = new HashMap<>(claim);
+            stored.put(FIELD_CLAIMED_AT, FieldValue.serverTimestamp());
+            transaction.set(markerRef, stored);
+            return claim;
+        }));
+    }
+
+    // Whether the history share counts a session this device saved before the build was known:
+    // the builder had every session up to the recorded high-water mark, and its own sessions
+    // not back from the server yet
+    static boolean isInHistory(Long updatedAt, long historyHighWaterMark, boolean builder) {
+        return updatedAt == null ? builder : updatedAt <= historyHighWaterMark;
+    }
+
+    private int storeHistory(SQLiteDatabase db, String owner, List<ActivityData> sessions) {
+        Map<String, ActivityRollup> shares = new HashMap<>();
+        for (ActivityData session : sessions) {
+            for (String period : PERIODS) {
+                long start = getPeriodStart(period, session.getDate());
+                String id = getShareId(period, start, HISTORY_CONTRIBUTOR);
+                ActivityRollup share = shares.get(id);
+                if (share == null) {
+                    share = new ActivityRollup(id, owner, period, start, HISTORY_CONTRIBUTOR);
+                    shares.put(id, share);
+                }
+                add(share, session);
+            }
+        }
+        for (ActivityRollup share : shares.values()) {
+            storeDirty(db, share, owner);
+        }
+        return shares.size();
+    }
+
+    private List<ActivityData> loadUnrolled(SQLiteDatabase db, ActivityRepository activities, String owner) {
+        return activities.queryLocal(db, owner, LocalDatabase.COL_ID + " IN (SELECT " + LocalDatabase.COL_ID
+                        + " FROM " + LocalDatabase.TABLE_UNROLLED_ACTIVITIES + " WHERE " + LocalDatabase.COL_OWNER + " = ?)",
+                new String[]{owner}, null, 0);
+    }
+
+    private void addToShare(SQLiteDatabase db, String owner, String contributor, ActivityData activity) {
+        for (String period : PERIODS) {
+            long start = getPeriodStart(period, activity.getDate());
+            String id = getShareId(period, start, contributor);
+            List<ActivityRollup> rows = queryLocal(db, owner, LocalDatabase.COL_ID + " = ?", new String[]{id}, null, 1);
+            ActivityRollup share = rows.isEmpty()
+                    ? new ActivityRollup(id, owner, period, start, contributor) : rows.get(0);
+            add(share, activity);
+            storeDirty(db, share, owner);
+        }
+    }
+
+    private static void add(ActivityRollup rollup, ActivityData activity) {
+        rollup.setStepCount(rollup.getStepCount() + activity.getStepCount());
+        rollup.setActiveTime(rollup.getActiveTime() + activity.getActiveTime());
+        rollup.setSessionCount(rollup.getSessionCount() + 1);
+    }
+
+    private boolean isBuilt(String owner) {
+        return database.getSyncState(builtKey(owner)) != 0;
+    }
+
+    private static String builtKey(String owner) {
+        return LocalDatabase.TABLE_ACTIVITY_ROLLUPS + "/built/" + owner;
+    }
+
+    // Random id of this installation, naming its share of every bucket
+    private String getDeviceId() {
+        synchronized (ActivityRollupRepository.class) {
+            SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+            String deviceId = prefs.getString(KEY_DEVICE_ID, null);
+            if (deviceId == null) {
+                deviceId = UUID.randomUUID().toString();
+                prefs.edit().putString(KEY_DEVICE_ID, deviceId).commit();
+            }
+            return deviceId;
+        }
+    }
+
+    // Local start of the bucket holding time; weeks are ISO weeks, starting on Monday
+    public static long getPeriodStart(String period, long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setFirstDayOfWeek(Calendar.MONDAY);
+        calendar.setMinimalDaysInFirstWeek(4);
+        calendar.setTimeInMillis(time);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        if (ActivityRollup.PERIOD_WEEK.equals(period)) {
+            int daysSinceMonday = (calendar.get(Calendar.DAY_OF_WEEK) + 5) % 7;
+            calendar.add(Calendar.DAY_OF_MONTH, -daysSinceMonday);
+        } else if (ActivityRollup.PERIOD_MONTH.equals(period)) {
+            calendar.set(Calendar.DAY_OF_MONTH, 1);
+        }
+        return calendar.getTimeInMillis();
+    }
+
+    // Start of the bucket count periods after (or before, when negative) the one at start
+    public static long addPeriods(String period, long start, int count) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(start);
+        if (ActivityRollup.PERIOD_WEEK.equals(period)) {
+            calendar.add(Calendar.WEEK_OF_YEAR, count);
+        } else if (ActivityRollup.PERIOD_MONTH.equals(period)) {
+            calendar.add(Calendar.MONTH, count);
+        } else {
+            calendar.add(Calendar.DAY_OF_MONTH, count);
+        }
+        return calendar.getTimeInMillis();
+    }
+
+    // Fixed per bucket, e.g. day_2024-03-31
+    static String getRollupId(String period, long start) {
+        return period + "_" + new SimpleDateFormat("yyyy-MM-dd", Locale.US).format(new Date(start));
+    }
+
+    // One contributor's share of a bucket
+    static String getShareId(String period, long start, String contributor) {
+        return getRollupId(period, start) + "_" + contributor;
+    }
+
+    @Override
+    CollectionReference remoteCollection(String owner) {
+        return firestore.collection("users").document(owner).collection("activity_rollups");
+    }
+
+    @Override
+    String getId(ActivityRollup item) { return item.getId(); }
+
+    @Override
+    void setId(ActivityRollup item, String id) { item.setId(id); }
+
+    @Override
+    Date getUpdatedAt(ActivityRollup item) { return item.getUpdatedAt(); }
+
+    @Override
+    void setUpdatedAt(ActivityRollup item, Date updatedAt) { item.setUpdatedAt(updatedAt); }
+
+    @Override
+    void putValues(ActivityRollup item, ContentValues values) {
+        values.put("period", item.getPeriod());
+        values.put("period_start", item.getPeriodStart());
+        values.put("contributor", item.getContributor());
+        values.put("step_count", item.getStepCount());
+        values.put("active_time", item.getActiveTime());
+        values.put("session_count", item.getSessionCount());
+    }
+
+    @Override
+    ActivityRollup fromCursor(Cursor cursor) {
+        ActivityRollup rollup = new ActivityRollup();
+        rollup.setId(getString(cursor, LocalDatabase.COL_ID));
+        rollup.setUserId(getString(cursor, LocalDatabase.COL_OWNER));
+        rollup.setUpdatedAt(getDate(cursor, LocalDatabase.COL_UPDATED_AT));
+        rollup.setPeriod(getString(cursor, "period"));
+        rollup.setPeriodStart(getLong(cursor, "period_start"));
+        rollup.setContributor(getString(cursor, "contributor"));
+        rollup.setStepCount(getLong(cursor, "step_count"));
+        rollup.setActiveTime(getLong(cursor, "active_time"));
+        rollup.setSessionCount(getInt(cursor, "session_count"));
+        return rollup;
+    }
+}
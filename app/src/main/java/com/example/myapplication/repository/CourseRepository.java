@@ -0,0 +1,79 @@
+package com.example.myapplication.repository;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.lifecycle.LiveData;
+
+import com.example.myapplication.model.Course;
+import com.google.firebase.firestore.CollectionReference;
+
+import java.util.Date;
+import java.util.List;
+
+// Runs of users/{safeUserId}/courses, read from the local database
+public class CourseRepository extends SyncedRepository<Course> {
+    private static final String ORDER_OLDEST_FIRST = "start_time ASC";
+
+    public CourseRepository(Context context) {
+        super(context, LocalDatabase.TABLE_COURSES, Course.class);
+    }
+
+    public LiveData<List<Course>> getCourses(String safeUserId) {
+        return observeLocal(safeUserId, ORDER_OLDEST_FIRST, 0);
+    }
+
+    // The id is assigned locally, so the document is written once with it already set
+    public void addCourse(Course course, String safeUserId, Runnable onSaved, SyncEngine.Callback onSynced) {
+        if (course.getId() == null) {
+            course.setId(newId(safeUserId));
+        }
+        saveLocal(course, safeUserId, onSaved, onSynced);
+    }
+
+    @Override
+    CollectionReference remoteCollection(String owner) {
+        return firestore.collection("users").document(owner).collection("courses");
+    }
+
+    @Override
+    String getId(Course item) { return item.getId(); }
+
+    @Override
+    void setId(Course item, String id) { item.setId(id); }
+
+    @Override
+    Date getUpdatedAt(Course item) { return item.getUpdatedAt(); }
+
+    @Override
+    void setUpdatedAt(Course item, Date updatedAt) { item.setUpdatedAt(updatedAt); }
+
+    @Override
+    void putValues(Course item, ContentValues values) {
+        values.put("user_id", item.getUserId()); // The email, unlike the owner key
+        values.put("start_time", item.getStartTime());
+        values.put("end_time", item.getEndTime());
+        values.put("duration", item.getDuration());
+        values.put("distance", item.getDistance());
+        values.put("avg_speed", item.getAvgSpeed());
+        values.put("max_speed", item.getMaxSpeed());
+        values.put("completed", item.isCompleted() ? 1 : 0);
+    }
+
+    @Override
+    Course fromCursor(Cursor cursor) {
+        Course course = new Course();
+        course.setId(getString(cursor, LocalDatabase.COL_ID));
+        course.setUserId(getString(cursor, "user_id"));
+        course.setUpdatedAt(getDate(cursor, LocalDatabase.COL_UPDATED_AT));
+        course.setStartTime(getLong(cursor, "start_time"));
+        course.setEndTime(getLong(cursor, "end_time"));
+        course.setDuration(getLong(cursor, "duration"));
+        course.setDistance(getFloat(cursor, "distance"));
+        course.setAvgSpeed(getFloat(cursor, "avg_speed"));
+        course.setMaxSpeed(getFloat(cursor, "max_speed"));
+        course.setCompleted(getInt(cursor, "completed") != 0);
+        return course;
+    }
+}
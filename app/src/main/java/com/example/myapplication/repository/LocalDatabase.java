@@ -0,0 +1,193 @@
+package com.example.myapplication.repository;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * On-device SQLite store the screens read from; Firestore is only reached through SyncEngine.
+ * Every synced table has the same bookkeeping columns: the owner the row belongs to, the
+ * server update time, a dirty stamp (time of the last unpushed local edit, 0 when clean) and
+ * a deleted flag for deletes that still have to be pushed. sync_state holds the per-collection
+ * high-water marks of the incremental pulls, and other per-owner sync progress under its own keys.
+ */
+public class LocalDatabase extends SQLiteOpenHelper {
+    private static final String DB_NAME = "local_store.db";
+    private static final int DB_VERSION = 4;
+
+    static final String TABLE_SLEEP_RECORDS = "sleep_records";
+    static final String TABLE_SLEEP_SESSIONS = "sleep_sensor_sessions";
+    static final String TABLE_ACTIVITIES = "activities";
+    static final String TABLE_COURSES = "courses";
+    static final String TABLE_STEP_SERIES = "step_series";
+    static final String TABLE_ACTIVITY_ROLLUPS = "activity_rollups";
+    static final String TABLE_UNROLLED_ACTIVITIES = "unrolled_activities";
+    private static final String TABLE_SYNC_STATE = "sync_state";
+
+    // Bookkeeping columns shared by the synced tables
+    static final String COL_ID = "id";
+    static final String COL_OWNER = "owner";
+    static final String COL_UPDATED_AT = "updated_at";
+    static final String COL_DIRTY = "dirty";
+    static final String COL_DELETED = "deleted";
+
+    private static final String SYNC_COLUMNS = COL_ID + " TEXT PRIMARY KEY, "
+            + COL_OWNER + " TEXT NOT NULL, "
+            + COL_UPDATED_AT + " INTEGER, "
+            + COL_DIRTY + " INTEGER NOT NULL DEFAULT 0, "
+            + COL_DELETED + " INTEGER NOT NULL DEFAULT 0, ";
+
+    private static volatile LocalDatabase instance;
+
+    // Local reads and writes run here, off the main thread
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Map<String, List<Runnable>> tableObservers = new ConcurrentHashMap<>();
+
+    public static LocalDatabase getInstance(Context context) {
+        if (instance == null) {
+            synchronized (LocalDatabase.class) {
+                if (instance == null) {
+                    instance = new LocalDatabase(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private LocalDatabase(Context context) {
+        super(context, DB_NAME, null, DB_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_SLEEP_RECORDS + " (" + SYNC_COLUMNS
+                + "sleep_start_time INTEGER, sleep_end_time INTEGER, sleep_duration INTEGER, "
+                + "sleep_quality INTEGER, notes TEXT, record_date INTEGER)");
+        createSleepRecordPageIndex(db);
+
+        db.execSQL("CREATE TABLE " + TABLE_SLEEP_SESSIONS + " (" + SYNC_COLUMNS
+                + "session_start_time INTEGER, session_end_time INTEGER, chunk_count INTEGER, "
+                + "estimated_sleep_quality INTEGER, average_light_level REAL, was_dark_environment INTEGER, "
+                + "sleep_onset_time INTEGER, total_sleep_minutes INTEGER, "
+                + "wake_after_sleep_onset_minutes INTEGER, sleep_efficiency REAL, awakenings INTEGER)");
+        db.execSQL("CREATE INDEX idx_sleep_sessions_owner_start ON " + TABLE_SLEEP_SESSIONS
+                + " (" + COL_OWNER + ", session_start_time)");
+
+        db.execSQL("CREATE TABLE " + TABLE_ACTIVITIES + " (" + SYNC_COLUMNS
+                + "step_count INTEGER, activity_level TEXT, active_time INTEGER, date INTEGER)");
+        db.execSQL("CREATE INDEX idx_activities_owner_date ON " + TABLE_ACTIVITIES
+                + " (" + COL_OWNER + ", date)");
+
+        db.execSQL("CREATE TABLE " + TABLE_COURSES + " (" + SYNC_COLUMNS
+                + "user_id TEXT, start_time INTEGER, end_time INTEGER, duration INTEGER, distance REAL, "
+                + "avg_speed REAL, max_speed REAL, completed INTEGER)");
+        db.execSQL("CREATE INDEX idx_courses_owner_start ON " + TABLE_COURSES
+                + " (" + COL_OWNER + ", start_time)");
+
+        createStepSeriesTable(db);
+        createActivityRollupTable(db);
+
+        db.execSQL("CREATE TABLE " + TABLE_SYNC_STATE + " (sync_key TEXT PRIMARY KEY, "
+                + "high_water_mark INTEGER NOT NULL)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            // Sleep history is paged on (record_date, id); the id makes the page keys unique
+            db.execSQL("DROP INDEX IF EXISTS idx_sleep_records_owner_date");
+            createSleepRecordPageIndex(db);
+        }
+        if (oldVersion < 3) {
+            createStepSeriesTable(db);
+        }
+        if (oldVersion < 4) {
+            createActivityRollupTable(db);
+        }
+    }
+
+    private static void createSleepRecordPageIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX idx_sleep_records_owner_date_id ON " + TABLE_SLEEP_RECORDS
+                + " (" + COL_OWNER + ", record_date, " + COL_ID + ")");
+    }
+
+    // One row per user and local day; minute_steps is the packed per-minute series
+    private static void createStepSeriesTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_STEP_SERIES + " (" + SYNC_COLUMNS
+                + "day_start INTEGER, total_steps INTEGER, minute_steps BLOB)");
+        db.execSQL("CREATE INDEX idx_step_series_owner_day ON " + TABLE_STEP_SERIES
+                + " (" + COL_OWNER + ", day_start)");
+    }
+
+    // Day, week and month totals of the activities, one row per bucket and contributor; charts
+    // sum a period's rows per bucket in start order. unrolled_activities lists the activities
+    // saved here before the rollups were known to be built (local only).
+    private static void createActivityRollupTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_ACTIVITY_ROLLUPS + " (" + SYNC_COLUMNS
+                + "period TEXT, period_start INTEGER, contributor TEXT, step_count INTEGER, "
+                + "active_time INTEGER, session_count INTEGER)");
+        db.execSQL("CREATE INDEX idx_activity_rollups_owner_period ON " + TABLE_ACTIVITY_ROLLUPS
+                + " (" + COL_OWNER + ", period, period_start)");
+        db.execSQL("CREATE TABLE " + TABLE_UNROLLED_ACTIVITIES + " (" + COL_ID + " TEXT PRIMARY KEY, "
+                + COL_OWNER + " TEXT NOT NULL)");
+    }
+
+    ExecutorService getExecutor() {
+        return executor;
+    }
+
+    // Server update time of the newest document pulled for this collection, 0 before the first pull
+    long getHighWaterMark(String syncKey) {
+        return getSyncState(syncKey);
+    }
+
+    void setHighWaterMark(String syncKey, long highWaterMark) {
+        setSyncState(syncKey, highWaterMark);
+    }
+
+    // 0 until set
+    long getSyncState(String key) {
+        try (Cursor cursor = getReadableDatabase().query(TABLE_SYNC_STATE, new String[]{"high_water_mark"},
+                "sync_key = ?", new String[]{key}, null, null, null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    void setSyncState(String key, long value) {
+        ContentValues values = new ContentValues();
+        values.put("sync_key", key);
+        values.put("high_water_mark", value);
+        getWritableDatabase().insertWithOnConflict(TABLE_SYNC_STATE, null, values,
+                SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    // Observers are told after every write to the table; LocalQueryLiveData re-runs its query
+    void addTableObserver(String table, Runnable observer) {
+        tableObservers.computeIfAbsent(table, t -> new CopyOnWriteArrayList<>()).add(observer);
+    }
+
+    void removeTableObserver(String table, Runnable observer) {
+        List<Runnable> observers = tableObservers.get(table);
+        if (observers != null) {
+            observers.remove(observer);
+        }
+    }
+
+    void notifyTableChanged(String table) {
+        List<Runnable> observers = tableObservers.get(table);
+        if (observers != null) {
+            for (Runnable observer : observers) {
+                observer.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.myapplication.repository;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.lifecycle.LiveData;
+
+/**
+ * LiveData backed by a query on a LocalDatabase table. The query runs on the database executor
+ * when the LiveData becomes active and again after every write to the table while it is
+ * observed, so screens follow local edits and sync results without reloading by hand.
+ */
+class LocalQueryLiveData<T> extends LiveData<T> {
+    interface Query<T> {
+        T run(SQLiteDatabase db);
+    }
+
+    private final LocalDatabase database;
+    private final String table;
+    private final Query<T> query;
+    private final Runnable invalidation = this::refresh;
+
+    LocalQueryLiveData(LocalDatabase database, String table, Query<T> query) {
+        this.database = database;
+        this.table = table;
+        this.query = query;
+    }
+
+    @Override
+    protected void onActive() {
+        database.addTableObserver(table, invalidation);
+        refresh();
+    }
+
+    @Override
+    protected void onInactive() {
+        database.removeTableObserver(table, invalidation);
+    }
+
+    private void refresh() {
+        database.getExecutor().execute(() -> postValue(query.run(database.getReadableDatabase())));
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.myapplication.repository;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keyset-paged LiveData over a LocalDatabase table, following Paging's PagingSource contract:
+ * a page is loaded with the last item shown as its "start after" key, so each page costs the
+ * same however deep the list goes. Only the first page is read on activation; loadMore()
+ * appends the next one. A write to the table reloads the rows already shown from the top.
+ */
+public class PagedLocalLiveData<T> extends LiveData<List<T>> {
+    interface PageQuery<T> {
+        // Up to limit items ordered after the given item, or from the top when it is null
+        List<T> load(SQLiteDatabase db, @Nullable T startAfter, int limit);
+    }
+
+    private final LocalDatabase database;
+    private final String table;
+    private final PageQuery<T> query;
+    private final int pageSize;
+    private final Runnable invalidation = this::reload;
+    private final AtomicBoolean loadPending = new AtomicBoolean(false);
+
+    // Only touched on the database executor
+    private final List<T> loaded = new ArrayList<>();
+    private boolean endReached = false;
+
+    // Read from the main thread to decide whether to ask for more
+    private volatile boolean hasMore = true;
+
+    PagedLocalLiveData(LocalDatabase database, String table, int pageSize, PageQuery<T> query) {
+        this.database = database;
+        this.table = table;
+        this.pageSize = pageSize;
+        this.query = query;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    // Appends the next page; ignored while a load is queued or once the end is reached
+    public void loadMore() {
+        if (!hasMore || !loadPending.compareAndSet(false, true)) {
+            return;
+        }
+        database.getExecutor().execute(() -> {
+            loadPending.set(false);
+            if (endReached) {
+                return;
+            }
+            T last = loaded.isEmpty() ? null : loaded.get(loaded.size() - 1);
+            List<T> page = query.load(database.getReadableDatabase(), last, pageSize);
+            loaded.addAll(page);
+            publish(page.size() < pageSize);
+        });
+    }
+
+    @Override
+    protected void onActive() {
+        database.addTableObserver(table, invalidation);
+        reload();
+    }
+
+    @Override
+    protected void onInactive() {
+        database.removeTableObserver(table, invalidation);
+    }
+
+    // Re-reads as many rows as are shown (at least one page) so the scroll position holds
+    private void reload() {
+        database.getExecutor().execute(() -> {
+            int count = Math.max(pageSize, loaded.size());
+            List<T> rows = query.load(database.getReadableDatabase(), null, count);
+            loaded.clear();
+            loaded.addAll(rows);
+            publish(rows.size() < count);
+        });
+    }
+
+    private void publish(boolean end) {
+        endReached = end;
+        hasMore = !end;
+        // A copy, so the adapter never sees the list change under it
+        postValue(new ArrayList<>(loaded));
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.myapplication.repository;
+
+// Reported by a sync when the server refused local edits; they have been rolled back by then
+public class RejectedWriteException extends Exception {
+    private final int count;
+
+    RejectedWriteException(int count) {
+        super(count + " local change(s) rejected by the server");
+        this.count = count;
+    }
+
+    public int getCount() {
+        return count;
+    }
+}
@@ -1,100 +1,114 @@
 package com.example.myapplication.repository;
 
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 import android.util.Log;
 
 import com.example.myapplication.model.SleepRecord;
-import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.firebase.firestore.CollectionReference;
-import com.google.firebase.firestore.DocumentReference;
-import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.Query;
-import com.google.firebase.firestore.QuerySnapshot;
 
-public class SleepRepository {
+import java.util.Date;
+import java.util.List;
+
+// Sleep records are read from the local database; SyncEngine keeps it in step with Firestore.
+// Incremental pulls need a composite index on sleep_records: userId (Ascending), updatedAt (Ascending)
+public class SleepRepository extends SyncedRepository<SleepRecord> {
     private static final String COLLECTION_NAME = "sleep_records";
     private static final String TAG = "SleepRepository";
-    private final FirebaseFirestore db;
-    private final CollectionReference sleepCollection;
+    // The id breaks ties so the keyset of a page is unique; NULL dates sort last
+    private static final String ORDER_NEWEST_FIRST = "record_date DESC, id DESC";
+
+    public SleepRepository(Context context) {
+        super(context, LocalDatabase.TABLE_SLEEP_RECORDS, SleepRecord.class);
+    }
 
-    public SleepRepository() {
-        db = FirebaseFirestore.getInstance();
-        sleepCollection = db.collection(COLLECTION_NAME);
+    // Newest first, one page at a time; call loadMore() on the result to extend it
+    public PagedLocalLiveData<SleepRecord> getSleepRecordsByUser(String userId, int pageSize) {
+        Log.d(TAG, "Observing local sleep records for user: " + userId);
+        return observeLocalPages(pageSize, (db, startAfter, limit) ->
+                loadPage(db, userId, startAfter, limit));
     }
 
-    public void addSleepRecord(SleepRecord record, OnCompleteListener<DocumentReference> listener) {
+    private List<SleepRecord> loadPage(SQLiteDatabase db, String userId, SleepRecord startAfter, int limit) {
+        if (startAfter == null) {
+            return queryLocal(db, userId, ORDER_NEWEST_FIRST, limit);
+        }
+        String id = startAfter.getId();
+        Date recordDate = startAfter.getRecordDate();
+        if (recordDate == null) {
+            return queryLocal(db, userId, "record_date IS NULL AND id < ?",
+                    new String[]{id}, ORDER_NEWEST_FIRST, limit);
+        }
+        String date = String.valueOf(recordDate.getTime());
+        return queryLocal(db, userId,
+                "record_date < ? OR (record_date = ? AND id < ?) OR record_date IS NULL",
+                new String[]{date, date, id}, ORDER_NEWEST_FIRST, limit);
+    }
+
+    // Writes are optimistic: the row shows at once, marked pending until the server has it.
+    // onSynced reports the push, a RejectedWriteException meaning the edit was rolled back.
+    public void addSleepRecord(SleepRecord record, SyncEngine.Callback onSynced) {
         Log.d(TAG, "Adding sleep record for user: " + record.getUserId());
-        sleepCollection.add(record)
-                .addOnCompleteListener(task -> {
-                    if (task.isSuccessful()) {
-                        Log.d(TAG, "Sleep record added successfully with ID: " + task.getResult().getId());
-                    } else {
-                        Log.e(TAG, "Error adding sleep record", task.getException());
-                    }
-                    listener.onComplete(task);
-                });
+        saveLocal(record, record.getUserId(), null, onSynced);
     }
 
-    public void getSleepRecordsByUser(String userId, OnCompleteListener<QuerySnapshot> listener) {
-        Log.d(TAG, "Fetching sleep records for user: " + userId);
-        sleepCollection.whereEqualTo("userId", userId)
-                .orderBy("recordDate", Query.Direction.DESCENDING)
-                .get()
-                .addOnCompleteListener(task -> {
-                    if (task.isSuccessful()) {
-                        Log.d(TAG, "Successfully fetched " + task.getResult().size() + " sleep records");
-                        listener.onComplete(task);
-                    } else {
-                        Exception exception = task.getException();
-                        String errorMsg = exception != null ? exception.getMessage() : "Unknown error";
-                        Log.e(TAG, "Error fetching sleep records: " + errorMsg, exception);
-
-                        // Check for FAILED_PRECONDITION and try fallback
-                        if (errorMsg != null && errorMsg.contains("FAILED_PRECONDITION")) {
-                            Log.e(TAG, "FAILED_PRECONDITION: Composite index missing. Attempting fallback query...");
-                            Log.e(TAG, "To fix permanently: Create composite index in Firebase Console:");
-                            Log.e(TAG, "  Collection: sleep_records");
-                            Log.e(TAG, "  Field 1: userId (Ascending)");
-                            Log.e(TAG, "  Field 2: recordDate (Descending)");
-
-                            // Fallback: Query without orderBy, sort in app
-                            fetchAndSortFallback(userId, listener);
-                        } else {
-                            listener.onComplete(task);
-                        }
-                    }
-                });
+    public void updateSleepRecord(String recordId, SleepRecord record, SyncEngine.Callback onSynced) {
+        record.setId(recordId);
+        saveLocal(record, record.getUserId(), null, onSynced);
     }
 
-    private void fetchAndSortFallback(String userId, OnCompleteListener<QuerySnapshot> listener) {
-        Log.d(TAG, "Using fallback: Fetching unsorted, will sort in app");
-        sleepCollection.whereEqualTo("userId", userId)
-                .get()
-                .addOnCompleteListener(task -> {
-                    if (task.isSuccessful()) {
-                        Log.d(TAG, "Fallback successful: fetched " + task.getResult().size() + " records");
-                    } else {
-                        Log.e(TAG, "Fallback also failed: " + task.getException());
-                    }
-                    listener.onComplete(task);
-                });
+    public void deleteSleepRecord(String recordId, String userId, SyncEngine.Callback onSynced) {
+        deleteLocal(recordId, userId, null, onSynced);
     }
 
-    public void updateSleepRecord(String recordId, SleepRecord record, OnCompleteListener<Void> listener) {
-        sleepCollection.document(recordId)
-                .set(record)
-                .addOnCompleteListener(listener);
+    @Override
+    CollectionReference remoteCollection(String owner) {
+        return firestore.collection(COLLECTION_NAME);
     }
 
-    public void deleteSleepRecord(String recordId, OnCompleteListener<Void> listener) {
-        sleepCollection.document(recordId)
-                .delete()
-                .addOnCompleteListener(listener);
+    @Override
+    Query remoteQuery(String owner) {
+        return remoteCollection(owner).whereEqualTo("userId", owner);
+    }
+
+    @Override
+    String getId(SleepRecord item) { return item.getId(); }
+
+    @Override
+    void setId(SleepRecord item, String id) { item.setId(id); }
+
+    @Override
+    Date getUpdatedAt(SleepRecord item) { return item.getUpdatedAt(); }
+
+    @Override
+    void setUpdatedAt(SleepRecord item, Date updatedAt) { item.setUpdatedAt(updatedAt); }
+
+    @Override
+    void putValues(SleepRecord item, ContentValues values) {
+        putDate(values, "sleep_start_time", item.getSleepStartTime());
+        putDate(values, "sleep_end_time", item.getSleepEndTime());
+        values.put("sleep_duration", item.getSleepDuration());
+        values.put("sleep_quality", item.getSleepQuality());
+        values.put("notes", item.getNotes());
+        putDate(values, "record_date", item.getRecordDate());
     }
 
-    public void getSleepRecord(String recordId, OnCompleteListener<DocumentSnapshot> listener) {
-        sleepCollection.document(recordId)
-                .get()
-                .addOnCompleteListener(listener);
+    @Override
+    SleepRecord fromCursor(Cursor cursor) {
+        SleepRecord record = new SleepRecord();
+        record.setId(getString(cursor, LocalDatabase.COL_ID));
+        record.setUserId(getString(cursor, LocalDatabase.COL_OWNER));
+        record.setUpdatedAt(getDate(cursor, LocalDatabase.COL_UPDATED_AT));
+        record.setSleepStartTime(getDate(cursor, "sleep_start_time"));
+        record.setSleepEndTime(getDate(cursor, "sleep_end_time"));
+        record.setSleepDuration(getInt(cursor, "sleep_duration"));
+        record.setSleepQuality(getInt(cursor, "sleep_quality"));
+        record.setNotes(getString(cursor, "notes"));
+        record.setRecordDate(getDate(cursor, "record_date"));
+        record.setPendingSync(getLong(cursor, LocalDatabase.COL_DIRTY) != 0);
+        return record;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,97 @@
+package com.example.myapplication.repository;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.lifecycle.LiveData;
+
+import com.example.myapplication.model.SleepSensorData;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.Query;
+
+import java.util.Date;
+import java.util.List;
+
+// Local copy of the sleep sensor session summaries. SleepSensorService uploads the sessions
+// itself, so this collection is pull-only; the raw chunks are never copied locally.
+// Incremental pulls need a composite index on sleep_sensor_sessions: userId, updatedAt
+public class SleepSessionRepository extends SyncedRepository<SleepSensorData> {
+    private static final String COLLECTION_NAME = "sleep_sensor_sessions";
+    private static final String ORDER_NEWEST_FIRST = "session_start_time DESC";
+
+    public SleepSessionRepository(Context context) {
+        super(context, LocalDatabase.TABLE_SLEEP_SESSIONS, SleepSensorData.class);
+    }
+
+    public LiveData<List<SleepSensorData>> getSessionsByUser(String userId, int limit) {
+        return observeLocal(userId, ORDER_NEWEST_FIRST, limit);
+    }
+
+    // Called once the service's summary write went through
+    public void storeUploadedSession(SleepSensorData session) {
+        storeClean(session, session.getUserId());
+    }
+
+    @Override
+    boolean isPushEnabled() {
+        return false;
+    }
+
+    @Override
+    CollectionReference remoteCollection(String owner) {
+        return firestore.collection(COLLECTION_NAME);
+    }
+
+    @Override
+    Query remoteQuery(String owner) {
+        return remoteCollection(owner).whereEqualTo("userId", owner);
+    }
+
+    @Override
+    String getId(SleepSensorData item) { return item.getId(); }
+
+    @Override
+    void setId(SleepSensorData item, String id) { item.setId(id); }
+
+    @Override
+    Date getUpdatedAt(SleepSensorData item) { return item.getUpdatedAt(); }
+
+    @Override
+    void setUpdatedAt(SleepSensorData item, Date updatedAt) { item.setUpdatedAt(updatedAt); }
+
+    @Override
+    void putValues(SleepSensorData item, ContentValues values) {
+        putDate(values, "session_start_time", item.getSessionStartTime());
+        putDate(values, "session_end_time", item.getSessionEndTime());
+        values.put("chunk_count", item.getChunkCount());
+        values.put("estimated_sleep_quality", item.getEstimatedSleepQuality());
+        values.put("average_light_level", item.getAverageLightLevel());
+        values.put("was_dark_environment", item.isWasDarkEnvironment() ? 1 : 0);
+        putDate(values, "sleep_onset_time", item.getSleepOnsetTime());
+        values.put("total_sleep_minutes", item.getTotalSleepMinutes());
+        values.put("wake_after_sleep_onset_minutes", item.getWakeAfterSleepOnsetMinutes());
+        values.put("sleep_efficiency", item.getSleepEfficiency());
+        values.put("awakenings", item.getAwakenings());
+    }
+
+    @Override
+    SleepSensorData fromCursor(Cursor cursor) {
+        SleepSensorData session = new SleepSensorData();
+        session.setId(getString(cursor, LocalDatabase.COL_ID));
+        session.setUserId(getString(cursor, LocalDatabase.COL_OWNER));
+        session.setUpdatedAt(getDate(cursor, LocalDatabase.COL_UPDATED_AT));
+        session.setSessionStartTime(getDate(cursor, "session_start_time"));
+        session.setSessionEndTime(getDate(cursor, "session_end_time"));
+        session.setChunkCount(getInt(cursor, "chunk_count"));
+        session.setEstimatedSleepQuality(getInt(cursor, "estimated_sleep_quality"));
+        session.setAverageLightLevel(getFloat(cursor, "average_light_level"));
+        session.setWasDarkEnvironment(getInt(cursor, "was_dark_environment") != 0);
+        session.setSleepOnsetTime(getDate(cursor, "sleep_onset_time"));
+        session.setTotalSleepMinutes(getInt(cursor, "total_sleep_minutes"));
+        session.setWakeAfterSleepOnsetMinutes(getInt(cursor, "wake_after_sleep_onset_minutes"));
+        session.setSleepEfficiency(getFloat(cursor, "sleep_efficiency"));
+        session.setAwakenings(getInt(cursor, "awakenings"));
+        return session;
+    }
+}
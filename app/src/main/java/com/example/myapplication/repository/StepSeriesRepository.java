@@ -0,0 +1,146 @@
+package com.example.myapplication.repository;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+
+import com.example.myapplication.model.DailyStepSeries;
+import com.google.firebase.firestore.Blob;
+import com.google.firebase.firestore.CollectionReference;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Per-minute step series of users/{safeUserId}/step_series, one document per local day.
+// StepCounterService feeds it minute buckets; a day is pushed whole with the next sync.
+public class StepSeriesRepository extends SyncedRepository<DailyStepSeries> {
+    private static final String TAG = "StepSeriesRepository";
+    private static final String ORDER_OLDEST_FIRST = "day_start ASC";
+
+    public StepSeriesRepository(Context context) {
+        super(context, LocalDatabase.TABLE_STEP_SERIES, DailyStepSeries.class);
+    }
+
+    // Days in [fromDayStart, toDayStart), oldest first; days without steps have no row
+    public LiveData<List<DailyStepSeries>> getDays(String safeUserId, long fromDayStart, long toDayStart) {
+        return new LocalQueryLiveData<>(database, LocalDatabase.TABLE_STEP_SERIES, db -> queryLocal(db, safeUserId,
+                "day_start >= ? AND day_start < ?",
+                new String[]{String.valueOf(fromDayStart), String.valueOf(toDayStart)},
+                ORDER_OLDEST_FIRST, 0));
+    }
+
+    // Adds steps keyed by the start time of their minute, in one transaction. The rows stay
+    // dirty and go out with the next sync; a day that is over is handed to SyncWorker.
+    public void addMinuteSteps(String safeUserId, Map<Long, Integer> stepsByMinute) {
+        if (stepsByMinute.isEmpty()) {
+            return;
+        }
+        database.getExecutor().execute(() -> {
+            SQLiteDatabase db = database.getWritableDatabase();
+            long today = getDayStart(System.currentTimeMillis());
+            boolean pastDayChanged = false;
+            Map<Long, DailyStepSeries> days = new HashMap<>();
+            db.beginTransaction();
+            try {
+                for (Map.Entry<Long, Integer> entry : stepsByMinute.entrySet()) {
+                    long dayStart = getDayStart(entry.getKey());
+                    DailyStepSeries day = days.get(dayStart);
+                    if (day == null) {
+                        day = loadDay(db, safeUserId, dayStart);
+                        days.put(dayStart, day);
+                    }
+                    day.addSteps(getMinuteOfDay(entry.getKey()), entry.getValue());
+                    pastDayChanged |= dayStart < today;
+                }
+                for (DailyStepSeries day : days.values()) {
+                    storeDirty(db, day, safeUserId);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            database.notifyTableChanged(LocalDatabase.TABLE_STEP_SERIES);
+            Log.d(TAG, "Stored " + stepsByMinute.size() + " minute(s) of steps");
+
+            if (pastDayChanged) {
+                SyncWorker.enqueue(context);
+            }
+        });
+    }
+
+    private DailyStepSeries loadDay(SQLiteDatabase db, String safeUserId, long dayStart) {
+        String id = getDayId(dayStart);
+        List<DailyStepSeries> rows = queryLocal(db, safeUserId, LocalDatabase.COL_ID + " = ?",
+                new String[]{id}, null, 1);
+        return rows.isEmpty() ? new DailyStepSeries(id, safeUserId, dayStart) : rows.get(0);
+    }
+
+    public static long getDayStart(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    // Wall-clock minute, so DST days still map onto the 1440 slots
+    static int getMinuteOfDay(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        return calendar.get(Calendar.HOUR_OF_DAY) * 60 + calendar.get(Calendar.MINUTE);
+    }
+
+    // The document id is the local date, so every write of a day lands on the same document
+    static String getDayId(long dayStart) {
+        return new SimpleDateFormat("yyyy-MM-dd", Locale.US).format(new Date(dayStart));
+    }
+
+    @Override
+    CollectionReference remoteCollection(String owner) {
+        return firestore.collection("users").document(owner).collection("step_series");
+    }
+
+    @Override
+    String getId(DailyStepSeries item) { return item.getId(); }
+
+    @Override
+    void setId(DailyStepSeries item, String id) { item.setId(id); }
+
+    @Override
+    Date getUpdatedAt(DailyStepSeries item) { return item.getUpdatedAt(); }
+
+    @Override
+    void setUpdatedAt(DailyStepSeries item, Date updatedAt) { item.setUpdatedAt(updatedAt); }
+
+    @Override
+    void putValues(DailyStepSeries item, ContentValues values) {
+        values.put("day_start", item.getDayStart());
+        values.put("total_steps", item.getTotalSteps());
+        Blob minuteSteps = item.getMinuteSteps();
+        values.put("minute_steps", minuteSteps != null ? minuteSteps.toBytes() : null);
+    }
+
+    @Override
+    DailyStepSeries fromCursor(Cursor cursor) {
+        DailyStepSeries series = new DailyStepSeries();
+        series.setId(getString(cursor, LocalDatabase.COL_ID));
+        series.setUserId(getString(cursor, LocalDatabase.COL_OWNER));
+        series.setUpdatedAt(getDate(cursor, LocalDatabase.COL_UPDATED_AT));
+        series.setDayStart(getLong(cursor, "day_start"));
+        series.setTotalSteps(getInt(cursor, "total_steps"));
+        int index = cursor.getColumnIndexOrThrow("minute_steps");
+        series.setMinuteSteps(cursor.isNull(index) ? null : Blob.fromBytes(cursor.getBlob(index)));
+        return series;
+    }
+}
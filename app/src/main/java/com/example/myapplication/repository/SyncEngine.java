@@ -0,0 +1,203 @@
+package com.example.myapplication.repository;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.example.myapplication.controller.SessionManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background sync between the LocalDatabase and Firestore. Each run pushes a collection's
+ * dirty rows, then pulls what changed remotely since its high-water mark. Runs are serialized
+ * on one thread; requests for a collection that is already queued join that run instead of
+ * adding another. Runs triggered by local writes wait a short window first, so a burst of
+ * saves goes out as one batch. When a run fails with local edits still waiting, SyncWorker
+ * takes them over and retries with backoff, across process death if need be.
+ *
+ * Screens revalidate through syncIfStale: the local data is shown at once, and the network is
+ * only asked when the collection was not synced within the screen's freshness window.
+ */
+public class SyncEngine {
+    private static final String TAG = "SyncEngine";
+    private static final long WRITE_WINDOW_MS = 1000;
+
+    public interface Callback {
+        // Called on the main thread; error is null when the sync went through
+        void onComplete(@Nullable Exception error);
+    }
+
+    private static volatile SyncEngine instance;
+
+    private final Context context;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, List<Callback>> queued = new HashMap<>();
+    // Elapsed realtime of each collection's last complete run; a new process starts stale
+    private final Map<String, Long> lastSynced = new ConcurrentHashMap<>();
+
+    public static SyncEngine getInstance(Context context) {
+        if (instance == null) {
+            synchronized (SyncEngine.class) {
+                if (instance == null) {
+                    instance = new SyncEngine(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private SyncEngine(Context context) {
+        this.context = context;
+    }
+
+    // Syncs everything the logged-in user has; called at startup, screens read local data meanwhile
+    public void syncAll(SessionManager sessionManager) {
+        String userId = sessionManager.getLoggedInUserId();
+        if (userId != null && !userId.isEmpty()) {
+            new SleepRepository(context).sync(userId, null);
+            new SleepSessionRepository(context).sync(userId, null);
+        }
+        String email = sessionManager.getLoggedInEmail();
+        if (email != null && !email.isEmpty()) {
+            String safeUserId = email.replace(".", "_");
+            new ActivityRepository(context).sync(safeUserId, null);
+            new CourseRepository(context).sync(safeUserId, null);
+            new StepSeriesRepository(context).sync(safeUserId, null);
+            new ActivityRollupRepository(context).sync(safeUserId, null);
+        }
+    }
+
+    void sync(SyncedRepository<?> repository, String owner, @Nullable Callback callback) {
+        sync(repository, owner, callback, 0);
+    }
+
+    // Skips the run when the collection was synced less than maxAgeMs ago
+    void syncIfStale(SyncedRepository<?> repository, String owner, long maxAgeMs, @Nullable Callback callback) {
+        Long synced = lastSynced.get(repository.syncKey(owner));
+        if (synced != null && SystemClock.elapsedRealtime() - synced < maxAgeMs) {
+            Log.d(TAG, repository.syncKey(owner) + " is fresh, not syncing");
+            if (callback != null) {
+                mainHandler.post(() -> callback.onComplete(null));
+            }
+            return;
+        }
+        sync(repository, owner, callback, 0);
+    }
+
+    // After a local write: edits made within the window join the same run
+    void syncAfterWrite(SyncedRepository<?> repository, String owner, @Nullable Callback callback) {
+        sync(repository, owner, callback, WRITE_WINDOW_MS);
+    }
+
+    private void sync(SyncedRepository<?> repository, String owner, @Nullable Callback callback, long delayMs) {
+        String key = repository.syncKey(owner);
+        synchronized (queued) {
+            List<Callback> callbacks = queued.get(key);
+            if (callbacks != null) {
+                if (callback != null) {
+                    callbacks.add(callback);
+                }
+                return;
+            }
+            callbacks = new ArrayList<>();
+            if (callback != null) {
+                callbacks.add(callback);
+            }
+            queued.put(key, callbacks);
+        }
+
+        executor.schedule(() -> {
+            // Requests arriving from here on get a run of their own, so they see newer edits
+            List<Callback> callbacks;
+            synchronized (queued) {
+                callbacks = queued.remove(key);
+            }
+
+            Exception error = null;
+            try {
+                if (repository.isPushEnabled()) {
+                    try {
+                        repository.push(owner);
+                    } catch (RejectedWriteException e) {
+                        // Already rolled back; the pull still runs and the caller is told
+                        error = e;
+                    }
+                }
+                repository.pull(owner);
+                lastSynced.put(key, SystemClock.elapsedRealtime());
+                Log.d(TAG, "Synced " + key);
+            } catch (Exception e) {
+                Log.w(TAG, "Sync of " + key + " failed, local data stays as is", e);
+                error = e;
+                if (repository.isPushEnabled() && repository.hasPendingWrites(owner)) {
+                    SyncWorker.enqueue(context);
+                }
+            }
+
+            final Exception result = error;
+            for (Callback c : callbacks) {
+                mainHandler.post(() -> c.onComplete(result));
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Pushes every collection that still has local edits, for SyncWorker. Blocks until done;
+    // false means some edits are still waiting and the work should be retried.
+    boolean pushPending() {
+        List<SyncedRepository<?>> repositories = Arrays.asList(new SleepRepository(context),
+                new ActivityRepository(context), new CourseRepository(context),
+                new StepSeriesRepository(context), new ActivityRollupRepository(context));
+        Future<Boolean> result = executor.submit(() -> {
+            boolean done = true;
+            for (SyncedRepository<?> repository : repositories) {
+                for (String owner : repository.getOwnersWithPendingWrites()) {
+                    try {
+                        repository.push(owner);
+                    } catch (RejectedWriteException e) {
+                        // Rolled back, nothing left to retry; no screen is there to tell
+                        Log.w(TAG, "Background push of " + repository.syncKey(owner) + ": " + e.getMessage());
+                    } catch (Exception e) {
+                        Log.w(TAG, "Background push of " + repository.syncKey(owner) + " failed", e);
+                        done = false;
+                    }
+                }
+            }
+            return done;
+        });
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            Log.w(TAG, "Background push failed", e.getCause());
+            return false;
+        }
+    }
+
+    // Snapshot listeners apply their changes here too, so they never race a push or pull
+    Executor getExecutor() {
+        return executor;
+    }
+
+    void runOnMain(Runnable runnable) {
+        mainHandler.post(runnable);
+    }
+}
@@ -0,0 +1,539 @@
+package com.example.myapplication.repository;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base for repositories whose data lives in a LocalDatabase table kept in sync with a Firestore
+ * collection. Reads only hit the local table. Local writes stamp the row dirty for SyncEngine
+ * to push; pulls fetch the documents whose server updatedAt is past the collection's
+ * high-water mark and never overwrite a row with unpushed edits. Deletes go out as tombstones
+ * ({deleted: true}) so other devices drop the row on their next pull.
+ */
+abstract class SyncedRepository<T> {
+    private static final String TAG = "SyncedRepository";
+    static final String FIELD_UPDATED_AT = "updatedAt";
+    static final String FIELD_DELETED = "deleted";
+    private static final long REMOTE_TIMEOUT_SECONDS = 30;
+    private static final int PULL_PAGE_SIZE = 200;
+    // Firestore allows up to 500 writes per batch; smaller batches keep a retry cheap
+    private static final int PUSH_BATCH_SIZE = 100;
+    private static final String PUSHED_ROW = LocalDatabase.COL_ID + " = ? AND " + LocalDatabase.COL_DIRTY + " = ?";
+
+    protected final Context context;
+    protected final LocalDatabase database;
+    protected final FirebaseFirestore firestore;
+    private final String table;
+    private final Class<T> modelClass;
+
+    SyncedRepository(Context context, String table, Class<T> modelClass) {
+        this.context = context.getApplicationContext();
+        this.database = LocalDatabase.getInstance(context);
+        this.firestore = FirebaseFirestore.getInstance();
+        this.table = table;
+        this.modelClass = modelClass;
+    }
+
+    // Model mapping
+    abstract String getId(T item);
+
+    abstract void setId(T item, String id);
+
+    abstract void setUpdatedAt(T item, Date updatedAt);
+
+    abstract Date getUpdatedAt(T item);
+
+    // Model columns only; the bookkeeping columns are filled in here
+    abstract void putValues(T item, ContentValues values);
+
+    abstract T fromCursor(Cursor cursor);
+
+    abstract CollectionReference remoteCollection(String owner);
+
+    // Documents of this owner; override when the collection is shared between users
+    Query remoteQuery(String owner) {
+        return remoteCollection(owner);
+    }
+
+    // Collections written elsewhere (e.g. by a service) are pull-only
+    boolean isPushEnabled() {
+        return true;
+    }
+
+    // Runs in the transaction that stores a local edit, to keep data derived from it in step
+    void onStoredLocally(SQLiteDatabase db, T item, String owner) {
+    }
+
+    String syncKey(String owner) {
+        return table + "/" + owner;
+    }
+
+    public void sync(String owner, SyncEngine.Callback callback) {
+        SyncEngine.getInstance(context).sync(this, owner, callback);
+    }
+
+    // Stale-while-revalidate: callers show the local rows and only sync when they are older than maxAgeMs
+    public void revalidate(String owner, long maxAgeMs, SyncEngine.Callback callback) {
+        SyncEngine.getInstance(context).syncIfStale(this, owner, maxAgeMs, callback);
+    }
+
+    // ---- Local access ----
+
+    LiveData<List<T>> observeLocal(String owner, String orderBy, int limit) {
+        return new LocalQueryLiveData<>(database, table, db -> queryLocal(db, owner, orderBy, limit));
+    }
+
+    PagedLocalLiveData<T> observeLocalPages(int pageSize, PagedLocalLiveData.PageQuery<T> query) {
+        return new PagedLocalLiveData<>(database, table, pageSize, query);
+    }
+
+    List<T> queryLocal(SQLiteDatabase db, String owner, String orderBy, int limit) {
+        return queryLocal(db, owner, null, null, orderBy, limit);
+    }
+
+    // The owner's live rows, narrowed by an extra selection (e.g. a page's keyset condition)
+    List<T> queryLocal(SQLiteDatabase db, String owner, String selection, String[] selectionArgs,
+                       String orderBy, int limit) {
+        String where = LocalDatabase.COL_OWNER + " = ? AND " + LocalDatabase.COL_DELETED + " = 0";
+        String[] whereArgs = {owner};
+        if (selection != null) {
+            where += " AND (" + selection + ")";
+            whereArgs = new String[selectionArgs.length + 1];
+            whereArgs[0] = owner;
+            System.arraycopy(selectionArgs, 0, whereArgs, 1, selectionArgs.length);
+        }
+        List<T> items = new ArrayList<>();
+        try (Cursor cursor = db.query(table, null, where, whereArgs, null, null, orderBy,
+                limit > 0 ? String.valueOf(limit) : null)) {
+            while (cursor.moveToNext()) {
+                items.add(fromCursor(cursor));
+            }
+        }
+        return items;
+    }
+
+    // Client-side id, so a row can be stored and referenced before it ever reaches the server
+    String newId(String owner) {
+        return remoteCollection(owner).document().getId();
+    }
+
+    // Stores a local edit and schedules a push; onSaved runs on the main thread
+    void saveLocal(T item, String owner, Runnable onSaved) {
+        saveLocal(item, owner, onSaved, null);
+    }
+
+    // onSynced hears how the push went, including a rejection that rolled the edit back
+    void saveLocal(T item, String owner, Runnable onSaved, SyncEngine.Callback onSynced) {
+        if (getId(item) == null) {
+            setId(item, newId(owner));
+        }
+        database.getExecutor().execute(() -> {
+            SQLiteDatabase db = database.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                upsert(db, item, owner, System.currentTimeMillis());
+                onStoredLocally(db, item, owner);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            database.notifyTableChanged(table);
+            afterLocalWrite(owner, onSaved, onSynced);
+        });
+    }
+
+    void deleteLocal(String id, String owner, Runnable onDeleted, SyncEngine.Callback onSynced) {
+        database.getExecutor().execute(() -> {
+            ContentValues values = new ContentValues();
+            values.put(LocalDatabase.COL_DELETED, 1);
+            values.put(LocalDatabase.COL_DIRTY, System.currentTimeMillis());
+            database.getWritableDatabase().update(table, values, LocalDatabase.COL_ID + " = ?", new String[]{id});
+            database.notifyTableChanged(table);
+            afterLocalWrite(owner, onDeleted, onSynced);
+        });
+    }
+
+    // Stores a row that already matches the server (e.g. written by a service), without a push
+    void storeClean(T item, String owner) {
+        database.getExecutor().execute(() -> {
+            upsert(database.getWritableDatabase(), item, owner, 0);
+            database.notifyTableChanged(table);
+        });
+    }
+
+    // Stores a local edit inside the caller's transaction without scheduling a push: for data
+    // written continuously (e.g. by a service) that can go out with the next sync
+    void storeDirty(SQLiteDatabase db, T item, String owner) {
+        upsert(db, item, owner, System.currentTimeMillis());
+    }
+
+    private void afterLocalWrite(String owner, Runnable callback, SyncEngine.Callback onSynced) {
+        if (callback != null) {
+            SyncEngine.getInstance(context).runOnMain(callback);
+        }
+        SyncEngine.getInstance(context).syncAfterWrite(this, owner, onSynced);
+    }
+
+    private void upsert(SQLiteDatabase db, T item, String owner, long dirty) {
+        ContentValues values = new ContentValues();
+        putValues(item, values);
+        Date updatedAt = getUpdatedAt(item);
+        values.put(LocalDatabase.COL_ID, getId(item));
+        values.put(LocalDatabase.COL_OWNER, owner);
+        values.put(LocalDatabase.COL_UPDATED_AT, updatedAt != null ? updatedAt.getTime() : null);
+        values.put(LocalDatabase.COL_DIRTY, dirty);
+        values.put(LocalDatabase.COL_DELETED, 0);
+        db.insertWithOnConflict(table, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    // ---- Sync, called on the SyncEngine thread ----
+
+    // Dirty rows go out in WriteBatch commits, one RPC per PUSH_BATCH_SIZE rows. Document ids
+    // are assigned on the device and every write is a full set, so a batch retried after a
+    // lost acknowledgement lands on the same documents with the same content.
+    void push(String owner) throws Exception {
+        SQLiteDatabase db = database.getWritableDatabase();
+        List<T> items = new ArrayList<>();
+        List<Long> stamps = new ArrayList<>();
+        List<Boolean> deletes = new ArrayList<>();
+        try (Cursor cursor = db.query(table, null,
+                LocalDatabase.COL_OWNER + " = ? AND " + LocalDatabase.COL_DIRTY + " != 0",
+                new String[]{owner}, null, null, LocalDatabase.COL_DIRTY)) {
+            while (cursor.moveToNext()) {
+                items.add(fromCursor(cursor));
+                stamps.add(cursor.getLong(cursor.getColumnIndexOrThrow(LocalDatabase.COL_DIRTY)));
+                deletes.add(cursor.getInt(cursor.getColumnIndexOrThrow(LocalDatabase.COL_DELETED)) != 0);
+            }
+        }
+
+        int rejected = 0;
+        for (int from = 0; from < items.size(); from += PUSH_BATCH_SIZE) {
+            int to = Math.min(from + PUSH_BATCH_SIZE, items.size());
+            WriteBatch batch = firestore.batch();
+            for (int i = from; i < to; i++) {
+                addWrite(batch, owner, items.get(i), deletes.get(i));
+            }
+            try {
+                await(batch.commit());
+                db.beginTransaction();
+                try {
+                    for (int i = from; i < to; i++) {
+                        markPushed(db, getId(items.get(i)), stamps.get(i), deletes.get(i));
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            } catch (ExecutionException e) {
+                // Network trouble keeps the rows dirty for the next run; a refusal never heals
+                if (!isRejected(e.getCause())) {
+                    throw e;
+                }
+                // One refused document fails the whole batch: find it by writing them one by one
+                for (int i = from; i < to; i++) {
+                    if (!pushOne(db, owner, items.get(i), stamps.get(i), deletes.get(i))) {
+                        rejected++;
+                    }
+                }
+            } finally {
+                // Clears (or rolls back) the rows' pending markers on screen
+                database.notifyTableChanged(table);
+            }
+        }
+        if (rejected > 0) {
+            throw new RejectedWriteException(rejected);
+        }
+    }
+
+    private void addWrite(WriteBatch batch, String owner, T item, boolean delete) {
+        DocumentReference document = remoteCollection(owner).document(getId(item));
+        if (delete) {
+            Map<String, Object> tombstone = new HashMap<>();
+            tombstone.put(FIELD_DELETED, true);
+            tombstone.put(FIELD_UPDATED_AT, FieldValue.serverTimestamp());
+            batch.set(document, tombstone, SetOptions.merge());
+        } else {
+            setUpdatedAt(item, null); // Filled in by the server
+            batch.set(document, item);
+        }
+    }
+
+    // Returns false when the server refused the write and it was rolled back
+    private boolean pushOne(SQLiteDatabase db, String owner, T item, long stamp, boolean delete) throws Exception {
+        String id = getId(item);
+        WriteBatch batch = firestore.batch();
+        addWrite(batch, owner, item, delete);
+        try {
+            await(batch.commit());
+            markPushed(db, id, stamp, delete);
+            return true;
+        } catch (ExecutionException e) {
+            if (!isRejected(e.getCause())) {
+                throw e;
+            }
+            Log.w(TAG, "Server rejected the write of " + id + ", rolling it back", e.getCause());
+            rollBack(db, owner, id, stamp);
+            return false;
+        }
+    }
+
+    // Only clears the stamp that was pushed; an edit made meanwhile stays dirty
+    private void markPushed(SQLiteDatabase db, String id, long stamp, boolean delete) {
+        String[] whereArgs = {id, String.valueOf(stamp)};
+        if (delete) {
+            db.delete(table, PUSHED_ROW, whereArgs);
+        } else {
+            ContentValues values = new ContentValues();
+            values.put(LocalDatabase.COL_DIRTY, 0);
+            db.update(table, values, PUSHED_ROW, whereArgs);
+        }
+    }
+
+    private static boolean isRejected(Throwable error) {
+        if (!(error instanceof FirebaseFirestoreException)) {
+            return false;
+        }
+        FirebaseFirestoreException.Code code = ((FirebaseFirestoreException) error).getCode();
+        return code == FirebaseFirestoreException.Code.PERMISSION_DENIED
+                || code == FirebaseFirestoreException.Code.INVALID_ARGUMENT;
+    }
+
+    // Puts back the server's copy of a refused edit, or drops the row if the server has none
+    private void rollBack(SQLiteDatabase db, String owner, String id, long stamp) {
+        DocumentSnapshot document = null;
+        try {
+            document = await(remoteCollection(owner).document(id).get(Source.SERVER));
+        } catch (Exception e) {
+            Log.w(TAG, "Could not read back " + id + ", dropping the local copy", e);
+        }
+        T item = null;
+        if (document != null && document.exists()
+                && !Boolean.TRUE.equals(document.getBoolean(FIELD_DELETED))) {
+            item = document.toObject(modelClass);
+        }
+        db.beginTransaction();
+        try {
+            // A newer edit made meanwhile stays; it gets its own push
+            int removed = db.delete(table, PUSHED_ROW, new String[]{id, String.valueOf(stamp)});
+            if (removed > 0 && item != null) {
+                setId(item, id);
+                upsert(db, item, owner, 0);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    void pull(String owner) throws Exception {
+        String syncKey = syncKey(owner);
+        long highWaterMark = database.getHighWaterMark(syncKey);
+
+        // The first pull takes everything, including documents written before updatedAt existed,
+        // walking the collection in document id order; later pulls only what changed since
+        Query query = remoteQuery(owner);
+        if (highWaterMark > 0) {
+            query = query.whereGreaterThan(FIELD_UPDATED_AT, new Date(highWaterMark))
+                    .orderBy(FIELD_UPDATED_AT);
+        } else {
+            query = query.orderBy(FieldPath.documentId());
+        }
+
+        // Page through the result so a user with years of history never holds it all in memory
+        long newHighWaterMark = highWaterMark;
+        DocumentSnapshot lastDocument = null;
+        while (true) {
+            Query page = query.limit(PULL_PAGE_SIZE);
+            if (lastDocument != null) {
+                page = page.startAfter(lastDocument);
+            }
+            List<DocumentSnapshot> documents = await(page.get(Source.SERVER)).getDocuments();
+            newHighWaterMark = applyPulledPage(owner, documents, newHighWaterMark);
+            if (documents.size() < PULL_PAGE_SIZE) {
+                break;
+            }
+            lastDocument = documents.get(documents.size() - 1);
+        }
+
+        // Only advanced once every page is in; an interrupted pull starts over harmlessly
+        database.setHighWaterMark(syncKey, newHighWaterMark);
+    }
+
+    // One transaction and one table notification per page; returns the newest updatedAt seen
+    private long applyPulledPage(String owner, List<DocumentSnapshot> documents, long highWaterMark) {
+        SQLiteDatabase db = database.getWritableDatabase();
+        long newHighWaterMark = highWaterMark;
+        db.beginTransaction();
+        try {
+            for (DocumentSnapshot document : documents) {
+                Date updatedAt = document.getDate(FIELD_UPDATED_AT);
+                if (updatedAt != null) {
+                    newHighWaterMark = Math.max(newHighWaterMark, updatedAt.getTime());
+                }
+                if (isLocallyDirty(db, document.getId())) {
+                    continue; // Local edits win until they are pushed
+                }
+                if (Boolean.TRUE.equals(document.getBoolean(FIELD_DELETED))) {
+                    db.delete(table, LocalDatabase.COL_ID + " = ?", new String[]{document.getId()});
+                    continue;
+                }
+                T item = document.toObject(modelClass);
+                if (item != null) {
+                    setId(item, document.getId());
+                    upsert(db, item, owner, 0);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        if (!documents.isEmpty()) {
+            database.notifyTableChanged(table);
+        }
+        return newHighWaterMark;
+    }
+
+    // Live counterpart of pull(): once registered, every remote change costs one document read
+    // and is applied as it arrives. Registration waits behind any queued sync so it starts
+    // from the freshest high-water mark.
+    public ListenerRegistration listen(String owner) {
+        SyncEngine engine = SyncEngine.getInstance(context);
+        RemoteListener listener = new RemoteListener();
+        engine.getExecutor().execute(() -> {
+            String syncKey = syncKey(owner);
+            Query query = remoteQuery(owner)
+                    .whereGreaterThan(FIELD_UPDATED_AT, new Date(database.getHighWaterMark(syncKey)))
+                    .orderBy(FIELD_UPDATED_AT);
+            listener.attach(query.addSnapshotListener(engine.getExecutor(), (snapshot, error) -> {
+                if (error != null) {
+                    Log.w(TAG, "Listening to " + syncKey + " failed", error);
+                    return;
+                }
+                List<DocumentSnapshot> changed = new ArrayList<>();
+                for (DocumentChange change : snapshot.getDocumentChanges()) {
+                    DocumentSnapshot document = change.getDocument();
+                    // REMOVED only means the document left the query (deletes are tombstones);
+                    // our own unacknowledged writes have no server updatedAt yet
+                    if (change.getType() != DocumentChange.Type.REMOVED
+                            && !document.getMetadata().hasPendingWrites()) {
+                        changed.add(document);
+                    }
+                }
+                if (!changed.isEmpty()) {
+                    long highWaterMark = database.getHighWaterMark(syncKey);
+                    database.setHighWaterMark(syncKey, applyPulledPage(owner, changed, highWaterMark));
+                }
+            }));
+        });
+        return listener;
+    }
+
+    // Lets the caller remove the listener before it was even registered
+    private static class RemoteListener implements ListenerRegistration {
+        private ListenerRegistration registration;
+        private boolean removed = false;
+
+        synchronized void attach(ListenerRegistration registration) {
+            if (removed) {
+                registration.remove();
+            } else {
+                this.registration = registration;
+            }
+        }
+
+        @Override
+        public synchronized void remove() {
+            removed = true;
+            if (registration != null) {
+                registration.remove();
+                registration = null;
+            }
+        }
+    }
+
+    List<String> getOwnersWithPendingWrites() {
+        List<String> owners = new ArrayList<>();
+        try (Cursor cursor = database.getReadableDatabase().query(true, table, new String[]{LocalDatabase.COL_OWNER},
+                LocalDatabase.COL_DIRTY + " != 0", null, null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                owners.add(cursor.getString(0));
+            }
+        }
+        return owners;
+    }
+
+    boolean hasPendingWrites(String owner) {
+        try (Cursor cursor = database.getReadableDatabase().query(table, new String[]{LocalDatabase.COL_ID},
+                LocalDatabase.COL_OWNER + " = ? AND " + LocalDatabase.COL_DIRTY + " != 0",
+                new String[]{owner}, null, null, null, "1")) {
+            return cursor.moveToFirst();
+        }
+    }
+
+    private boolean isLocallyDirty(SQLiteDatabase db, String id) {
+        try (Cursor cursor = db.query(table, new String[]{LocalDatabase.COL_DIRTY},
+                LocalDatabase.COL_ID + " = ? AND " + LocalDatabase.COL_DIRTY + " != 0",
+                new String[]{id}, null, null, null)) {
+            return cursor.moveToFirst();
+        }
+    }
+
+    static <R> R await(Task<R> task) throws Exception {
+        return Tasks.await(task, REMOTE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    // Cursor helpers for the mappers
+    static Date getDate(Cursor cursor, String column) {
+        int index = cursor.getColumnIndexOrThrow(column);
+        return cursor.isNull(index) ? null : new Date(cursor.getLong(index));
+    }
+
+    static void putDate(ContentValues values, String column, Date date) {
+        values.put(column, date != null ? date.getTime() : null);
+    }
+
+    static String getString(Cursor cursor, String column) {
+        return cursor.getString(cursor.getColumnIndexOrThrow(column));
+    }
+
+    static long getLong(Cursor cursor, String column) {
+        return cursor.getLong(cursor.getColumnIndexOrThrow(column));
+    }
+
+    static int getInt(Cursor cursor, String column) {
+        return cursor.getInt(cursor.getColumnIndexOrThrow(column));
+    }
+
+    static float getFloat(Cursor cursor, String column) {
+        return cursor.getFloat(cursor.getColumnIndexOrThrow(column));
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.myapplication.service;
+
+/**
+ * Folds per-sample movement activity into fixed-length epochs of activity counts, the input
+ * actigraphy sleep/wake scoring works on. An epoch's count is the mean activity above the
+ * accelerometer noise floor, scaled to an integer, so it doesn't depend on how many samples
+ * landed in the epoch. Storage is a preallocated int[]; adding a sample never allocates.
+ *
+ * Calibration: Cole-Kripke's weights were fitted to the counts of a wrist actigraph, which a
+ * phone on the mattress doesn't produce. The scale is therefore pinned to one observable
+ * level instead: a minute, and its neighbours, whose mean activity above the noise floor is
+ * WAKE_ACTIVITY scores exactly at the wake threshold. That is a few seconds of turning over
+ * in a minute; one twitch stays sleep.
+ */
+class ActigraphyEpochAggregator {
+    static final long EPOCH_LENGTH_MS = 60 * 1000; // 1-minute epochs, as Cole-Kripke expects
+
+    static final float NOISE_FLOOR = 0.05f; // m/s², accelerometer noise at rest
+    static final float WAKE_ACTIVITY = 0.1f; // m/s² above the noise floor, held steady, is wake
+    // Counts per m/s² of mean activity, about 248
+    static final float COUNT_SCALE = (float) (SleepWakeScorer.STEADY_WAKE_COUNT / WAKE_ACTIVITY);
+
+    private final int[] counts;
+    private int epochCount = 0;
+    private long firstEpochStart = -1;
+
+    private long currentEpochStart = -1;
+    private double currentSum = 0;
+    private int currentSamples = 0;
+    private int droppedSamples = 0;
+
+    ActigraphyEpochAggregator(int maxEpochs) {
+        this.counts = new int[maxEpochs];
+    }
+
+    // activity is the dynamic (gravity-free) acceleration magnitude in m/s²
+    void addSample(long timestamp, float activity) {
+        if (firstEpochStart < 0) {
+            firstEpochStart = timestamp - timestamp % EPOCH_LENGTH_MS;
+            currentEpochStart = firstEpochStart;
+        }
+        while (timestamp >= currentEpochStart + EPOCH_LENGTH_MS && epochCount < counts.length) {
+            closeEpoch();
+        }
+        // Once every epoch is used the session has outgrown maxEpochs: there is no room for
+        // the epoch this sample falls in, so it is counted as dropped instead of scored
+        if (epochCount == counts.length) {
+            droppedSamples++;
+            return;
+        }
+        currentSum += Math.max(0f, activity - NOISE_FLOOR);
+        currentSamples++;
+    }
+
+    private void closeEpoch() {
+        counts[epochCount++] = currentSamples == 0 ? 0
+                : Math.round((float) (currentSum / currentSamples) * COUNT_SCALE);
+        currentEpochStart += EPOCH_LENGTH_MS;
+        currentSum = 0;
+        currentSamples = 0;
+    }
+
+    // Closes the partial epoch at the end of a session so its samples are scored too
+    void finish() {
+        if (currentSamples > 0) {
+            closeEpoch();
+        }
+    }
+
+    void reset() {
+        epochCount = 0;
+        firstEpochStart = -1;
+        currentEpochStart = -1;
+        currentSum = 0;
+        currentSamples = 0;
+        droppedSamples = 0;
+    }
+
+    // Completed epochs only; the epoch in progress is left out until it closes
+    int getEpochCount() { return epochCount; }
+
+    int getCount(int epoch) { return counts[epoch]; }
+
+    int[] getCounts() { return counts; }
+
+    long getFirstEpochStart() { return firstEpochStart; }
+
+    // Samples that came after the last epoch there was room for
+    int getDroppedSamples() { return droppedSamples; }
+}
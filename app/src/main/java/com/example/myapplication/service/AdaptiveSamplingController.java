@@ -0,0 +1,75 @@
+package com.example.myapplication.service;
+
+/**
+ * Picks the accelerometer sampling interval from the motion state. A sleeper is still most
+ * of the night, so after {@link #STILL_AFTER_MS} without motion the interval drops to the
+ * still rate, and the first sample with motion brings it straight back to the active rate.
+ * Every change is recorded (preallocated arrays, no allocation per sample) so metrics can
+ * weight samples by the time they stand for.
+ */
+class AdaptiveSamplingController {
+    static final float MOTION_THRESHOLD = 0.15f; // m/s² of dynamic acceleration
+    static final long STILL_AFTER_MS = 2 * 60 * 1000;
+
+    private final long activeInterval;
+    private final long stillInterval;
+
+    private final long[] changeTimes;
+    private final long[] changeIntervals;
+    private int changeCount = 0;
+
+    private boolean still = false;
+    private long lastMotionTime = -1;
+
+    AdaptiveSamplingController(long activeInterval, long stillInterval, long maxSessionLength) {
+        this.activeInterval = activeInterval;
+        this.stillInterval = stillInterval;
+        // Going still takes STILL_AFTER_MS, so a session can't switch more often than this
+        int maxChanges = (int) (2 * (maxSessionLength / STILL_AFTER_MS) + 2);
+        this.changeTimes = new long[maxChanges];
+        this.changeIntervals = new long[maxChanges];
+    }
+
+    // activity is the dynamic acceleration magnitude; returns true when the interval changed
+    boolean onSample(long timestamp, float activity) {
+        if (lastMotionTime < 0 || activity > MOTION_THRESHOLD) {
+            lastMotionTime = timestamp;
+            if (still) {
+                still = false;
+                recordChange(timestamp, activeInterval);
+                return true;
+            }
+        } else if (!still && timestamp - lastMotionTime >= STILL_AFTER_MS) {
+            still = true;
+            recordChange(timestamp, stillInterval);
+            return true;
+        }
+        return false;
+    }
+
+    private void recordChange(long timestamp, long interval) {
+        if (changeCount < changeTimes.length) {
+            changeTimes[changeCount] = timestamp;
+            changeIntervals[changeCount] = interval;
+            changeCount++;
+        }
+    }
+
+    void reset() {
+        still = false;
+        lastMotionTime = -1;
+        changeCount = 0;
+    }
+
+    long getInterval() { return still ? stillInterval : activeInterval; }
+
+    long getActiveInterval() { return activeInterval; }
+
+    boolean isStill() { return still; }
+
+    int getChangeCount() { return changeCount; }
+
+    long getChangeTime(int i) { return changeTimes[i]; }
+
+    long getChangeInterval(int i) { return changeIntervals[i]; }
+}
@@ -0,0 +1,53 @@
+package com.example.myapplication.service;
+
+/**
+ * Streaming gravity estimator: a per-axis low-pass filter tracks gravity, and what is left
+ * after subtracting it is the dynamic (body) acceleration. The filter coefficient comes from
+ * the time since the previous sample, so it behaves the same when the sampling rate changes.
+ * O(1) state, nothing allocated per sample.
+ */
+class GravityFilter {
+    static final long TIME_CONSTANT_MS = 5000; // Posture changes settle into gravity within a few seconds
+
+    private float gravityX;
+    private float gravityY;
+    private float gravityZ;
+    private float linearX;
+    private float linearY;
+    private float linearZ;
+    private long lastTimestamp = -1;
+
+    // Returns the magnitude of the dynamic acceleration, in m/s²
+    float update(long timestamp, float x, float y, float z) {
+        if (lastTimestamp < 0) {
+            // Assume the first sample is at rest
+            gravityX = x;
+            gravityY = y;
+            gravityZ = z;
+        } else {
+            long dt = Math.max(0, timestamp - lastTimestamp);
+            float alpha = (float) dt / (TIME_CONSTANT_MS + dt);
+            gravityX += alpha * (x - gravityX);
+            gravityY += alpha * (y - gravityY);
+            gravityZ += alpha * (z - gravityZ);
+        }
+        lastTimestamp = timestamp;
+
+        linearX = x - gravityX;
+        linearY = y - gravityY;
+        linearZ = z - gravityZ;
+        return (float) Math.sqrt(linearX * linearX + linearY * linearY + linearZ * linearZ);
+    }
+
+    void reset() {
+        lastTimestamp = -1;
+        gravityX = gravityY = gravityZ = 0;
+        linearX = linearY = linearZ = 0;
+    }
+
+    float getLinearX() { return linearX; }
+
+    float getLinearY() { return linearY; }
+
+    float getLinearZ() { return linearZ; }
+}
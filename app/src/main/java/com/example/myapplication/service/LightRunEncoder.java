@@ -0,0 +1,78 @@
+package com.example.myapplication.service;
+
+import com.example.myapplication.model.LightData;
+
+/**
+ * Run-length encodes the light channel. Samples extend the current run while they stay
+ * within a relative band around its mean (hysteresis), so a bedroom that stays dark for
+ * hours is a single run. A run also ends whenever a sample crosses the darkness threshold,
+ * which keeps time-in-darkness exact. Closed runs are read through the getters right after
+ * {@link #onSample} or {@link #finish} returns true; nothing is allocated.
+ */
+class LightRunEncoder {
+    static final float RELATIVE_THRESHOLD = 0.2f; // 20% change starts a new run
+    static final float MIN_THRESHOLD_LUX = 1.0f; // Ignore sub-lux flicker in the dark
+
+    // Open run
+    private long runStart = -1;
+    private double runSum = 0;
+    private int runSamples = 0;
+
+    // Last closed run
+    private long closedStart;
+    private float closedLux;
+    private long closedDuration;
+
+    // Returns true when this sample closed the previous run
+    boolean onSample(long timestamp, float lux) {
+        if (runStart < 0) {
+            startRun(timestamp, lux);
+            return false;
+        }
+        float mean = (float) (runSum / runSamples);
+        float band = Math.max(MIN_THRESHOLD_LUX, mean * RELATIVE_THRESHOLD);
+        boolean crossedDark = (lux < LightData.DARK_THRESHOLD_LUX) != (mean < LightData.DARK_THRESHOLD_LUX);
+        if (Math.abs(lux - mean) <= band && !crossedDark) {
+            runSum += lux;
+            runSamples++;
+            return false;
+        }
+        closeRun(timestamp);
+        startRun(timestamp, lux);
+        return true;
+    }
+
+    // Closes the open run at the end of the session; returns false when there was none
+    boolean finish(long endTime) {
+        if (runStart < 0) {
+            return false;
+        }
+        closeRun(Math.max(endTime, runStart));
+        runStart = -1;
+        return true;
+    }
+
+    private void startRun(long timestamp, float lux) {
+        runStart = timestamp;
+        runSum = lux;
+        runSamples = 1;
+    }
+
+    private void closeRun(long endTime) {
+        closedStart = runStart;
+        closedLux = (float) (runSum / runSamples);
+        closedDuration = endTime - runStart;
+    }
+
+    void reset() {
+        runStart = -1;
+        runSum = 0;
+        runSamples = 0;
+    }
+
+    long getClosedStart() { return closedStart; }
+
+    float getClosedLux() { return closedLux; }
+
+    long getClosedDuration() { return closedDuration; }
+}
@@ -0,0 +1,48 @@
+package com.example.myapplication.service;
+
+/**
+ * Per-session statistics on how sensor events are delivered. Events handed over within
+ * {@link #BATCH_GAP_MS} of each other are counted as one batch, i.e. one FIFO flush and
+ * therefore one CPU wake-up when hardware batching is active.
+ */
+class SensorBatchStats {
+    private static final long BATCH_GAP_MS = 100;
+
+    private long lastDeliveryTime = -1;
+    private int currentBatchSize = 0;
+    private int batchCount = 0;
+    private int maxBatchSize = 0;
+    private long eventCount = 0;
+
+    // deliveryTime must come from a monotonic clock (SystemClock.elapsedRealtime())
+    void onEventDelivered(long deliveryTime) {
+        if (lastDeliveryTime < 0 || deliveryTime - lastDeliveryTime > BATCH_GAP_MS) {
+            batchCount++;
+            currentBatchSize = 0;
+        }
+        currentBatchSize++;
+        eventCount++;
+        if (currentBatchSize > maxBatchSize) {
+            maxBatchSize = currentBatchSize;
+        }
+        lastDeliveryTime = deliveryTime;
+    }
+
+    void reset() {
+        lastDeliveryTime = -1;
+        currentBatchSize = 0;
+        batchCount = 0;
+        maxBatchSize = 0;
+        eventCount = 0;
+    }
+
+    int getBatchCount() { return batchCount; }
+
+    int getMaxBatchSize() { return maxBatchSize; }
+
+    long getEventCount() { return eventCount; }
+
+    float getAverageBatchSize() {
+        return batchCount == 0 ? 0 : (float) eventCount / batchCount;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.myapplication.service;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.myapplication.model.SleepSensorChunk;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uploads the raw sensor chunks queued in SensorUploadQueue. Runs only on an unmetered
+ * network with a healthy battery, several chunks per WriteBatch, and is retried with
+ * exponential backoff until the queue is empty.
+ */
+public class SensorChunkUploadWorker extends Worker {
+    private static final String TAG = "SensorChunkUpload";
+    private static final String UNIQUE_NAME = "sensor_chunk_upload";
+    // A chunk is a few tens of KB at most; this stays far below the 10 MB request limit
+    private static final int CHUNKS_PER_BATCH = 20;
+    private static final long UPLOAD_TIMEOUT_SECONDS = 60;
+
+    public SensorChunkUploadWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    // Charging is not required: a phone left off the charger overnight would otherwise
+    // hold its raw data for days; battery-not-low covers the drain
+    static void enqueue(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.UNMETERED)
+                .setRequiresBatteryNotLow(true)
+                .build();
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(SensorChunkUploadWorker.class)
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, 1, TimeUnit.MINUTES)
+                .build();
+        // APPEND_OR_REPLACE: chunks queued while a run is in progress get a run of their own
+        WorkManager.getInstance(context)
+                .enqueueUniqueWork(UNIQUE_NAME, ExistingWorkPolicy.APPEND_OR_REPLACE, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        SensorUploadQueue queue = new SensorUploadQueue(getApplicationContext().getFilesDir());
+        List<File> files = queue.list();
+        FirebaseFirestore firestore = FirebaseFirestore.getInstance();
+
+        for (int from = 0; from < files.size(); from += CHUNKS_PER_BATCH) {
+            if (isStopped()) {
+                return Result.retry();
+            }
+            List<File> batchFiles = new ArrayList<>();
+            WriteBatch batch = firestore.batch();
+            for (File file : files.subList(from, Math.min(from + CHUNKS_PER_BATCH, files.size()))) {
+                SleepSensorChunk chunk;
+                try {
+                    chunk = SensorUploadQueue.read(file);
+                } catch (IOException e) {
+                    // Files are renamed into place complete, so this one can never be sent
+                    Log.e(TAG, "Dropping unreadable queued chunk " + file.getName(), e);
+                    file.delete();
+                    continue;
+                }
+                // Same fixed document as before, so a retried batch overwrites instead of duplicating
+                batch.set(firestore.collection(SleepSensorService.SESSIONS_COLLECTION)
+                        .document(chunk.getSessionId())
+                        .collection(SleepSensorService.CHUNKS_COLLECTION)
+                        .document(String.format(Locale.US, "%05d", chunk.getChunkIndex())), chunk);
+                batchFiles.add(file);
+            }
+            if (batchFiles.isEmpty()) {
+                continue;
+            }
+
+            try {
+                Tasks.await(batch.commit(), UPLOAD_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                Log.w(TAG, "Chunk upload failed, " + (files.size() - from) + " chunk(s) left for the retry", e);
+                return Result.retry();
+            }
+            for (File file : batchFiles) {
+                file.delete();
+            }
+            Log.d(TAG, "Uploaded " + batchFiles.size() + " sensor chunk(s)");
+        }
+        return Result.success();
+    }
+}
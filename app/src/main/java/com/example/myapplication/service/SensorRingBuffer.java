@@ -0,0 +1,118 @@
+package com.example.myapplication.service;
+
+/**
+ * Fixed-capacity ring buffer of timestamped sensor samples backed by primitive arrays.
+ * Timestamps live in a long[] and the channels of each sample (x/y/z, lux...) in a flat
+ * float[], so adding a sample never allocates. Every sample gets a sequence number so a
+ * consumer can snapshot the buffer, upload asynchronously and then discard exactly what
+ * it uploaded while new samples keep coming in.
+ */
+class SensorRingBuffer {
+    private final int capacity;
+    private final int channels;
+    private final long[] timestamps;
+    private final float[] values;
+
+    private int head = 0; // Index of the oldest sample
+    private int size = 0;
+    private long writeSequence = 0; // Total samples ever added
+    private long overwrittenCount = 0;
+
+    SensorRingBuffer(int capacity, int channels) {
+        if (capacity <= 0 || channels <= 0) {
+            throw new IllegalArgumentException("capacity and channels must be positive");
+        }
+        this.capacity = capacity;
+        this.channels = channels;
+        this.timestamps = new long[capacity];
+        this.values = new float[capacity * channels];
+    }
+
+    void add(long timestamp, float v0) {
+        int slot = nextSlot(timestamp);
+        values[slot * channels] = v0;
+    }
+
+    void add(long timestamp, float v0, float v1) {
+        int slot = nextSlot(timestamp);
+        int base = slot * channels;
+        values[base] = v0;
+        values[base + 1] = v1;
+    }
+
+    void add(long timestamp, float v0, float v1, float v2) {
+        int slot = nextSlot(timestamp);
+        int base = slot * channels;
+        values[base] = v0;
+        values[base + 1] = v1;
+        values[base + 2] = v2;
+    }
+
+    void add(long timestamp, float v0, float v1, float v2, float v3) {
+        int slot = nextSlot(timestamp);
+        int base = slot * channels;
+        values[base] = v0;
+        values[base + 1] = v1;
+        values[base + 2] = v2;
+        values[base + 3] = v3;
+    }
+
+    private int nextSlot(long timestamp) {
+        int slot;
+        if (size < capacity) {
+            slot = (head + size) % capacity;
+            size++;
+        } else {
+            // Full: overwrite the oldest sample rather than growing
+            slot = head;
+            head = (head + 1) % capacity;
+            overwrittenCount++;
+        }
+        timestamps[slot] = timestamp;
+        writeSequence++;
+        return slot;
+    }
+
+    int size() { return size; }
+
+    boolean isEmpty() { return size == 0; }
+
+    int capacity() { return capacity; }
+
+    // i = 0 is the oldest sample still in the buffer
+    long getTimestamp(int i) {
+        return timestamps[index(i)];
+    }
+
+    float getValue(int i, int channel) {
+        return values[index(i) * channels + channel];
+    }
+
+    private int index(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("index " + i + ", size " + size);
+        }
+        return (head + i) % capacity;
+    }
+
+    // Sequence number just past the newest sample; snapshot this before an upload
+    long getWriteSequence() { return writeSequence; }
+
+    long getOverwrittenCount() { return overwrittenCount; }
+
+    // Drops every sample whose sequence number is below the given one
+    void discardUpTo(long sequence) {
+        long oldestSequence = writeSequence - size;
+        long toDiscard = Math.min(size, Math.max(0, sequence - oldestSequence));
+        head = (int) ((head + toDiscard) % capacity);
+        size -= (int) toDiscard;
+    }
+
+    // Empties the buffer for a new session; sequence numbers restart at 0
+    void clear() {
+        head = 0;
+        size = 0;
+        writeSequence = 0;
+        overwrittenCount = 0;
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.myapplication.service;
+
+import com.example.myapplication.model.SleepSensorChunk;
+import com.google.firebase.firestore.Blob;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * On-disk queue of encoded sensor chunks waiting for SensorChunkUploadWorker. The service
+ * hands each chunk over here instead of uploading it, so raw series never compete with the
+ * recording and only leave the device on an unmetered network. One file per chunk, written
+ * to a temporary name, fsynced and renamed, so a queued chunk is always complete.
+ */
+class SensorUploadQueue {
+    private static final String DIR_NAME = "sensor_upload_queue";
+    private static final String SUFFIX = ".chunk";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int FILE_VERSION = 1;
+    // A chunk is written in milliseconds; a temp file this old was left by a crash before the rename
+    static final long STALE_TEMP_MS = 10 * 60 * 1000;
+
+    private final File dir;
+
+    SensorUploadQueue(File filesDir) {
+        this.dir = new File(filesDir, DIR_NAME);
+    }
+
+    void add(SleepSensorChunk chunk) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        // Session id then zero-padded index: name order is upload order
+        String name = String.format(Locale.US, "%s_%05d", chunk.getSessionId(), chunk.getChunkIndex());
+        File temp = new File(dir, name + TEMP_SUFFIX);
+        try (FileOutputStream fileOut = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(fileOut)) {
+            out.writeByte(FILE_VERSION);
+            out.writeUTF(chunk.getSessionId());
+            out.writeUTF(chunk.getUserId() != null ? chunk.getUserId() : "");
+            out.writeInt(chunk.getChunkIndex());
+            out.writeLong(chunk.getStartTime().getTime());
+            out.writeLong(chunk.getEndTime().getTime());
+            out.writeInt(chunk.getSeriesFormat());
+            out.writeInt(chunk.getMovementCount());
+            out.writeInt(chunk.getLightCount());
+            writeBytes(out, chunk.getMovementSeries().toBytes());
+            writeBytes(out, chunk.getLightSeries().toBytes());
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        if (!temp.renameTo(new File(dir, name + SUFFIX))) {
+            temp.delete();
+            throw new IOException("Cannot queue chunk " + name);
+        }
+    }
+
+    // Queued chunk files, oldest first. Temp files left behind by a crash are deleted on the way.
+    List<File> list() {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        long staleBefore = System.currentTimeMillis() - STALE_TEMP_MS;
+        List<File> chunks = new ArrayList<>();
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(SUFFIX)) {
+                chunks.add(file);
+            } else if (name.endsWith(TEMP_SUFFIX) && file.lastModified() < staleBefore) {
+                // Never renamed into place, so its samples are still in the session log
+                file.delete();
+            }
+        }
+        Collections.sort(chunks);
+        return chunks;
+    }
+
+    static SleepSensorChunk read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int version = in.readUnsignedByte();
+            if (version != FILE_VERSION) {
+                throw new IOException("Unsupported queued chunk version " + version);
+            }
+            String sessionId = in.readUTF();
+            String userId = in.readUTF();
+            SleepSensorChunk chunk = new SleepSensorChunk(sessionId, userId.isEmpty() ? null : userId, in.readInt());
+            chunk.setStartTime(new Date(in.readLong()));
+            chunk.setEndTime(new Date(in.readLong()));
+            chunk.setSeriesFormat(in.readInt());
+            chunk.setMovementCount(in.readInt());
+            chunk.setLightCount(in.readInt());
+            chunk.setMovementSeries(Blob.fromBytes(readBytes(in)));
+            chunk.setLightSeries(Blob.fromBytes(readBytes(in)));
+            return chunk;
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
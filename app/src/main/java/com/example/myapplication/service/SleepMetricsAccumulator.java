@@ -0,0 +1,84 @@
+package com.example.myapplication.service;
+
+import com.example.myapplication.model.LightData;
+import com.example.myapplication.model.MovementData;
+
+/**
+ * Session-wide sleep metrics updated in O(1) per sample, so a save only reads the current
+ * values instead of walking the buffers. Movement mean/variance use the weighted form of
+ * Welford's algorithm, each sample weighted by the time it stands for; light is averaged
+ * over time from its runs.
+ */
+class SleepMetricsAccumulator {
+    // Dynamic (gravity-free) movement magnitude
+    private long movementCount = 0;
+    private double movementSum = 0;
+    private double movementWeight = 0; // Total weight, seconds of movement data
+    private double movementMean = 0;
+    private double movementM2 = 0; // Sum of squared deviations from the mean
+    private int significantMovements = 0;
+
+    // Light level, from run-length encoded runs
+    private long lightRunCount = 0;
+    private long lightTime = 0; // ms
+    private double lightTimeSum = 0; // lux * ms
+    private long darkTime = 0; // ms
+
+    // weight is the time the sample covers (the sampling interval), so rate changes don't bias the mean
+    void addMovement(float magnitude, float weight) {
+        movementCount++;
+        movementSum += magnitude;
+        movementWeight += weight;
+        double delta = magnitude - movementMean;
+        movementMean += delta * weight / movementWeight;
+        movementM2 += weight * delta * (magnitude - movementMean);
+        if (magnitude > MovementData.SIGNIFICANT_MOVEMENT_THRESHOLD) {
+            significantMovements++;
+        }
+    }
+
+    void addLightRun(float lux, long duration) {
+        lightRunCount++;
+        lightTime += duration;
+        lightTimeSum += (double) lux * duration;
+        if (lux < LightData.DARK_THRESHOLD_LUX) {
+            darkTime += duration;
+        }
+    }
+
+    void reset() {
+        movementCount = 0;
+        movementSum = 0;
+        movementWeight = 0;
+        movementMean = 0;
+        movementM2 = 0;
+        significantMovements = 0;
+        lightRunCount = 0;
+        lightTime = 0;
+        lightTimeSum = 0;
+        darkTime = 0;
+    }
+
+    long getMovementCount() { return movementCount; }
+
+    double getMovementSum() { return movementSum; }
+
+    float getMovementMean() { return (float) movementMean; }
+
+    float getMovementVariance() {
+        return movementCount < 2 ? 0
+                : (float) (movementM2 / movementWeight * movementCount / (movementCount - 1));
+    }
+
+    int getSignificantMovements() { return significantMovements; }
+
+    long getLightRunCount() { return lightRunCount; }
+
+    float getAverageLight() {
+        return lightTime == 0 ? 0 : (float) (lightTimeSum / lightTime);
+    }
+
+    float getPercentDark() {
+        return lightTime == 0 ? 0 : (darkTime * 100f) / lightTime;
+    }
+}
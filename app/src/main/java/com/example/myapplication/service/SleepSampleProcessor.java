@@ -0,0 +1,169 @@
+package com.example.myapplication.service;
+
+import com.example.myapplication.model.MovementData;
+import com.example.myapplication.utils.AppLog;
+
+import java.io.IOException;
+
+/**
+ * Hot path of the sleep sensor pipeline: throttles samples and feeds the ring buffers, the
+ * metrics accumulator, the actigraphy epochs, the adaptive sampler and the session log. Runs once per sensor event
+ * on the sensor thread and allocates nothing in steady state; everything is preallocated and
+ * timestamps are plain longs.
+ */
+class SleepSampleProcessor {
+    private static final String TAG = "SleepSampleProcessor";
+
+    private final long lightInterval;
+    private final SleepSessionLog sessionLog;
+
+    // Primitive ring buffers: movement channels are x/y/z plus the dynamic magnitude,
+    // light holds closed runs (start time, mean lux, dwell seconds).
+    // They hold a whole session so nothing is dropped between saves.
+    private final SensorRingBuffer movementBuffer;
+    private final SensorRingBuffer lightBuffer;
+    private final SleepMetricsAccumulator metrics = new SleepMetricsAccumulator();
+    private final ActigraphyEpochAggregator epochs;
+    private final AdaptiveSamplingController sampler;
+    private final GravityFilter gravityFilter = new GravityFilter();
+    private final LightRunEncoder lightRuns = new LightRunEncoder();
+
+    // Time slot the next kept sample belongs to, one interval after the previous slot
+    private long nextAccelerometerSlot = 0;
+    private long nextLightSlot = 0;
+    private boolean logging = true;
+
+    SleepSampleProcessor(long maxSessionLength, long accelerometerInterval, long stillAccelerometerInterval,
+                         long lightInterval, SleepSessionLog sessionLog) {
+        this.lightInterval = lightInterval;
+        this.sessionLog = sessionLog;
+        this.movementBuffer = new SensorRingBuffer((int) (maxSessionLength / accelerometerInterval), 4);
+        this.lightBuffer = new SensorRingBuffer((int) (maxSessionLength / lightInterval), 2);
+        this.epochs = new ActigraphyEpochAggregator(
+                (int) (maxSessionLength / ActigraphyEpochAggregator.EPOCH_LENGTH_MS));
+        this.sampler = new AdaptiveSamplingController(accelerometerInterval, stillAccelerometerInterval,
+                maxSessionLength);
+    }
+
+    // Throttled entry point for accelerometer events; returns true when the sample was kept
+    boolean onAccelerometer(long timestamp, float x, float y, float z) {
+        if (!isDue(timestamp, nextAccelerometerSlot, sampler.getInterval())) {
+            return false;
+        }
+        addMovement(timestamp, x, y, z);
+        // After the sample, so a rate change made by the sampler applies to the next slot
+        nextAccelerometerSlot = nextSlot(timestamp, nextAccelerometerSlot, sampler.getInterval());
+        return true;
+    }
+
+    // Throttled entry point for light events; returns true when the sample was kept
+    boolean onLight(long timestamp, float lightLevel) {
+        if (!isDue(timestamp, nextLightSlot, lightInterval)) {
+            return false;
+        }
+        addLight(timestamp, lightLevel);
+        nextLightSlot = nextSlot(timestamp, nextLightSlot, lightInterval);
+        return true;
+    }
+
+    // Sensors run at the registered period give or take some jitter, so a sample up to half an
+    // interval early still takes its slot; comparing against the full interval would drop every
+    // other event of a sensor registered at exactly that interval.
+    static boolean isDue(long timestamp, long slot, long interval) {
+        return timestamp >= slot - interval / 2;
+    }
+
+    // Slots advance from the previous slot rather than the sample, so a sensor delivering faster
+    // than asked still averages one kept sample per interval. After a gap the grid restarts at
+    // the sample instead of catching up with a burst.
+    static long nextSlot(long timestamp, long slot, long interval) {
+        return timestamp - slot > interval / 2 ? timestamp + interval : slot + interval;
+    }
+
+    void addMovement(long timestamp, float x, float y, float z) {
+        // Gravity alone is ~9.8 m/s²; only the dynamic part says whether the sleeper moved
+        float dynamicMagnitude = gravityFilter.update(timestamp, x, y, z);
+        movementBuffer.add(timestamp, x, y, z, dynamicMagnitude);
+        if (logging) {
+            try {
+                sessionLog.appendMovement(timestamp, x, y, z);
+            } catch (IOException e) {
+                AppLog.e(TAG, "Error writing sleep session log", e);
+            }
+        }
+
+        // Weight by the interval the sample stands for, so still periods sampled slowly
+        // count as much as their duration
+        metrics.addMovement(dynamicMagnitude, sampler.getInterval() / 1000f);
+
+        // Epochs average their samples, so they don't depend on the sampling rate
+        epochs.addSample(timestamp, dynamicMagnitude);
+
+        if (sampler.onSample(timestamp, dynamicMagnitude) && AppLog.DEBUG) {
+            AppLog.d(TAG, "Accelerometer interval now " + sampler.getInterval() + " ms");
+        }
+
+        if (AppLog.DEBUG && dynamicMagnitude > MovementData.SIGNIFICANT_MOVEMENT_THRESHOLD) {
+            AppLog.d(TAG, "Significant movement detected: " + dynamicMagnitude);
+        }
+    }
+
+    void addLight(long timestamp, float lightLevel) {
+        // Raw samples go to the log so a replay rebuilds the open run; only closed runs are stored
+        if (lightRuns.onSample(timestamp, lightLevel)) {
+            storeLightRun();
+        }
+        if (logging) {
+            try {
+                sessionLog.appendLight(timestamp, lightLevel);
+            } catch (IOException e) {
+                AppLog.e(TAG, "Error writing sleep session log", e);
+            }
+        }
+
+        if (AppLog.DEBUG) {
+            AppLog.d(TAG, "Light level: " + lightLevel + " lux");
+        }
+    }
+
+    private void storeLightRun() {
+        long duration = lightRuns.getClosedDuration();
+        lightBuffer.add(lightRuns.getClosedStart(), lightRuns.getClosedLux(), duration / 1000f);
+        metrics.addLightRun(lightRuns.getClosedLux(), duration);
+    }
+
+    // Closes what is still open at the end of the session so it is stored and scored too
+    void finish(long endTime) {
+        epochs.finish();
+        if (lightRuns.finish(endTime)) {
+            storeLightRun();
+        }
+    }
+
+    // Turned off while replaying the session log into the processor
+    void setLogging(boolean logging) {
+        this.logging = logging;
+    }
+
+    void reset() {
+        movementBuffer.clear();
+        lightBuffer.clear();
+        metrics.reset();
+        epochs.reset();
+        sampler.reset();
+        gravityFilter.reset();
+        lightRuns.reset();
+        nextAccelerometerSlot = 0;
+        nextLightSlot = 0;
+    }
+
+    SensorRingBuffer getMovementBuffer() { return movementBuffer; }
+
+    SensorRingBuffer getLightBuffer() { return lightBuffer; }
+
+    SleepMetricsAccumulator getMetrics() { return metrics; }
+
+    ActigraphyEpochAggregator getEpochs() { return epochs; }
+
+    AdaptiveSamplingController getSampler() { return sampler; }
+}
@@ -10,30 +10,41 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
+import android.hardware.SensorEventListener2;
 import android.hardware.SensorManager;
 import android.media.AudioManager;
 import android.os.Build;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
 import android.os.Looper;
 import android.os.PowerManager;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.core.app.NotificationCompat;
 import androidx.core.content.ContextCompat;
 
 import com.example.myapplication.R;
-import com.example.myapplication.model.LightData;
-import com.example.myapplication.model.MovementData;
+import com.example.myapplication.model.SleepSensorChunk;
 import com.example.myapplication.model.SleepSensorData;
+import com.example.myapplication.repository.SleepSessionRepository;
+import com.example.myapplication.utils.AppLog;
+import com.example.myapplication.utils.SensorSeriesCodec;
+import com.google.firebase.firestore.Blob;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.FirebaseFirestore;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Executor;
 
-public class SleepSensorService extends Service implements SensorEventListener {
+public class SleepSensorService extends Service implements SensorEventListener2 {
     private static final String PREF_NAME = "sleep_tracker_prefs";
     private static final String KEY_TRACKING_START_TIME = "tracking_start_time";
 
@@ -41,29 +52,63 @@ public class SleepSensorService extends Service implements SensorEventListener {
     private static final String TAG = "SleepSensorService";
     private static final String CHANNEL_ID = "SleepSensorChannel";
     private static final int NOTIFICATION_ID = 101;
+    static final String SESSIONS_COLLECTION = "sleep_sensor_sessions";
+    static final String CHUNKS_COLLECTION = "chunks";
+    private static final String SESSION_LOG_FILE = "sleep_session.wal";
 
     // Sampling intervals (in milliseconds)
     private static final int ACCELEROMETER_INTERVAL = 1000; // 1 second - collect more frequently
+    private static final int ACCELEROMETER_STILL_INTERVAL = 10000; // While the user lies still
     private static final int LIGHT_SENSOR_INTERVAL = 5000; // 5 seconds - collect more frequently
     private static final long WAKE_LOCK_TIMEOUT = 12 * 60 * 60 * 1000; // 12 hours max
     private static final long PERIODIC_SAVE_INTERVAL = 5 * 60 * 1000; // 5 minutes
 
+    // Hardware batching: let the sensor hub fill its FIFO while the CPU sleeps
+    private static final int LIGHT_SAMPLING_PERIOD_US = LIGHT_SENSOR_INTERVAL * 1000;
+    private static final long MAX_REPORT_LATENCY_US = 5 * 60 * 1000 * 1000L; // 5 minutes
+    private static final long FLUSH_TIMEOUT = 2000; // Max wait for the FIFO flush when stopping
+    private static final long SAVE_WAKE_LOCK_TIMEOUT = 10 * 1000; // Upper bound for one batching-mode save
+
     private SensorManager sensorManager;
     private Sensor accelerometer;
     private Sensor lightSensor;
     private PowerManager.WakeLock wakeLock;
+    private PowerManager.WakeLock saveWakeLock;
     private Handler handler;
     private AudioManager audioManager;
 
-    private boolean isMonitoring = false;
-    private String userId;
-    private SleepSensorData currentSession;
+    // Sensor pipeline thread: receives sensor events, owns the buffers and runs the saves.
+    // Everything below "sensor thread state" must only be touched from it.
+    private HandlerThread sensorThread;
+    private Handler sensorHandler;
+    private Executor sensorExecutor;
 
-    private List<MovementData> movementBuffer = new ArrayList<>();
-    private List<LightData> lightBuffer = new ArrayList<>();
+    private volatile boolean isMonitoring = false;
+    private boolean batchingSupported = false;
+    private boolean flushPending = false;
+    private String userId;
 
-    private long lastAccelerometerTime = 0;
-    private long lastLightSensorTime = 0;
+    // Sensor thread state
+    private SleepSensorData currentSession;
+    private DocumentReference sessionRef;
+    private int nextChunkIndex = 0;
+
+    // Write-ahead log of the running session, replayed after the process is killed
+    private SleepSessionLog sessionLog;
+    // Chunks waiting for SensorChunkUploadWorker
+    private SensorUploadQueue uploadQueue;
+    private long recoveredMovementSequence = 0;
+    private long recoveredLightSequence = 0;
+    private final SensorBatchStats batchStats = new SensorBatchStats();
+    private long wallClockOffset = 0; // currentTimeMillis - elapsedRealtime, to date sensor events
+    private long lastSaveTime = 0;
+
+    // Allocation-free per-sample processing; owns the buffers, metrics and epochs
+    private SleepSampleProcessor processor;
+    private SensorRingBuffer movementBuffer;
+    private SensorRingBuffer lightBuffer;
+    private long registeredAccelerometerInterval = 0; // Rate the accelerometer listener runs at
+    private boolean rateChangePending = false;
 
     @Override
     public void onCreate() {
@@ -73,6 +118,20 @@ public class SleepSensorService extends Service implements SensorEventListener {
         // Initialize handler for periodic tasks
         handler = new Handler(Looper.getMainLooper());
 
+        // Sensor processing and saves run off the main thread
+        sensorThread = new HandlerThread("SleepSensorThread", Process.THREAD_PRIORITY_BACKGROUND);
+        sensorThread.start();
+        sensorHandler = new Handler(sensorThread.getLooper());
+        sensorExecutor = sensorHandler::post;
+
+        sessionLog = new SleepSessionLog(new File(getFilesDir(), SESSION_LOG_FILE));
+        uploadQueue = new SensorUploadQueue(getFilesDir());
+        // Sized for a whole session (up to the wake lock timeout)
+        processor = new SleepSampleProcessor(WAKE_LOCK_TIMEOUT, ACCELEROMETER_INTERVAL,
+                ACCELEROMETER_STILL_INTERVAL, LIGHT_SENSOR_INTERVAL, sessionLog);
+        movementBuffer = processor.getMovementBuffer();
+        lightBuffer = processor.getLightBuffer();
+
         // Initialize audio manager for DND mode
         audioManager = (AudioManager) getSystemService(Context.AUDIO_SERVICE);
 
@@ -82,8 +141,16 @@ public class SleepSensorService extends Service implements SensorEventListener {
         // Initialize sensors
         sensorManager = (SensorManager) getSystemService(Context.SENSOR_SERVICE);
         if (sensorManager != null) {
-            accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+            // A wake-up accelerometer with a FIFO can batch overnight and wake us only to flush
+            Sensor wakeUpAccelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER, true);
+            if (wakeUpAccelerometer != null && wakeUpAccelerometer.getFifoMaxEventCount() > 0) {
+                accelerometer = wakeUpAccelerometer;
+                batchingSupported = true;
+            } else {
+                accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+            }
             lightSensor = sensorManager.getDefaultSensor(Sensor.TYPE_LIGHT);
+            Log.d(TAG, "Hardware sensor batching supported: " + batchingSupported);
         }
 
         // Initialize wake lock to keep CPU running
@@ -93,6 +160,12 @@ public class SleepSensorService extends Service implements SensorEventListener {
                     PowerManager.PARTIAL_WAKE_LOCK,
                     "SleepTrackerApp::SleepSensorWakeLock"
             );
+            // Held only while a save triggered by a flushed batch runs
+            saveWakeLock = powerManager.newWakeLock(
+                    PowerManager.PARTIAL_WAKE_LOCK,
+                    "SleepTrackerApp::SleepSensorSaveWakeLock"
+            );
+            saveWakeLock.setReferenceCounted(false);
         }
     }
 
@@ -106,19 +179,44 @@ public class SleepSensorService extends Service implements SensorEventListener {
             boolean isAutoStop = intent.getBooleanExtra("auto_stop", false);
 
             if ("start".equals(action)) {
-                startSleepMonitoring();
+                startSleepMonitoring(false);
 
                 // Send notification if auto-stopped
                 if (isAutoStop) {
                     sendAutoStopNotification();
                 }
+            } else if ("resume".equals(action)) {
+                resumeSleepMonitoring();
             } else if ("stop".equals(action)) {
                 stopSleepMonitoring();
             }
+        } else {
+            // Restarted by the system after our process was killed
+            resumeSleepMonitoring();
         }
 
         return START_STICKY;
     }
+
+    // Picks up an interrupted session from the write-ahead log
+    private void resumeSleepMonitoring() {
+        boolean wasMonitoring = getSharedPreferences(PREF_NAME, MODE_PRIVATE)
+                .getBoolean(KEY_IS_MONITORING, false);
+        if (isMonitoring) {
+            return;
+        }
+        if (!wasMonitoring || !sessionLog.exists()) {
+            Log.d(TAG, "No interrupted sleep session to resume");
+            // We may have been started as a foreground service, which must still call startForeground
+            startForeground(NOTIFICATION_ID, createNotification());
+            stopForeground(true);
+            stopSelf();
+            return;
+        }
+
+        Log.d(TAG, "Resuming interrupted sleep session");
+        startSleepMonitoring(true);
+    }
     private void sendAutoStopNotification() {
         // Check for POST_NOTIFICATIONS permission on Android 13+
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
@@ -148,7 +246,7 @@ public class SleepSensorService extends Service implements SensorEventListener {
         prefs.edit().putBoolean(KEY_IS_MONITORING, isMonitoring).apply();
         Log.d(TAG, "Monitoring state saved: " + isMonitoring);
     }
-    private void startSleepMonitoring() {
+    private void startSleepMonitoring(boolean resume) {
         if (isMonitoring) {
             Log.w(TAG, "Already monitoring");
             return;
@@ -164,8 +262,8 @@ public class SleepSensorService extends Service implements SensorEventListener {
         // Start foreground service
         startForeground(NOTIFICATION_ID, createNotification());
 
-        // Acquire wake lock with timeout to ensure cleanup
-        if (wakeLock != null && !wakeLock.isHeld()) {
+        // Without a sensor FIFO, keep the CPU awake for the whole night (with timeout to ensure cleanup)
+        if (!batchingSupported && wakeLock != null && !wakeLock.isHeld()) {
             try {
                 wakeLock.acquire(WAKE_LOCK_TIMEOUT);
                 Log.d(TAG, "Wake lock acquired with 12-hour timeout");
@@ -174,24 +272,24 @@ public class SleepSensorService extends Service implements SensorEventListener {
             }
         }
 
-        // Initialize new session
-        currentSession = new SleepSensorData(userId, new Date());
-        movementBuffer.clear();
-        lightBuffer.clear();
-
-        // Register sensor listeners with appropriate delays
-        try {
-            sensorManager.registerListener(this, accelerometer,
-                    SensorManager.SENSOR_DELAY_UI);
-            Log.d(TAG, "Accelerometer registered");
-        } catch (Exception e) {
-            Log.e(TAG, "Error registering accelerometer listener", e);
+        // Initialize (or recover) the session on the sensor thread, ahead of any sensor event
+        final String sessionUserId = userId;
+        if (resume) {
+            sensorHandler.post(() -> recoverSession(sessionUserId));
+        } else {
+            sensorHandler.post(() -> startSession(sessionUserId));
         }
 
+        // Register sensor listeners at the rate we actually keep, batched when the FIFO allows it,
+        // with events delivered on the sensor thread. The accelerometer starts at the active
+        // rate; the sensor thread re-registers it as the motion state changes.
+        sensorHandler.post(() -> registerAccelerometer(ACCELEROMETER_INTERVAL));
+
         if (lightSensor != null) {
             try {
+                int latencyUs = batchingSupported ? getMaxReportLatencyUs(lightSensor, LIGHT_SAMPLING_PERIOD_US) : 0;
                 sensorManager.registerListener(this, lightSensor,
-                        SensorManager.SENSOR_DELAY_UI);
+                        LIGHT_SAMPLING_PERIOD_US, latencyUs, sensorHandler);
                 Log.d(TAG, "Light sensor enabled");
             } catch (Exception e) {
                 Log.e(TAG, "Error registering light sensor listener", e);
@@ -202,13 +300,18 @@ public class SleepSensorService extends Service implements SensorEventListener {
 
         isMonitoring = true;
         saveMonitoringState(true);
-        saveTrackingStartTime();
+        if (!resume) {
+            saveTrackingStartTime();
+        }
 
-        // Start periodic save task
-        try {
-            startPeriodicSave();
-        } catch (Exception e) {
-            Log.e(TAG, "Error starting periodic save", e);
+        // Start periodic save task; in batching mode saves are driven by the flushed batches instead,
+        // since handler timers don't advance while the CPU sleeps
+        if (!batchingSupported) {
+            try {
+                startPeriodicSave();
+            } catch (Exception e) {
+                Log.e(TAG, "Error starting periodic save", e);
+            }
         }
 
         // Enable Do Not Disturb mode
@@ -221,6 +324,93 @@ public class SleepSensorService extends Service implements SensorEventListener {
         Log.d(TAG, "Sleep monitoring started successfully - sensors registered");
     }
 
+    // Runs on the sensor thread
+    private void startSession(String sessionUserId) {
+        initSession(sessionUserId, null, System.currentTimeMillis());
+        try {
+            sessionLog.start(sessionUserId, currentSession.getId(), currentSession.getSessionStartTime().getTime());
+        } catch (IOException e) {
+            Log.e(TAG, "Error starting sleep session log", e);
+        }
+    }
+
+    // Runs on the sensor thread: rebuilds the interrupted session by replaying the log
+    private void recoverSession(String fallbackUserId) {
+        currentSession = null;
+        recoveredMovementSequence = 0;
+        recoveredLightSequence = 0;
+        boolean recovered = false;
+        processor.setLogging(false);
+        try {
+            recovered = sessionLog.replay(replayListener);
+        } catch (IOException e) {
+            Log.e(TAG, "Error replaying sleep session log", e);
+        } finally {
+            processor.setLogging(true);
+        }
+
+        if (!recovered || currentSession == null) {
+            Log.w(TAG, "Sleep session log unusable, starting a new session");
+            startSession(fallbackUserId);
+            return;
+        }
+
+        // Uploaded samples only had to rebuild the metrics; the rest goes out with the next chunk
+        movementBuffer.discardUpTo(recoveredMovementSequence);
+        lightBuffer.discardUpTo(recoveredLightSequence);
+        Log.d(TAG, "Recovered sleep session " + currentSession.getId() + ": " + movementBuffer.size()
+                + " movement readings pending, next chunk " + nextChunkIndex);
+    }
+
+    private final SleepSessionLog.ReplayListener replayListener = new SleepSessionLog.ReplayListener() {
+        @Override
+        public void onSessionStart(String sessionUserId, String sessionId, long startTime) {
+            initSession(sessionUserId, sessionId, startTime);
+        }
+
+        @Override
+        public void onMovement(long timestamp, float x, float y, float z) {
+            processor.addMovement(timestamp, x, y, z);
+        }
+
+        @Override
+        public void onLight(long timestamp, float lightLevel) {
+            processor.addLight(timestamp, lightLevel);
+        }
+
+        @Override
+        public void onChunkCommitted(int chunkIndex, long movementSequence, long lightSequence) {
+            nextChunkIndex = chunkIndex;
+            recoveredMovementSequence = movementSequence;
+            recoveredLightSequence = lightSequence;
+        }
+    };
+
+    // sessionId is null for a new session, or the id of the session being recovered
+    private void initSession(String sessionUserId, String sessionId, long startTime) {
+        currentSession = new SleepSensorData(sessionUserId, new Date(startTime));
+        processor.reset();
+        batchStats.reset();
+        wallClockOffset = System.currentTimeMillis() - SystemClock.elapsedRealtime();
+        lastSaveTime = System.currentTimeMillis();
+        nextChunkIndex = 0;
+
+        // The session document is written once up front; samples follow as chunks
+        sessionRef = null;
+        if (sessionUserId != null) {
+            try {
+                CollectionReference sessions = FirebaseFirestore.getInstance().collection(SESSIONS_COLLECTION);
+                sessionRef = sessionId != null ? sessions.document(sessionId) : sessions.document();
+                currentSession.setId(sessionRef.getId());
+                if (sessionId == null) {
+                    writeSessionDocument();
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error creating sleep sensor session", e);
+            }
+        }
+    }
+
     private void enableDoNotDisturb() {
         if (audioManager != null) {
             try {
@@ -252,8 +442,35 @@ public class SleepSensorService extends Service implements SensorEventListener {
         }
     }
 
+    // Runs on the sensor thread
+    private void registerAccelerometer(long intervalMs) {
+        try {
+            if (registeredAccelerometerInterval > 0) {
+                sensorManager.unregisterListener(this, accelerometer);
+            }
+            int samplingPeriodUs = (int) (intervalMs * 1000);
+            int latencyUs = batchingSupported ? getMaxReportLatencyUs(accelerometer, samplingPeriodUs) : 0;
+            sensorManager.registerListener(this, accelerometer, samplingPeriodUs, latencyUs, sensorHandler);
+            registeredAccelerometerInterval = intervalMs;
+            Log.d(TAG, "Accelerometer registered every " + intervalMs + " ms, max report latency: "
+                    + latencyUs + " us");
+        } catch (Exception e) {
+            Log.e(TAG, "Error registering accelerometer listener", e);
+        }
+    }
+
+    // Largest latency that still fits in the sensor's FIFO (with some headroom), capped at MAX_REPORT_LATENCY_US
+    private int getMaxReportLatencyUs(Sensor sensor, int samplingPeriodUs) {
+        int fifoSize = sensor.getFifoMaxEventCount();
+        if (fifoSize <= 0) {
+            return 0;
+        }
+        long fifoSpanUs = (long) fifoSize * samplingPeriodUs * 8 / 10;
+        return (int) Math.min(MAX_REPORT_LATENCY_US, fifoSpanUs);
+    }
+
     private void startPeriodicSave() {
-        handler.postDelayed(periodicSaveRunnable, PERIODIC_SAVE_INTERVAL);
+        sensorHandler.postDelayed(periodicSaveRunnable, PERIODIC_SAVE_INTERVAL);
         Log.d(TAG, "Periodic save scheduled");
     }
 
@@ -263,11 +480,11 @@ public class SleepSensorService extends Service implements SensorEventListener {
             try {
                 if (isMonitoring && currentSession != null && (!movementBuffer.isEmpty() || !lightBuffer.isEmpty())) {
                     Log.d(TAG, "Periodic save: " + movementBuffer.size() + " movement readings");
-                    saveSessionData();
+                    saveSessionData(false);
                 }
                 // Reschedule next save if still monitoring
-                if (isMonitoring && handler != null) {
-                    handler.postDelayed(this, PERIODIC_SAVE_INTERVAL);
+                if (isMonitoring && sensorHandler != null) {
+                    sensorHandler.postDelayed(this, PERIODIC_SAVE_INTERVAL);
                 }
             } catch (Exception e) {
                 Log.e(TAG, "Error in periodic save runnable", e);
@@ -288,6 +505,40 @@ public class SleepSensorService extends Service implements SensorEventListener {
             return;
         }
 
+        // Drain the sensor FIFO first so the last batch isn't lost when we unregister
+        if (batchingSupported && !flushPending) {
+            try {
+                if (sensorManager.flush(this)) {
+                    flushPending = true;
+                    handler.postDelayed(finishStopRunnable, FLUSH_TIMEOUT);
+                    Log.d(TAG, "Flushing sensor FIFO before stopping");
+                    return;
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error flushing sensors", e);
+            }
+        }
+
+        finishStopMonitoring();
+    }
+
+    private final Runnable finishStopRunnable = this::finishStopMonitoring;
+
+    @Override
+    public void onFlushCompleted(Sensor sensor) {
+        // Called on the sensor thread, after the flushed events; finish the stop on the main thread
+        if (sensor == accelerometer) {
+            handler.removeCallbacks(finishStopRunnable);
+            handler.post(finishStopRunnable);
+        }
+    }
+
+    private void finishStopMonitoring() {
+        if (!isMonitoring) {
+            return;
+        }
+        flushPending = false;
+
         Log.d(TAG, "Stopping sleep monitoring");
 
         // Disable Do Not Disturb mode
@@ -299,7 +550,7 @@ public class SleepSensorService extends Service implements SensorEventListener {
 
         // Cancel periodic save task
         try {
-            handler.removeCallbacks(periodicSaveRunnable);
+            sensorHandler.removeCallbacks(periodicSaveRunnable);
         } catch (Exception e) {
             Log.e(TAG, "Error removing periodic save callback", e);
         }
@@ -311,6 +562,10 @@ public class SleepSensorService extends Service implements SensorEventListener {
             Log.e(TAG, "Error unregistering sensors", e);
         }
 
+        Log.d(TAG, String.format("Sensor delivery - Events: %d, Batches: %d, Avg batch: %.1f, Max batch: %d",
+                batchStats.getEventCount(), batchStats.getBatchCount(),
+                batchStats.getAverageBatchSize(), batchStats.getMaxBatchSize()));
+
         // Release wake lock
         if (wakeLock != null && wakeLock.isHeld()) {
             try {
@@ -321,12 +576,20 @@ public class SleepSensorService extends Service implements SensorEventListener {
             }
         }
 
-        // Save final session data
-        try {
-            saveSessionData();
-        } catch (Exception e) {
-            Log.e(TAG, "Error saving session data", e);
-        }
+        // Save final session data once the sensor thread has processed every queued event
+        sensorHandler.post(() -> {
+            // Again on this thread, in case a rate change re-registered the accelerometer meanwhile
+            sensorHandler.removeCallbacks(applyRateChangeRunnable);
+            rateChangePending = false;
+            sensorManager.unregisterListener(this);
+            registeredAccelerometerInterval = 0;
+            try {
+                processor.finish(System.currentTimeMillis());
+                saveSessionData(true);
+            } catch (Exception e) {
+                Log.e(TAG, "Error saving session data", e);
+            }
+        });
 
         // Stop foreground service
         try {
@@ -343,136 +606,279 @@ public class SleepSensorService extends Service implements SensorEventListener {
 
     @Override
     public void onSensorChanged(SensorEvent event) {
-        long currentTime = System.currentTimeMillis();
+        // Use the event's own timestamp: batched events are delivered long after they were sampled
+        long currentTime = wallClockOffset + event.timestamp / 1_000_000L;
+        batchStats.onEventDelivered(SystemClock.elapsedRealtime());
 
         switch (event.sensor.getType()) {
             case Sensor.TYPE_ACCELEROMETER:
-                // Throttle accelerometer readings to save battery
-                if (currentTime - lastAccelerometerTime >= ACCELEROMETER_INTERVAL) {
-                    processAccelerometerData(event.values[0], event.values[1], event.values[2]);
-                    lastAccelerometerTime = currentTime;
-                    Log.v(TAG, "Accelerometer data processed: x=" + event.values[0] +
-                            " y=" + event.values[1] + " z=" + event.values[2]);
+                // Throttled inside the processor to the rate we keep
+                if (processor.onAccelerometer(currentTime, event.values[0], event.values[1], event.values[2])) {
+                    if (AppLog.VERBOSE) {
+                        AppLog.v(TAG, "Accelerometer data processed: x=" + event.values[0] +
+                                " y=" + event.values[1] + " z=" + event.values[2]);
+                    }
+                    // Follow the motion state: slow the sensor down while still, speed it up on movement.
+                    // Re-registering drops the rest of the batch being delivered, so wait until after it.
+                    if (!rateChangePending
+                            && processor.getSampler().getInterval() != registeredAccelerometerInterval) {
+                        rateChangePending = true;
+                        sensorHandler.post(applyRateChangeRunnable);
+                    }
                 }
                 break;
 
             case Sensor.TYPE_LIGHT:
-                // Throttle light sensor readings
-                if (currentTime - lastLightSensorTime >= LIGHT_SENSOR_INTERVAL) {
-                    processLightData(event.values[0]);
-                    lastLightSensorTime = currentTime;
-                    Log.v(TAG, "Light sensor data processed: " + event.values[0] + " lux");
+                if (processor.onLight(currentTime, event.values[0]) && AppLog.VERBOSE) {
+                    AppLog.v(TAG, "Light sensor data processed: " + event.values[0] + " lux");
                 }
                 break;
         }
-    }
-
-    private void processAccelerometerData(float x, float y, float z) {
-        MovementData movement = new MovementData(new Date(), x, y, z);
-        movementBuffer.add(movement);
-
-        // Log significant movements
-        if (movement.isSignificantMovement()) {
-            Log.d(TAG, "Significant movement detected: " + movement.getMagnitude());
-        }
 
-        // Keep buffer size manageable
-        if (movementBuffer.size() > 1000) {
-            movementBuffer = movementBuffer.subList(500, 1000);
+        // In batching mode the flushed batch is our only wake-up, so save from here
+        if (batchingSupported && isMonitoring
+                && System.currentTimeMillis() - lastSaveTime >= PERIODIC_SAVE_INTERVAL) {
+            saveInBatchingMode();
         }
     }
 
-    private void processLightData(float lightLevel) {
-        LightData lightData = new LightData(new Date(), lightLevel);
-        lightBuffer.add(lightData);
-
-        Log.d(TAG, "Light level: " + lightLevel + " lux, Is dark: " + lightData.isDark());
-
-        // Keep buffer size manageable
-        if (lightBuffer.size() > 500) {
-            lightBuffer = lightBuffer.subList(250, 500);
+    // The wake-up event only keeps the CPU up for its own delivery, so the save takes a short
+    // timed wake lock of its own; the timeout bounds it should the save hang on I/O
+    private void saveInBatchingMode() {
+        if (saveWakeLock != null) {
+            saveWakeLock.acquire(SAVE_WAKE_LOCK_TIMEOUT);
+        }
+        try {
+            saveSessionData(false);
+        } finally {
+            if (saveWakeLock != null && saveWakeLock.isHeld()) {
+                saveWakeLock.release();
+            }
         }
     }
 
+    // Posted behind the batch in delivery, so every event of it is processed at the old rate
+    private final Runnable applyRateChangeRunnable = new Runnable() {
+        @Override
+        public void run() {
+            rateChangePending = false;
+            long interval = processor.getSampler().getInterval();
+            // Not once stopped (the interval is reset then), nor while a flush is outstanding
+            if (interval != registeredAccelerometerInterval && registeredAccelerometerInterval > 0
+                    && isMonitoring && !flushPending) {
+                registerAccelerometer(interval);
+            }
+        }
+    };
 
-    private void saveSessionData() {
-        if (userId == null || currentSession == null) {
+    // Runs on the sensor thread. Queues the samples gathered since the last chunk for the
+    // background upload; the final save also writes the session summary right away.
+    private void saveSessionData(boolean isFinal) {
+        if (currentSession == null || currentSession.getUserId() == null || sessionRef == null) {
             Log.w(TAG, "Cannot save data: No user or session");
+            if (isFinal) {
+                sessionLog.delete();
+            }
             return;
         }
 
         // Update session end time
         currentSession.setSessionEndTime(new Date());
+        lastSaveTime = System.currentTimeMillis();
 
-        // Calculate metrics if we have data
-        if (!movementBuffer.isEmpty() || !lightBuffer.isEmpty()) {
-            try {
-                calculateSleepMetrics();
-
-                // Save to Firebase
-                FirebaseFirestore db = FirebaseFirestore.getInstance();
-                if (db != null) {
-                    db.collection("sleep_sensor_sessions")
-                            .add(currentSession)
-                            .addOnSuccessListener(documentReference -> {
-                                Log.d(TAG, "Sleep sensor data saved: " + documentReference.getId());
-
-                                // Clear buffers after successful save
-                                movementBuffer.clear();
-                                lightBuffer.clear();
-                            })
-                            .addOnFailureListener(e -> Log.e(TAG, "Error saving sleep sensor data", e));
-                } else {
-                    Log.w(TAG, "FirebaseFirestore not initialized");
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error in saveSessionData", e);
+        try {
+            queuePendingChunk();
+            if (isFinal) {
+                writeSessionSummary();
             }
+        } catch (Exception e) {
+            Log.e(TAG, "Error in saveSessionData", e);
         }
     }
 
-    private void calculateSleepMetrics() {
-        // Calculate movement metrics
-        int significantMovements = 0;
-        float totalMovement = 0;
-
-        for (MovementData movement : movementBuffer) {
-            totalMovement += movement.getMagnitude();
-            if (movement.isSignificantMovement()) {
-                significantMovements++;
-            }
+    // Raw series are heavy and nobody waits for them: they go to the on-disk upload queue and
+    // leave the device later, on an unmetered network, through SensorChunkUploadWorker
+    private void queuePendingChunk() {
+        if (movementBuffer.isEmpty() && lightBuffer.isEmpty()) {
+            return;
         }
 
-        float avgMovement = movementBuffer.isEmpty() ? 0 : totalMovement / movementBuffer.size();
+        final int chunkIndex = nextChunkIndex;
+        SleepSensorChunk chunk = buildChunk(chunkIndex);
 
-        // Calculate light metrics
-        int darkReadings = 0;
-        float totalLight = 0;
+        // Remember what this chunk covers so only those samples are dropped once it is queued
+        final long movementSequence = movementBuffer.getWriteSequence();
+        final long lightSequence = lightBuffer.getWriteSequence();
 
-        for (LightData light : lightBuffer) {
-            totalLight += light.getLightLevel();
-            if (light.isDark()) {
-                darkReadings++;
-            }
+        try {
+            uploadQueue.add(chunk);
+        } catch (IOException e) {
+            // The samples stay buffered (and in the log) for the next save
+            Log.e(TAG, "Error queuing sleep sensor chunk " + chunkIndex, e);
+            return;
         }
+        Log.d(TAG, "Sleep sensor chunk " + chunkIndex + " queued for upload");
+
+        movementBuffer.discardUpTo(movementSequence);
+        lightBuffer.discardUpTo(lightSequence);
+        nextChunkIndex = chunkIndex + 1;
+        try {
+            sessionLog.appendChunkCommit(nextChunkIndex, movementSequence, lightSequence);
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing sleep session log", e);
+        }
+        SensorChunkUploadWorker.enqueue(this);
+    }
 
-        float avgLight = lightBuffer.isEmpty() ? 0 : totalLight / lightBuffer.size();
-        float percentDark = lightBuffer.isEmpty() ? 0 : (darkReadings * 100f) / lightBuffer.size();
+    private SleepSensorChunk buildChunk(int chunkIndex) {
+        SleepSensorChunk chunk = new SleepSensorChunk(currentSession.getId(), currentSession.getUserId(), chunkIndex);
+
+        // Raw series go out as compact binary columns instead of one map per sample
+        SensorSeriesCodec.MovementEncoder movements = new SensorSeriesCodec.MovementEncoder();
+        for (int i = 0; i < movementBuffer.size(); i++) {
+            movements.add(movementBuffer.getTimestamp(i), movementBuffer.getValue(i, 0),
+                    movementBuffer.getValue(i, 1), movementBuffer.getValue(i, 2), movementBuffer.getValue(i, 3));
+        }
+
+        SensorSeriesCodec.LightEncoder lights = new SensorSeriesCodec.LightEncoder();
+        for (int i = 0; i < lightBuffer.size(); i++) {
+            lights.add(lightBuffer.getTimestamp(i), lightBuffer.getValue(i, 0), lightBuffer.getValue(i, 1));
+        }
+
+        long start = Long.MAX_VALUE;
+        long end = Long.MIN_VALUE;
+        if (!movementBuffer.isEmpty()) {
+            start = movementBuffer.getTimestamp(0);
+            end = movementBuffer.getTimestamp(movementBuffer.size() - 1);
+        }
+        if (!lightBuffer.isEmpty()) {
+            start = Math.min(start, lightBuffer.getTimestamp(0));
+            int last = lightBuffer.size() - 1;
+            end = Math.max(end, lightBuffer.getTimestamp(last) + (long) (lightBuffer.getValue(last, 1) * 1000));
+        }
+
+        chunk.setStartTime(new Date(start));
+        chunk.setEndTime(new Date(end));
+        chunk.setSeriesFormat(SensorSeriesCodec.FORMAT_VERSION);
+        chunk.setMovementCount(movements.getCount());
+        chunk.setLightCount(lights.getCount());
+        chunk.setMovementSeries(Blob.fromBytes(movements.encode()));
+        chunk.setLightSeries(Blob.fromBytes(lights.encode()));
+        return chunk;
+    }
+
+    private void writeSessionDocument() {
+        sessionRef.set(currentSession)
+                .addOnCompleteListener(sensorExecutor, task -> {
+                    if (task.isSuccessful()) {
+                        Log.d(TAG, "Sleep sensor session created: " + sessionRef.getId());
+                    } else {
+                        Log.e(TAG, "Error creating sleep sensor session", task.getException());
+                    }
+                });
+    }
+
+    private void writeSessionSummary() {
+        calculateSleepMetrics();
+        currentSession.setChunkCount(nextChunkIndex);
+        final SleepSensorData session = currentSession;
+        final String sessionId = session.getId();
+        // Only logged: the ack can come long after this service and its sensor thread are gone
+        sessionRef.set(session)
+                .addOnCompleteListener(task -> {
+                    if (task.isSuccessful()) {
+                        Log.d(TAG, "Sleep sensor session summary saved: " + sessionId);
+                    } else {
+                        Log.e(TAG, "Error saving sleep sensor session summary", task.getException());
+                    }
+                });
+        // The summary now sits in Firestore's persisted write queue, which sends it on its own
+        // once online; the session log has nothing left to recover
+        onSummaryQueued(session);
+    }
+
+    private void onSummaryQueued(SleepSensorData session) {
+        sessionLog.delete();
+        // Keep the local store (what the screens read) in step without a pull
+        new SleepSessionRepository(this).storeUploadedSession(session);
+    }
+
+    private void calculateSleepMetrics() {
+        // Metrics come from the running accumulator
+        SleepMetricsAccumulator metrics = processor.getMetrics();
+        ActigraphyEpochAggregator epochs = processor.getEpochs();
+        int significantMovements = metrics.getSignificantMovements();
+        float avgMovement = metrics.getMovementMean();
+        float avgLight = metrics.getAverageLight();
+        float percentDark = metrics.getPercentDark();
+
+        // Score sleep/wake over the actigraphy epochs
+        int epochCount = epochs.getEpochCount();
+        List<Integer> epochCounts = new ArrayList<>(epochCount);
+        for (int i = 0; i < epochCount; i++) {
+            epochCounts.add(epochs.getCount(i));
+        }
+        SleepWakeScorer.Result score = SleepWakeScorer.score(epochs.getCounts(), epochCount);
+        long epochStart = epochs.getFirstEpochStart();
+        long epochLength = ActigraphyEpochAggregator.EPOCH_LENGTH_MS;
 
         // Estimate sleep quality based on metrics
         int estimatedQuality = estimateSleepQuality(significantMovements, avgLight, percentDark);
 
         // Update session data
-        currentSession.setMovementData(new ArrayList<>(movementBuffer));
-        currentSession.setLightData(new ArrayList<>(lightBuffer));
         currentSession.setEstimatedSleepQuality(estimatedQuality);
         currentSession.setAverageMovementPerHour(avgMovement * 12); // Convert to per hour (5 sec intervals)
+        currentSession.setMovementVariance(metrics.getMovementVariance());
         currentSession.setAverageLightLevel(avgLight);
         currentSession.setWasDarkEnvironment(percentDark > 80); // More than 80% darkness
+        currentSession.setEpochLengthSeconds((int) (epochLength / 1000));
+        currentSession.setEpochStartTime(epochStart >= 0 ? new Date(epochStart) : null);
+        currentSession.setEpochActivityCounts(epochCounts);
+        currentSession.setSleepOnsetTime(score.sleepOnsetEpoch >= 0
+                ? new Date(epochStart + score.sleepOnsetEpoch * epochLength) : null);
+        currentSession.setTotalSleepMinutes((int) (score.totalSleepEpochs * epochLength / 60000));
+        currentSession.setWakeAfterSleepOnsetMinutes((int) (score.wakeAfterSleepOnsetEpochs * epochLength / 60000));
+        currentSession.setSleepEfficiency(score.sleepEfficiency);
+        currentSession.setAwakenings(score.awakenings);
+        currentSession.setBatchingEnabled(batchingSupported);
+        currentSession.setBatchCount(batchStats.getBatchCount());
+        currentSession.setMaxBatchSize(batchStats.getMaxBatchSize());
+        currentSession.setAverageBatchSize(batchStats.getAverageBatchSize());
+        recordSamplingChanges(processor.getSampler());
 
         Log.d(TAG, String.format("Metrics - Movements: %d, Avg Light: %.2f lux, " +
                         "Darkness: %.1f%%, Quality: %d",
                 significantMovements, avgLight, percentDark, estimatedQuality));
+        Log.d(TAG, String.format("Actigraphy - Epochs: %d, Sleep: %d min, WASO: %d min, " +
+                        "Efficiency: %.1f%%, Awakenings: %d",
+                epochCount, currentSession.getTotalSleepMinutes(),
+                currentSession.getWakeAfterSleepOnsetMinutes(), score.sleepEfficiency, score.awakenings));
+        if (epochs.getDroppedSamples() > 0) {
+            Log.w(TAG, "Session outlasted the epoch buffer, samples left out of scoring: "
+                    + epochs.getDroppedSamples());
+        }
+    }
+
+    private void recordSamplingChanges(AdaptiveSamplingController sampler) {
+        int changeCount = sampler.getChangeCount();
+        List<Date> changeTimes = new ArrayList<>(changeCount);
+        List<Long> intervals = new ArrayList<>(changeCount);
+        long stillTime = 0;
+        for (int i = 0; i < changeCount; i++) {
+            long changeTime = sampler.getChangeTime(i);
+            long interval = sampler.getChangeInterval(i);
+            changeTimes.add(new Date(changeTime));
+            intervals.add(interval);
+            if (interval != sampler.getActiveInterval()) {
+                long until = i + 1 < changeCount ? sampler.getChangeTime(i + 1)
+                        : currentSession.getSessionEndTime().getTime();
+                stillTime += Math.max(0, until - changeTime);
+            }
+        }
+        currentSession.setActiveSamplingIntervalMs(sampler.getActiveInterval());
+        currentSession.setSamplingChangeTimes(changeTimes);
+        currentSession.setSamplingIntervalsMs(intervals);
+        currentSession.setStillSamplingMinutes((int) (stillTime / 60000));
     }
 
     private int estimateSleepQuality(int significantMovements, float avgLight, float percentDark) {
@@ -536,7 +942,14 @@ public class SleepSensorService extends Service implements SensorEventListener {
     public void onDestroy() {
         Log.d(TAG, "Service onDestroy");
         if (isMonitoring) {
-            stopSleepMonitoring();
+            // No time left to wait for a FIFO flush
+            handler.removeCallbacks(finishStopRunnable);
+            finishStopMonitoring();
+        }
+        // Let the final save already queued on the sensor thread run before it exits
+        if (sensorThread != null) {
+            sensorHandler.post(sessionLog::close);
+            sensorThread.quitSafely();
         }
         super.onDestroy();
     }
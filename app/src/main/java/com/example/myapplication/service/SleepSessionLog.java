@@ -0,0 +1,241 @@
+package com.example.myapplication.service;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Local write-ahead log of the sleep session in progress. The session header, every sample
+ * and every chunk handed to the upload queue are appended to a file and fsynced in small batches,
+ * so a session killed by the system can be replayed and resumed where it left off.
+ *
+ * Records are a type byte followed by big-endian fields. A torn record at the end of the file
+ * (process killed mid-write) ends the replay and is cut off before appending again.
+ */
+class SleepSessionLog {
+    private static final byte RECORD_HEADER = 'H';
+    private static final byte RECORD_MOVEMENT = 'M';
+    private static final byte RECORD_LIGHT = 'L';
+    private static final byte RECORD_CHUNK_COMMIT = 'C';
+
+    private static final int SYNC_EVERY_RECORDS = 60; // About a minute of 1 Hz samples
+    private static final int BUFFER_SIZE = 4096;
+
+    interface ReplayListener {
+        void onSessionStart(String userId, String sessionId, long startTime);
+        void onMovement(long timestamp, float x, float y, float z);
+        void onLight(long timestamp, float lightLevel);
+        void onChunkCommitted(int nextChunkIndex, long movementSequence, long lightSequence);
+    }
+
+    private final File file;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position = 0;
+    private int pendingRecords = 0;
+    private FileOutputStream out;
+
+    SleepSessionLog(File file) {
+        this.file = file;
+    }
+
+    boolean exists() {
+        return file.exists() && file.length() > 0;
+    }
+
+    // Truncates any previous log and starts a new session
+    void start(String userId, String sessionId, long startTime) throws IOException {
+        close();
+        out = new FileOutputStream(file, false);
+        position = 0;
+        pendingRecords = 0;
+        putByte(RECORD_HEADER);
+        putString(userId);
+        putString(sessionId);
+        putLong(startTime);
+        sync();
+    }
+
+    void appendMovement(long timestamp, float x, float y, float z) throws IOException {
+        ensureSpace(1 + 8 + 12);
+        putByte(RECORD_MOVEMENT);
+        putLong(timestamp);
+        putFloat(x);
+        putFloat(y);
+        putFloat(z);
+        recordAppended();
+    }
+
+    void appendLight(long timestamp, float lightLevel) throws IOException {
+        ensureSpace(1 + 8 + 4);
+        putByte(RECORD_LIGHT);
+        putLong(timestamp);
+        putFloat(lightLevel);
+        recordAppended();
+    }
+
+    // Samples below these sequence numbers are queued for upload and won't be re-sent after recovery
+    void appendChunkCommit(int nextChunkIndex, long movementSequence, long lightSequence) throws IOException {
+        ensureSpace(1 + 4 + 8 + 8);
+        putByte(RECORD_CHUNK_COMMIT);
+        putInt(nextChunkIndex);
+        putLong(movementSequence);
+        putLong(lightSequence);
+        sync();
+    }
+
+    void sync() throws IOException {
+        if (out == null) {
+            return;
+        }
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+        out.getFD().sync();
+        pendingRecords = 0;
+    }
+
+    /**
+     * Replays the log into the listener and reopens it for appending after the last intact
+     * record. Returns false when there is no usable session header.
+     */
+    boolean replay(ReplayListener listener) throws IOException {
+        close();
+        if (!exists()) {
+            return false;
+        }
+
+        long validLength = 0;
+        boolean hasHeader = false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int type = in.read();
+                if (type < 0) {
+                    break;
+                }
+                long recordLength;
+                if (type == RECORD_HEADER && !hasHeader) {
+                    String userId = in.readUTF();
+                    String sessionId = in.readUTF();
+                    long startTime = in.readLong();
+                    listener.onSessionStart(userId.isEmpty() ? null : userId,
+                            sessionId.isEmpty() ? null : sessionId, startTime);
+                    hasHeader = true;
+                    recordLength = 1 + utfLength(userId) + utfLength(sessionId) + 8;
+                } else if (type == RECORD_MOVEMENT && hasHeader) {
+                    long timestamp = in.readLong();
+                    float x = in.readFloat();
+                    float y = in.readFloat();
+                    float z = in.readFloat();
+                    listener.onMovement(timestamp, x, y, z);
+                    recordLength = 1 + 8 + 12;
+                } else if (type == RECORD_LIGHT && hasHeader) {
+                    long timestamp = in.readLong();
+                    float lightLevel = in.readFloat();
+                    listener.onLight(timestamp, lightLevel);
+                    recordLength = 1 + 8 + 4;
+                } else if (type == RECORD_CHUNK_COMMIT && hasHeader) {
+                    int nextChunkIndex = in.readInt();
+                    long movementSequence = in.readLong();
+                    long lightSequence = in.readLong();
+                    listener.onChunkCommitted(nextChunkIndex, movementSequence, lightSequence);
+                    recordLength = 1 + 4 + 8 + 8;
+                } else {
+                    break; // Corrupt record: keep what we have
+                }
+                validLength += recordLength;
+            }
+        } catch (EOFException e) {
+            // Torn last record, dropped below
+        }
+
+        if (!hasHeader) {
+            return false;
+        }
+
+        // Cut off a torn tail so new records follow the last intact one
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(validLength);
+        }
+        out = new FileOutputStream(file, true);
+        position = 0;
+        pendingRecords = 0;
+        return true;
+    }
+
+    void close() {
+        if (out == null) {
+            return;
+        }
+        try {
+            sync();
+            out.close();
+        } catch (IOException e) {
+            // Nothing more we can do; the next replay stops at the last intact record
+        }
+        out = null;
+    }
+
+    void delete() {
+        close();
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    private void recordAppended() throws IOException {
+        pendingRecords++;
+        if (pendingRecords >= SYNC_EVERY_RECORDS) {
+            sync();
+        }
+    }
+
+    private void ensureSpace(int bytes) throws IOException {
+        if (out == null) {
+            throw new IOException("Session log is not open");
+        }
+        if (position + bytes > buffer.length) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    private static int utfLength(String s) {
+        return 2 + s.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private void putByte(byte b) {
+        buffer[position++] = b;
+    }
+
+    private void putInt(int v) {
+        buffer[position++] = (byte) (v >>> 24);
+        buffer[position++] = (byte) (v >>> 16);
+        buffer[position++] = (byte) (v >>> 8);
+        buffer[position++] = (byte) v;
+    }
+
+    private void putLong(long v) {
+        putInt((int) (v >>> 32));
+        putInt((int) v);
+    }
+
+    private void putFloat(float v) {
+        putInt(Float.floatToIntBits(v));
+    }
+
+    // Same layout as DataOutputStream.writeUTF for the ids we store (no NUL characters)
+    private void putString(String s) throws IOException {
+        byte[] bytes = (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+        ensureSpace(2 + bytes.length);
+        buffer[position++] = (byte) (bytes.length >>> 8);
+        buffer[position++] = (byte) bytes.length;
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.myapplication.service;
+
+/**
+ * Cole-Kripke sleep/wake scoring over 1-minute activity count epochs, plus the usual
+ * summary measures: sleep onset, wake after sleep onset (WASO), efficiency and awakenings.
+ * Cole RJ et al., "Automatic sleep/wake identification from wrist activity", Sleep 1992.
+ */
+final class SleepWakeScorer {
+    // Weights for epochs A-4 .. A+2 and the scale factor of the 1-minute formula; D < 1 is sleep
+    private static final double[] WEIGHTS = {404, 598, 326, 441, 1408, 508, 350};
+    private static final int WINDOW_BEFORE = 4;
+    private static final double SCALE = 0.00001;
+    // A steady count above this scores every epoch as wake: 1 / (SCALE * sum of WEIGHTS), about 24.8
+    static final double STEADY_WAKE_COUNT = 1 / (SCALE * sum(WEIGHTS));
+
+    // Sleep onset is the first epoch of this many consecutive sleep epochs
+    private static final int ONSET_EPOCHS = 10;
+    // Wake bouts shorter than this after onset are not counted as awakenings
+    private static final int MIN_AWAKENING_EPOCHS = 2;
+
+    static final class Result {
+        final int sleepOnsetEpoch; // -1 when no sleep was detected
+        final int totalSleepEpochs;
+        final int wakeAfterSleepOnsetEpochs;
+        final int awakenings;
+        final float sleepEfficiency; // Percent of recorded epochs scored as sleep
+
+        Result(int sleepOnsetEpoch, int totalSleepEpochs, int wakeAfterSleepOnsetEpochs,
+               int awakenings, float sleepEfficiency) {
+            this.sleepOnsetEpoch = sleepOnsetEpoch;
+            this.totalSleepEpochs = totalSleepEpochs;
+            this.wakeAfterSleepOnsetEpochs = wakeAfterSleepOnsetEpochs;
+            this.awakenings = awakenings;
+            this.sleepEfficiency = sleepEfficiency;
+        }
+    }
+
+    private SleepWakeScorer() {}
+
+    private static double sum(double[] values) {
+        double total = 0;
+        for (double value : values) {
+            total += value;
+        }
+        return total;
+    }
+
+    static boolean isSleep(int[] counts, int epochCount, int epoch) {
+        double d = 0;
+        for (int k = 0; k < WEIGHTS.length; k++) {
+            int i = epoch - WINDOW_BEFORE + k;
+            if (i >= 0 && i < epochCount) {
+                d += WEIGHTS[k] * counts[i];
+            }
+        }
+        return d * SCALE < 1.0;
+    }
+
+    static Result score(int[] counts, int epochCount) {
+        if (epochCount == 0) {
+            return new Result(-1, 0, 0, 0, 0);
+        }
+
+        int onset = -1;
+        int lastSleep = -1;
+        int run = 0;
+        for (int i = 0; i < epochCount; i++) {
+            if (isSleep(counts, epochCount, i)) {
+                run++;
+                lastSleep = i;
+                if (onset < 0 && run == ONSET_EPOCHS) {
+                    onset = i - ONSET_EPOCHS + 1;
+                }
+            } else {
+                run = 0;
+            }
+        }
+        if (onset < 0) {
+            return new Result(-1, 0, 0, 0, 0);
+        }
+
+        // Sleep period runs from onset to the last sleep epoch
+        int sleepEpochs = 0;
+        int wasoEpochs = 0;
+        int awakenings = 0;
+        int wakeRun = 0;
+        for (int i = onset; i <= lastSleep; i++) {
+            if (isSleep(counts, epochCount, i)) {
+                sleepEpochs++;
+                if (wakeRun >= MIN_AWAKENING_EPOCHS) {
+                    awakenings++;
+                }
+                wakeRun = 0;
+            } else {
+                wasoEpochs++;
+                wakeRun++;
+            }
+        }
+
+        float efficiency = (sleepEpochs * 100f) / epochCount;
+        return new Result(onset, sleepEpochs, wasoEpochs, awakenings, efficiency);
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.myapplication.service;
+
+/**
+ * Streaming pedometer on raw accelerometer samples, for devices without a hardware step
+ * counter. The acceleration magnitude is band-passed (a fast low-pass for sensor noise minus
+ * a slow one for gravity and posture), then each peak that follows a zero crossing and clears
+ * an adaptive threshold is a step candidate. The threshold follows half the recent peak height,
+ * so it suits a stroll and a run alike.
+ *
+ * Cadence gating: candidates closer than MIN_STEP_INTERVAL_MS are ignored, and steps only
+ * count once REQUIRED_RUN of them came at a steady rhythm; the run's steps are then released
+ * together. A gap or a broken rhythm starts a new run, so shaking or tapping the phone never
+ * gets that far. O(1) state, nothing allocated per sample.
+ */
+class SoftwareStepDetector {
+    static final float NOISE_CUTOFF_HZ = 4f; // Walking and running stay below this
+    static final float GRAVITY_CUTOFF_HZ = 0.5f;
+    static final float MIN_THRESHOLD = 0.8f; // m/s², above resting noise
+    static final float THRESHOLD_FRACTION = 0.5f;
+    static final float PEAK_AVERAGE_WEIGHT = 0.25f;
+    static final long MIN_STEP_INTERVAL_MS = 250; // 4 steps/s, a sprint
+    static final long MAX_STEP_INTERVAL_MS = 2000; // Slower than this is not walking
+    static final float MAX_RHYTHM_CHANGE = 0.2f; // Interval may differ this much from the run's
+    static final int REQUIRED_RUN = 10; // About five seconds of walking
+
+    private static final float NOISE_RC_MS = (float) (1000 / (2 * Math.PI * NOISE_CUTOFF_HZ));
+    private static final float GRAVITY_RC_MS = (float) (1000 / (2 * Math.PI * GRAVITY_CUTOFF_HZ));
+
+    // Band-pass
+    private float fast;
+    private float slow;
+    private long lastTimestamp = -1;
+
+    // Peak detection on the band-passed signal
+    private float previous;
+    private float beforePrevious;
+    private long previousTimestamp;
+    private boolean armed = false; // Crossed below zero since the last peak
+    private float averagePeak = 0;
+
+    // Current run of candidate steps
+    private long lastStepTimestamp = -1;
+    private float runInterval = 0;
+    private int runLength = 0;
+
+    // Returns the number of steps this sample confirmed, usually 0
+    int onSample(long timestamp, float x, float y, float z) {
+        float magnitude = (float) Math.sqrt(x * x + y * y + z * z);
+        if (lastTimestamp < 0) {
+            fast = slow = magnitude;
+            lastTimestamp = timestamp;
+            previous = beforePrevious = 0;
+            previousTimestamp = timestamp;
+            return 0;
+        }
+        long dt = Math.max(0, timestamp - lastTimestamp);
+        lastTimestamp = timestamp;
+        fast += dt / (NOISE_RC_MS + dt) * (magnitude - fast);
+        slow += dt / (GRAVITY_RC_MS + dt) * (magnitude - slow);
+        float signal = fast - slow;
+
+        int steps = 0;
+        if (previous < 0) {
+            armed = true;
+        } else if (armed && previous > beforePrevious && previous >= signal
+                && previous > Math.max(MIN_THRESHOLD, THRESHOLD_FRACTION * averagePeak)) {
+            armed = false;
+            averagePeak += PEAK_AVERAGE_WEIGHT * (previous - averagePeak);
+            steps = onCandidate(previousTimestamp);
+        }
+        beforePrevious = previous;
+        previous = signal;
+        previousTimestamp = timestamp;
+        return steps;
+    }
+
+    private int onCandidate(long timestamp) {
+        long interval = lastStepTimestamp < 0 ? Long.MAX_VALUE : timestamp - lastStepTimestamp;
+        if (interval < MIN_STEP_INTERVAL_MS) {
+            return 0; // A second bump within the same step
+        }
+        lastStepTimestamp = timestamp;
+
+        if (interval > MAX_STEP_INTERVAL_MS) {
+            runLength = 1;
+            runInterval = 0;
+            return 0;
+        }
+        if (runInterval > 0 && Math.abs(interval - runInterval) > MAX_RHYTHM_CHANGE * runInterval) {
+            // Off the rhythm: this candidate may start a new run
+            runLength = 1;
+            runInterval = 0;
+            return 0;
+        }
+        runInterval = runInterval == 0 ? interval : runInterval + PEAK_AVERAGE_WEIGHT * (interval - runInterval);
+        runLength++;
+        if (runLength < REQUIRED_RUN) {
+            return 0;
+        }
+        // The steps held back while the run was unconfirmed count now
+        return runLength == REQUIRED_RUN ? REQUIRED_RUN : 1;
+    }
+
+    void reset() {
+        lastTimestamp = -1;
+        armed = false;
+        averagePeak = 0;
+        lastStepTimestamp = -1;
+        runInterval = 0;
+        runLength = 0;
+    }
+}
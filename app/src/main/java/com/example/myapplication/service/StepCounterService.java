@@ -0,0 +1,576 @@
+package com.example.myapplication.service;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.Service;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Binder;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.IBinder;
+import android.os.PowerManager;
+import android.os.Process;
+import android.os.SystemClock;
+import android.provider.Settings;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.content.ContextCompat;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.myapplication.R;
+import com.example.myapplication.controller.SessionManager;
+import com.example.myapplication.repository.StepSeriesRepository;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Foreground service that owns step counting, so it keeps going with the UI closed. The
+ * hardware step counter is registered with a long max report latency: the sensor hub counts
+ * on its own and hands over its FIFO about once a minute, so the CPU is barely woken. While
+ * a screen is bound the latency drops to zero for live values.
+ *
+ * The sensor reports steps since boot. A session keeps the counter value it started from
+ * (baseline) plus the steps carried over from before a reboot (offset); the boot count tells
+ * a reboot apart from a counter that is still running. Without a hardware step counter,
+ * SoftwareStepDetector counts steps from the accelerometer instead, batched as far as its
+ * FIFO allows. The wake-up accelerometer is preferred; a non-wake-up one is read under a
+ * partial wake lock, since its samples are dropped while the CPU sleeps.
+ *
+ * Step deltas are also bucketed by the minute they were taken in (from the event timestamps,
+ * so a batch delivered late still lands in the right minutes) and handed to
+ * StepSeriesRepository with each save.
+ *
+ * The fields below are the authoritative state. They are written behind to StepStateStore at
+ * most every SAVE_INTERVAL_MS during a walk, and right away on start/stop/reset, when the last
+ * screen unbinds, on shutdown and when the service is destroyed; always on the sensor thread.
+ */
+public class StepCounterService extends Service implements SensorEventListener {
+    private static final String TAG = "StepCounterService";
+    private static final String CHANNEL_ID = "StepCounterChannel";
+    private static final int NOTIFICATION_ID = 104;
+
+    // Unbound, the hub batches for up to a minute; bound, every step is delivered at once
+    private static final int BATCHED_LATENCY_US = 60 * 1000 * 1000;
+    private static final int LIVE_LATENCY_US = 0;
+    // The software detector needs a walking gait sampled well above its 4 Hz band (50 Hz)
+    private static final int ACCELEROMETER_SAMPLING_PERIOD_US = 20000;
+    // Only needed for an accelerometer that cannot wake the CPU itself
+    private static final long WAKE_LOCK_TIMEOUT = 12 * 60 * 60 * 1000; // 12 hours max
+    // Steps arrive continuously while walking; persist at most this often
+    private static final long SAVE_INTERVAL_MS = 10000;
+
+    // Before StepStateStore; only read once to carry a running session over
+    private static final String PREFS_NAME = "StepCounterPrefs";
+    private static final String KEY_BASELINE = "baseline";
+    private static final String KEY_OFFSET = "offset";
+    private static final String KEY_TOTAL_STEPS = "total_steps";
+    private static final String KEY_IS_COUNTING = "is_counting";
+    private static final String KEY_START_TIME = "start_time";
+    private static final String KEY_BOOT_COUNT = "boot_count";
+
+    public class LocalBinder extends Binder {
+        public StepCounterService getService() {
+            return StepCounterService.this;
+        }
+    }
+
+    private final IBinder binder = new LocalBinder();
+    private final MutableLiveData<Integer> totalStepsData = new MutableLiveData<>(0);
+    private final MutableLiveData<Boolean> countingData = new MutableLiveData<>(false);
+    private final Runnable saveRunnable = this::writeState;
+    private final AtomicBoolean savePending = new AtomicBoolean(false);
+    private final BroadcastReceiver shutdownReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            // Delivered on the sensor thread; onDestroy is not called on power off
+            writeState();
+        }
+    };
+
+    private SensorManager sensorManager;
+    private Sensor stepSensor;
+    // Fallback when there is no hardware counter; only touched on the sensor thread
+    private Sensor accelerometer;
+    private PowerManager.WakeLock wakeLock;
+    private SoftwareStepDetector softwareDetector;
+    private HandlerThread sensorThread;
+    private Handler sensorHandler;
+    private StepStateStore stateStore;
+    private SessionManager sessionManager;
+    private StepSeriesRepository stepSeriesRepository;
+    private int boundClients = 0;
+    private int registeredLatencyUs = -1;
+
+    // Session state, guarded by this
+    private int baseline = -1; // Counter value the session started from, -1 until the first event
+    private int offset = 0; // Steps counted before the last reboot
+    private int totalSteps = 0;
+    private boolean isCounting = false;
+    private long startTime = 0;
+    private int bootCount = -1;
+    // Steps not yet stored in the series, keyed by the start of their minute
+    private Map<Long, Integer> pendingMinutes = new HashMap<>();
+
+    // True when steps can be counted, by the hardware counter or from the accelerometer
+    public static boolean isStepDetectionAvailable(Context context) {
+        SensorManager manager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+        return manager != null && (manager.getDefaultSensor(Sensor.TYPE_STEP_COUNTER) != null
+                || manager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER) != null);
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        Log.d(TAG, "Service onCreate");
+
+        createNotificationChannel();
+
+        sensorThread = new HandlerThread("StepCounterThread", Process.THREAD_PRIORITY_BACKGROUND);
+        sensorThread.start();
+        sensorHandler = new Handler(sensorThread.getLooper());
+
+        sensorManager = (SensorManager) getSystemService(Context.SENSOR_SERVICE);
+        if (sensorManager != null) {
+            stepSensor = sensorManager.getDefaultSensor(Sensor.TYPE_STEP_COUNTER);
+            if (stepSensor == null) {
+                // A wake-up accelerometer wakes the CPU before its FIFO overflows; a
+                // non-wake-up one drops samples while the CPU sleeps
+                accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER, true);
+                if (accelerometer == null) {
+                    accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+                }
+                if (accelerometer != null) {
+                    Log.d(TAG, "No step counter, detecting steps from the accelerometer");
+                    softwareDetector = new SoftwareStepDetector();
+                    if (!accelerometer.isWakeUpSensor()) {
+                        PowerManager powerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
+                        if (powerManager != null) {
+                            wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK,
+                                    "SleepTrackerApp::StepCounterWakeLock");
+                        }
+                    }
+                }
+            }
+        }
+
+        stateStore = new StepStateStore(getFilesDir());
+        sessionManager = new SessionManager(this);
+        stepSeriesRepository = new StepSeriesRepository(this);
+        loadState();
+
+        registerReceiver(shutdownReceiver, new IntentFilter(Intent.ACTION_SHUTDOWN), null, sensorHandler);
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        // Started with startForegroundService (by us or after boot): always go foreground first
+        if (!startInForeground()) {
+            stopSelf();
+            return START_NOT_STICKY;
+        }
+
+        synchronized (this) {
+            if (isCounting) {
+                Log.d(TAG, "Counting steps in the background");
+                updateRegistration();
+                return START_STICKY;
+            }
+        }
+        // Nothing to count (e.g. started at boot with no session running)
+        stopForeground(true);
+        stopSelf();
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        boundClients++;
+        updateRegistration();
+        return binder;
+    }
+
+    @Override
+    public void onRebind(Intent intent) {
+        boundClients++;
+        updateRegistration();
+    }
+
+    @Override
+    public boolean onUnbind(Intent intent) {
+        boundClients = Math.max(0, boundClients - 1);
+        updateRegistration();
+        if (boundClients == 0) {
+            saveNow(); // The app may be swiped away next
+        }
+        return true; // Get onRebind for the next client
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        if (sensorManager != null) {
+            sensorManager.unregisterListener(this);
+        }
+        releaseWakeLock();
+        unregisterReceiver(shutdownReceiver);
+        // quitSafely still runs the final save posted here
+        saveNow();
+        sensorThread.quitSafely();
+        Log.d(TAG, "Service onDestroy");
+    }
+
+    public LiveData<Integer> getTotalSteps() {
+        return totalStepsData;
+    }
+
+    public LiveData<Boolean> getCounting() {
+        return countingData;
+    }
+
+    public synchronized int getCurrentSteps() {
+        return totalSteps;
+    }
+
+    public synchronized long getStartTime() {
+        return startTime;
+    }
+
+    public synchronized boolean isCounting() {
+        return isCounting;
+    }
+
+    // Starts a session; the service then keeps itself running until stopCounting
+    public void startCounting() {
+        synchronized (this) {
+            if (isCounting) {
+                return;
+            }
+            isCounting = true;
+            baseline = -1;
+            offset = 0;
+            totalSteps = 0;
+            startTime = System.currentTimeMillis();
+            bootCount = readBootCount();
+        }
+        saveNow();
+        publish();
+        if (softwareDetector != null) {
+            sensorHandler.post(softwareDetector::reset);
+        }
+        ContextCompat.startForegroundService(this, new Intent(this, StepCounterService.class));
+        updateRegistration();
+        Log.d(TAG, "Step counting started");
+    }
+
+    // Ends the session and returns its step count; the service stops once no screen is bound
+    public int stopCounting() {
+        int steps;
+        synchronized (this) {
+            isCounting = false;
+            steps = totalSteps;
+        }
+        saveNow();
+        publish();
+        updateRegistration();
+        stopForeground(true);
+        stopSelf();
+        Log.d(TAG, "Step counting stopped at " + steps + " steps");
+        return steps;
+    }
+
+    public void resetCounter() {
+        synchronized (this) {
+            if (isCounting) {
+                return;
+            }
+            baseline = -1;
+            offset = 0;
+            totalSteps = 0;
+            startTime = 0;
+        }
+        saveNow();
+        publish();
+    }
+
+    // Test mode on devices without any step sensor
+    public void addSteps(int steps) {
+        addSteps(System.currentTimeMillis(), steps);
+    }
+
+    // Steps counted here rather than by the hardware counter: they go into the offset
+    private void addSteps(long time, int steps) {
+        synchronized (this) {
+            if (!isCounting) {
+                return;
+            }
+            offset += steps;
+            totalSteps += steps;
+            addToMinute(time, steps);
+        }
+        scheduleSave();
+        publish();
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
+            if (softwareDetector != null) {
+                int steps = softwareDetector.onSample(event.timestamp / 1_000_000L,
+                        event.values[0], event.values[1], event.values[2]);
+                if (steps > 0) {
+                    addSteps(toWallTime(event.timestamp), steps);
+                }
+            }
+            return;
+        }
+        if (event.sensor.getType() != Sensor.TYPE_STEP_COUNTER) {
+            return;
+        }
+        int counter = (int) event.values[0];
+        long eventTime = toWallTime(event.timestamp);
+        synchronized (this) {
+            if (!isCounting) {
+                return;
+            }
+            if (baseline == -1) {
+                // First value of the session: steps are counted from here
+                baseline = counter;
+            } else if (counter < baseline) {
+                // The counter restarted from zero (reboot): keep what was counted so far
+                Log.d(TAG, "Step counter restarted, carrying over " + totalSteps + " steps");
+                offset = totalSteps;
+                baseline = 0;
+            }
+            int previous = totalSteps;
+            totalSteps = offset + counter - baseline;
+            addToMinute(eventTime, totalSteps - previous);
+        }
+        scheduleSave();
+        publish();
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+        // Not needed for step counter
+    }
+
+    // Event timestamps are elapsed-realtime nanoseconds; batched events arrive late
+    private static long toWallTime(long eventTimestamp) {
+        return System.currentTimeMillis() - (SystemClock.elapsedRealtimeNanos() - eventTimestamp) / 1_000_000L;
+    }
+
+    // Registered while counting, at the latency that suits whether anyone is watching
+    private void updateRegistration() {
+        Sensor sensor = stepSensor != null ? stepSensor : accelerometer;
+        if (sensorManager == null || sensor == null) {
+            return;
+        }
+        int latencyUs;
+        synchronized (this) {
+            latencyUs = !isCounting ? -1 : boundClients > 0 ? LIVE_LATENCY_US : BATCHED_LATENCY_US;
+        }
+        if (latencyUs == registeredLatencyUs) {
+            return;
+        }
+        sensorManager.unregisterListener(this);
+        registeredLatencyUs = latencyUs;
+        if (latencyUs < 0) {
+            releaseWakeLock();
+            return;
+        }
+        if (sensor == stepSensor) {
+            sensorManager.registerListener(this, sensor, SensorManager.SENSOR_DELAY_NORMAL, latencyUs, sensorHandler);
+        } else {
+            // The accelerometer's FIFO holds seconds rather than a minute of samples
+            latencyUs = Math.min(latencyUs, getMaxReportLatencyUs(sensor));
+            if (wakeLock != null && !wakeLock.isHeld()) {
+                wakeLock.acquire(WAKE_LOCK_TIMEOUT);
+                Log.d(TAG, "Wake lock acquired for the non-wake-up accelerometer");
+            }
+            sensorManager.registerListener(this, sensor, ACCELEROMETER_SAMPLING_PERIOD_US, latencyUs, sensorHandler);
+        }
+        Log.d(TAG, sensor.getName() + " registered with max report latency: " + latencyUs + " us");
+    }
+
+    // Largest latency that still fits in the sensor's FIFO (with some headroom); 0 without one
+    private static int getMaxReportLatencyUs(Sensor sensor) {
+        int fifoSize = sensor.getFifoMaxEventCount();
+        if (fifoSize <= 0) {
+            return 0;
+        }
+        long fifoSpanUs = (long) fifoSize * ACCELEROMETER_SAMPLING_PERIOD_US * 8 / 10;
+        return (int) Math.min(BATCHED_LATENCY_US, fifoSpanUs);
+    }
+
+    private void releaseWakeLock() {
+        if (wakeLock != null && wakeLock.isHeld()) {
+            wakeLock.release();
+            Log.d(TAG, "Wake lock released");
+        }
+    }
+
+    // Called holding this
+    private void addToMinute(long time, int steps) {
+        if (steps <= 0) {
+            return;
+        }
+        long minute = time - time % 60000;
+        Integer current = pendingMinutes.get(minute);
+        pendingMinutes.put(minute, current != null ? current + steps : steps);
+    }
+
+    private void publish() {
+        synchronized (this) {
+            totalStepsData.postValue(totalSteps);
+            countingData.postValue(isCounting);
+        }
+    }
+
+    // Not pushed back by later events, so a long walk is still saved every interval
+    private void scheduleSave() {
+        if (savePending.compareAndSet(false, true)) {
+            sensorHandler.postDelayed(saveRunnable, SAVE_INTERVAL_MS);
+        }
+    }
+
+    private void saveNow() {
+        sensorHandler.removeCallbacks(saveRunnable);
+        savePending.set(true);
+        sensorHandler.post(saveRunnable);
+    }
+
+    // Runs on the sensor thread; only the snapshot is taken under the lock
+    private void writeState() {
+        savePending.set(false);
+        StepStateStore.State state = new StepStateStore.State();
+        synchronized (this) {
+            state.baseline = baseline;
+            state.offset = offset;
+            state.totalSteps = totalSteps;
+            state.counting = isCounting;
+            state.startTime = startTime;
+            state.bootCount = bootCount;
+            flushMinutes();
+        }
+        try {
+            stateStore.write(state);
+        } catch (IOException e) {
+            Log.e(TAG, "Could not save step counter state", e);
+        }
+    }
+
+    // Called holding this
+    private void flushMinutes() {
+        if (pendingMinutes.isEmpty()) {
+            return;
+        }
+        String email = sessionManager.getLoggedInEmail();
+        if (email == null || email.isEmpty()) {
+            return; // Kept until someone is logged in
+        }
+        stepSeriesRepository.addMinuteSteps(email.replace(".", "_"), pendingMinutes);
+        pendingMinutes = new HashMap<>();
+    }
+
+    private synchronized void loadState() {
+        StepStateStore.State state = stateStore.exists() ? readStateFile() : readLegacyPrefs();
+        baseline = state.baseline;
+        offset = state.offset;
+        totalSteps = state.totalSteps;
+        isCounting = state.counting;
+        startTime = state.startTime;
+        bootCount = state.bootCount;
+
+        // After a reboot the counter starts again from zero: everything so far becomes the offset
+        int currentBootCount = readBootCount();
+        if (isCounting && bootCount != -1 && currentBootCount != -1 && currentBootCount != bootCount) {
+            Log.d(TAG, "Reboot since the last save, carrying over " + totalSteps + " steps");
+            offset = totalSteps;
+            baseline = 0;
+        }
+        // State saved before boot counts were kept has none: its baseline is kept, and a
+        // restarted counter is still caught by the counter < baseline check
+        bootCount = currentBootCount;
+        totalStepsData.setValue(totalSteps);
+        countingData.setValue(isCounting);
+    }
+
+    private StepStateStore.State readStateFile() {
+        try {
+            return stateStore.read();
+        } catch (IOException e) {
+            Log.e(TAG, "Could not read step counter state, starting fresh", e);
+            return new StepStateStore.State();
+        }
+    }
+
+    private StepStateStore.State readLegacyPrefs() {
+        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        StepStateStore.State state = new StepStateStore.State();
+        state.baseline = prefs.getInt(KEY_BASELINE, -1);
+        state.offset = prefs.getInt(KEY_OFFSET, 0);
+        state.totalSteps = prefs.getInt(KEY_TOTAL_STEPS, 0);
+        state.counting = prefs.getBoolean(KEY_IS_COUNTING, false);
+        state.startTime = prefs.getLong(KEY_START_TIME, 0);
+        state.bootCount = prefs.getInt(KEY_BOOT_COUNT, -1);
+        return state;
+    }
+
+    private int readBootCount() {
+        return Settings.Global.getInt(getContentResolver(), Settings.Global.BOOT_COUNT, -1);
+    }
+
+    private boolean startInForeground() {
+        try {
+            // Takes the health type declared in the manifest
+            startForeground(NOTIFICATION_ID, createNotification());
+            return true;
+        } catch (RuntimeException e) {
+            // e.g. activity recognition permission revoked while we were stopped
+            Log.e(TAG, "Cannot start step counting in the foreground", e);
+            return false;
+        }
+    }
+
+    private void createNotificationChannel() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(
+                    CHANNEL_ID,
+                    "Step Counter",
+                    NotificationManager.IMPORTANCE_LOW
+            );
+            channel.setDescription("Counts your steps while the app is closed");
+            channel.setShowBadge(false);
+
+            NotificationManager manager = getSystemService(NotificationManager.class);
+            if (manager != null) {
+                manager.createNotificationChannel(channel);
+            }
+        }
+    }
+
+    private Notification createNotification() {
+        return new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setContentTitle("Step counting")
+                .setContentText("Counting your steps in the background")
+                .setSmallIcon(R.drawable.ic_activity)
+                .setPriority(NotificationCompat.PRIORITY_LOW)
+                .setOngoing(true)
+                .build();
+    }
+}
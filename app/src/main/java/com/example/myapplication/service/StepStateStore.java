@@ -0,0 +1,77 @@
+package com.example.myapplication.service;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * The step counter's session state in one small file. StepCounterService keeps the values in
+ * memory and writes a snapshot here now and then; each write goes to a temporary file that is
+ * fsynced and renamed over the old one, so a crash or power loss leaves either the previous
+ * snapshot or the new one, never a torn file.
+ */
+class StepStateStore {
+    private static final String FILE_NAME = "step_counter_state";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int FILE_VERSION = 1;
+
+    static final class State {
+        int baseline = -1;
+        int offset = 0;
+        int totalSteps = 0;
+        boolean counting = false;
+        long startTime = 0;
+        int bootCount = -1;
+    }
+
+    private final File file;
+
+    StepStateStore(File filesDir) {
+        this.file = new File(filesDir, FILE_NAME);
+    }
+
+    boolean exists() {
+        return file.isFile();
+    }
+
+    void write(State state) throws IOException {
+        File temp = new File(file.getPath() + TEMP_SUFFIX);
+        try (FileOutputStream fileOut = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(fileOut)) {
+            out.writeByte(FILE_VERSION);
+            out.writeInt(state.baseline);
+            out.writeInt(state.offset);
+            out.writeInt(state.totalSteps);
+            out.writeBoolean(state.counting);
+            out.writeLong(state.startTime);
+            out.writeInt(state.bootCount);
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+
+    State read() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int version = in.readUnsignedByte();
+            if (version != FILE_VERSION) {
+                throw new IOException("Unsupported step state version " + version);
+            }
+            State state = new State();
+            state.baseline = in.readInt();
+            state.offset = in.readInt();
+            state.totalSteps = in.readInt();
+            state.counting = in.readBoolean();
+            state.startTime = in.readLong();
+            state.bootCount = in.readInt();
+            return state;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.myapplication.ui;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+// A single, already inflated view shown as the first item of a list through a ConcatAdapter.
+// Lets the content above a list scroll with it, so the RecyclerView is the page's only
+// scrolling container and recycles its rows. ConcatAdapter keeps its view type apart from
+// the rows', and the one holder is never rebound.
+public class HeaderViewAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+    private final View header;
+
+    public HeaderViewAdapter(View header) {
+        this.header = header;
+    }
+
+    @Override
+    public int getItemCount() {
+        return 1;
+    }
+
+    // Only used when the list asks for stable ids (ConcatAdapter's ISOLATED_STABLE_IDS)
+    @Override
+    public long getItemId(int position) {
+        return 0;
+    }
+
+    @NonNull
+    @Override
+    public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        return new RecyclerView.ViewHolder(header) {};
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+        // The view is bound by its owner
+    }
+}
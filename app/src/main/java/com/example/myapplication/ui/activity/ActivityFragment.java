@@ -1,20 +1,18 @@
 package com.example.myapplication.ui.activity;
 
 import android.Manifest;
+import android.content.ComponentName;
 import android.content.Context;
-import android.content.SharedPreferences;
+import android.content.Intent;
+import android.content.ServiceConnection;
 import android.content.pm.PackageManager;
-import android.hardware.Sensor;
-import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
-import android.hardware.SensorManager;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.IBinder;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
-import android.widget.LinearLayout;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -24,27 +22,42 @@ import androidx.annotation.Nullable;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+import androidx.recyclerview.widget.ConcatAdapter;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.myapplication.R;
 import com.example.myapplication.controller.SessionManager;
 import com.example.myapplication.model.ActivityData;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.example.myapplication.model.ActivityRollup;
+import com.example.myapplication.model.DailyStepSeries;
+import com.example.myapplication.repository.ActivityRepository;
+import com.example.myapplication.repository.ActivityRollupRepository;
+import com.example.myapplication.repository.RejectedWriteException;
+import com.example.myapplication.repository.StepSeriesRepository;
+import com.example.myapplication.repository.SyncEngine;
+import com.example.myapplication.service.StepCounterService;
+import com.example.myapplication.ui.HeaderViewAdapter;
+import com.google.android.material.chip.ChipGroup;
 
 import java.util.ArrayList;
 import java.util.List;
 
-public class ActivityFragment extends Fragment implements SensorEventListener {
+public class ActivityFragment extends Fragment {
 
-    private static final String PREFS_NAME = "StepCounterPrefs";
-    private static final String KEY_BASELINE = "baseline";
-    private static final String KEY_TOTAL_STEPS = "total_steps";
-    private static final String KEY_IS_COUNTING = "is_counting";
-    private static final String KEY_START_TIME = "start_time";
     private static final int DAILY_GOAL = 10000;
     private static final int PERMISSION_REQUEST_CODE = 1001;
+    private static final int HISTORY_LIMIT = 10;
+    // History synced more recently than this is shown as is when the screen opens
+    private static final long HISTORY_MAX_AGE_MS = 5 * 60 * 1000;
+    // Bars per chart: a week of days, two months of weeks, a year of months
+    private static final int CHART_DAYS = 7;
+    private static final int CHART_WEEKS = 8;
+    private static final int CHART_MONTHS = 12;
+    // Today hour by hour, read from the per-minute step series rather than the rollups
+    private static final String CHART_HOURS = "hours";
 
     private TextView tvStepCount;
     private TextView tvActivityLevel;
@@ -56,57 +69,145 @@ public class ActivityFragment extends Fragment implements SensorEventListener {
     private Button btnStop;
     private Button btnReset;
     private Button btnTestAdd;
-    private LinearLayout historyContainer;
+    private RecyclerView historyList;
+    private ActivityHistoryAdapter historyAdapter;
     private com.github.mikephil.charting.charts.BarChart activityChart;
+    private final java.text.SimpleDateFormat dayLabelFormat = new java.text.SimpleDateFormat("dd/MM", java.util.Locale.getDefault());
+    private final java.text.SimpleDateFormat monthLabelFormat = new java.text.SimpleDateFormat("MMM", java.util.Locale.getDefault());
 
-    private SensorManager sensorManager;
-    private Sensor stepSensor;
-    private SharedPreferences prefs;
+    private boolean stepSensorAvailable;
     private SessionManager sessionManager;
-    private FirebaseFirestore db;
-
-    private int baseline = -1;
+    private ActivityRepository activityRepository;
+    private ActivityRollupRepository rollupRepository;
+    private StepSeriesRepository stepSeriesRepository;
+    private boolean historyObserved = false;
+    private String historyUserId;
+
+    // The chart reads the rollups of the selected period, one row per bar
+    private String chartPeriod = ActivityRollup.PERIOD_DAY;
+    private LiveData<List<ActivityRollup>> chartRollups;
+    private LiveData<List<DailyStepSeries>> chartDays;
+
+    // Counting lives in StepCounterService; these mirror it for the UI
+    private StepCounterService stepService;
     private int totalSteps = 0;
     private boolean isCounting = false;
     private long startTime = 0;
 
+    // Observed only while bound, so each connect adds exactly one of each
+    private LiveData<Integer> serviceSteps;
+    private LiveData<Boolean> serviceCounting;
+    private final Observer<Integer> stepsObserver = steps -> {
+        totalSteps = steps;
+        updateUI();
+    };
+    private final Observer<Boolean> countingObserver = counting -> {
+        isCounting = counting;
+        if (stepService != null) {
+            startTime = stepService.getStartTime();
+        }
+        updateButtons();
+    };
+
+    private final ServiceConnection stepServiceConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            stepService = ((StepCounterService.LocalBinder) binder).getService();
+            if (getView() == null) {
+                return;
+            }
+            startTime = stepService.getStartTime();
+            // The service may be a new instance after a stop, so observe it on every connect
+            stopObservingService();
+            serviceSteps = stepService.getTotalSteps();
+            serviceCounting = stepService.getCounting();
+            serviceSteps.observe(getViewLifecycleOwner(), stepsObserver);
+            serviceCounting.observe(getViewLifecycleOwner(), countingObserver);
+            updateButtons();
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            stopObservingService();
+            stepService = null;
+            if (getView() != null) {
+                updateButtons();
+            }
+        }
+    };
+
+    private void stopObservingService() {
+        if (serviceSteps != null) {
+            serviceSteps.removeObserver(stepsObserver);
+            serviceSteps = null;
+        }
+        if (serviceCounting != null) {
+            serviceCounting.removeObserver(countingObserver);
+            serviceCounting = null;
+        }
+    }
+
     @Nullable
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container,
                              @Nullable Bundle savedInstanceState) {
         View root = inflater.inflate(R.layout.fragment_activity, container, false);
-        
+        historyList = root.findViewById(R.id.history_list);
+        // Everything above the rows scrolls with them as the list's first item
+        View header = inflater.inflate(R.layout.item_activity_header, historyList, false);
+        View footer = inflater.inflate(R.layout.item_activity_footer, historyList, false);
+
         // Initialize views
-        tvStepCount = root.findViewById(R.id.tv_step_count);
-        tvActivityLevel = root.findViewById(R.id.tv_activity_level);
-        tvActiveTime = root.findViewById(R.id.tv_active_time);
-        tvGoalProgress = root.findViewById(R.id.tv_goal_progress);
-        tvHistoryEmpty = root.findViewById(R.id.tv_history_empty);
-        progressBar = root.findViewById(R.id.progress_bar);
-        btnStart = root.findViewById(R.id.btn_start);
-        btnStop = root.findViewById(R.id.btn_stop);
-        btnReset = root.findViewById(R.id.btn_reset);
-        btnTestAdd = root.findViewById(R.id.btn_test_add);
-        Button btnRefreshHistory = root.findViewById(R.id.btn_refresh_history);
-        historyContainer = root.findViewById(R.id.history_container);
+        tvStepCount = header.findViewById(R.id.tv_step_count);
+        tvActivityLevel = header.findViewById(R.id.tv_activity_level);
+        tvActiveTime = header.findViewById(R.id.tv_active_time);
+        tvGoalProgress = header.findViewById(R.id.tv_goal_progress);
+        tvHistoryEmpty = header.findViewById(R.id.tv_history_empty);
+        progressBar = header.findViewById(R.id.progress_bar);
+        btnStart = header.findViewById(R.id.btn_start);
+        btnStop = header.findViewById(R.id.btn_stop);
+        btnReset = header.findViewById(R.id.btn_reset);
+        btnTestAdd = header.findViewById(R.id.btn_test_add);
+        Button btnRefreshHistory = header.findViewById(R.id.btn_refresh_history);
+        historyAdapter = new ActivityHistoryAdapter();
+        // The history rows keep their stable ids; the header and footer have their own
+        HeaderViewAdapter headerAdapter = new HeaderViewAdapter(header);
+        headerAdapter.setHasStableIds(true);
+        HeaderViewAdapter footerAdapter = new HeaderViewAdapter(footer);
+        footerAdapter.setHasStableIds(true);
+        ConcatAdapter.Config config = new ConcatAdapter.Config.Builder()
+                .setStableIdMode(ConcatAdapter.Config.StableIdMode.ISOLATED_STABLE_IDS)
+                .build();
+        historyList.setLayoutManager(new LinearLayoutManager(requireContext()));
+        historyList.setAdapter(new ConcatAdapter(config, headerAdapter, historyAdapter, footerAdapter));
         
         // Initialize chart
-        com.github.mikephil.charting.charts.BarChart activityChart = root.findViewById(R.id.activity_chart);
+        com.github.mikephil.charting.charts.BarChart activityChart = header.findViewById(R.id.activity_chart);
         setupChart(activityChart);
+        ChipGroup chartPeriodChips = header.findViewById(R.id.chips_chart_period);
+        chartPeriodChips.setOnCheckedStateChangeListener((group, checkedIds) -> {
+            if (checkedIds.contains(R.id.chip_period_hour)) {
+                showChart(CHART_HOURS);
+            } else if (checkedIds.contains(R.id.chip_period_week)) {
+                showChart(ActivityRollup.PERIOD_WEEK);
+            } else if (checkedIds.contains(R.id.chip_period_month)) {
+                showChart(ActivityRollup.PERIOD_MONTH);
+            } else {
+                showChart(ActivityRollup.PERIOD_DAY);
+            }
+        });
 
-        // Initialize sensor
-        sensorManager = (SensorManager) requireActivity().getSystemService(Context.SENSOR_SERVICE);
-        stepSensor = sensorManager.getDefaultSensor(Sensor.TYPE_STEP_COUNTER);
+        // The sensors themselves are owned by StepCounterService
+        stepSensorAvailable = StepCounterService.isStepDetectionAvailable(requireContext());
 
-        // Initialize SharedPreferences
-        prefs = requireActivity().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        
-        // Initialize SessionManager and Firestore
+        // Initialize SessionManager and the local repositories
         sessionManager = new SessionManager(requireActivity());
-        db = FirebaseFirestore.getInstance();
+        activityRepository = new ActivityRepository(requireContext());
+        rollupRepository = new ActivityRollupRepository(requireContext());
+        stepSeriesRepository = new StepSeriesRepository(requireContext());
 
         // Check if sensor is available
-        if (stepSensor == null) {
+        if (!stepSensorAvailable) {
             Toast.makeText(requireContext(), 
                 "Step counter sensor not available. Using test mode.", 
                 Toast.LENGTH_LONG).show();
@@ -114,7 +215,7 @@ public class ActivityFragment extends Fragment implements SensorEventListener {
             btnTestAdd.setVisibility(View.VISIBLE);
             android.util.Log.w("ActivityFragment", "No step counter sensor found - TEST MODE ENABLED");
         } else {
-            android.util.Log.d("ActivityFragment", "Step counter sensor found: " + stepSensor.getName());
+            android.util.Log.d("ActivityFragment", "Step counter sensor found");
         }
 
         // Setup buttons
@@ -124,13 +225,7 @@ public class ActivityFragment extends Fragment implements SensorEventListener {
         btnTestAdd.setOnClickListener(v -> testAddSteps());
         btnRefreshHistory.setOnClickListener(v -> {
             Toast.makeText(requireContext(), "Refreshing history...", Toast.LENGTH_SHORT).show();
-            loadHistory();
-        });
-        
-        // Long press test button to test Firebase write
-        btnTestAdd.setOnLongClickListener(v -> {
-            testFirebaseWrite();
-            return true;
+            loadHistory(true);
         });
 
         // Diagnostic: Check login status
@@ -152,19 +247,21 @@ public class ActivityFragment extends Fragment implements SensorEventListener {
         android.util.Log.d("ActivityFragment", "================================");
 
 
-        // Load saved state
-        loadSavedState();
-        
         // Update UI
         updateUI();
         updateButtons();
-        
-        // Load history
-        loadHistory();
 
         return root;
     }
 
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+
+        // Load history (needs the view lifecycle to observe the local data)
+        loadHistory(false);
+    }
+
     private void startCounting() {
         android.util.Log.d("ActivityFragment", "startCounting called");
         
@@ -180,34 +277,27 @@ public class ActivityFragment extends Fragment implements SensorEventListener {
             }
         }
 
-        if (stepSensor == null) {
+        if (!stepSensorAvailable) {
             Toast.makeText(requireContext(), 
                 "No sensor available. Please test on a real device.", 
                 Toast.LENGTH_SHORT).show();
             return;
         }
 
-        if (!isCounting) {
-            boolean registered = sensorManager.registerListener(this, stepSensor, SensorManager.SENSOR_DELAY_NORMAL);
-            android.util.Log.d("ActivityFragment", "Sensor registration result: " + registered);
-            
-            if (registered) {
-                isCounting = true;
-                startTime = System.currentTimeMillis();
-                saveState();
-                updateButtons();
-                Toast.makeText(requireContext(), "Step counting started - Start walking!", Toast.LENGTH_LONG).show();
-            } else {
-                Toast.makeText(requireContext(), "Failed to register sensor listener", Toast.LENGTH_SHORT).show();
-            }
+        if (!isCounting && stepService != null) {
+            // Keeps counting in the foreground service after the screen is closed
+            stepService.startCounting();
+            isCounting = true;
+            startTime = stepService.getStartTime();
+            updateButtons();
+            Toast.makeText(requireContext(), "Step counting started - Start walking!", Toast.LENGTH_LONG).show();
         }
     }
 
     private void stopCounting() {
-        if (isCounting) {
-            sensorManager.unregisterListener(this);
+        if (isCounting && stepService != null) {
+            totalSteps = stepService.stopCounting();
             isCounting = false;
-            saveState();
             
             // Save to Firestore
             saveActivityToFirestore();
@@ -218,11 +308,10 @@ public class ActivityFragment extends Fragment implements SensorEventListener {
     }
 
     private void resetCounter() {
-        if (!isCounting) {
-            baseline = -1;
+        if (!isCounting && stepService != null) {
+            stepService.resetCounter();
             totalSteps = 0;
             startTime = 0;
-            saveState();
             updateUI();
             Toast.makeText(requireContext(), "Counter reset", Toast.LENGTH_SHORT).show();
         }
@@ -234,10 +323,10 @@ public class ActivityFragment extends Fragment implements SensorEventListener {
             return;
         }
         
-        totalSteps += 10;
-        android.util.Log.d("ActivityFragment", "TEST: Manually added 10 steps. Total: " + totalSteps);
-        saveState();
-        updateUI();
+        if (stepService != null) {
+            stepService.addSteps(10);
+        }
+        android.util.Log.d("ActivityFragment", "TEST: Manually added 10 steps");
         Toast.makeText(requireContext(), "Added +10 steps (TEST)", Toast.LENGTH_SHORT).show();
     }
 
@@ -273,76 +362,19 @@ public class ActivityFragment extends Fragment implements SensorEventListener {
             System.currentTimeMillis()
         );
 
-        // Log the exact path
-        String firestorePath = "users/" + safeUserId + "/activities/";
-        android.util.Log.d("ActivityFragment", "==========================================");
-        android.util.Log.d("ActivityFragment", "🔥 FIREBASE PATH: " + firestorePath);
-        android.util.Log.d("ActivityFragment", "🔥 LOOK IN FIREBASE CONSOLE AT THIS EXACT PATH:");
-        android.util.Log.d("ActivityFragment", "🔥 Collection: users");
-        android.util.Log.d("ActivityFragment", "🔥 Document: " + safeUserId);
-        android.util.Log.d("ActivityFragment", "🔥 Subcollection: activities");
-        android.util.Log.d("ActivityFragment", "==========================================");
-
-        // Save to Firestore
-        db.collection("users")
-                .document(safeUserId)
-                .collection("activities")
-                .add(activityData)
-                .addOnSuccessListener(documentReference -> {
-                    String docId = documentReference.getId();
-                    android.util.Log.d("ActivityFragment", "==========================================");
-                    android.util.Log.d("ActivityFragment", "✅ SUCCESS! Document ID: " + docId);
-                    android.util.Log.d("ActivityFragment", "✅ FULL PATH: users/" + safeUserId + "/activities/" + docId);
-                    android.util.Log.d("ActivityFragment", "✅ Check Firebase Console NOW!");
-                    android.util.Log.d("ActivityFragment", "==========================================");
-                    
-                    Toast.makeText(requireContext(), "Saved! Check: users/" + safeUserId + "/activities/" + docId, Toast.LENGTH_LONG).show();
-                    loadHistory();
-                })
-                .addOnFailureListener(e -> {
-                    android.util.Log.e("ActivityFragment", "==========================================");
-                    android.util.Log.e("ActivityFragment", "❌ FIREBASE WRITE FAILED!");
-                    android.util.Log.e("ActivityFragment", "❌ Error: " + e.getClass().getSimpleName());
-                    android.util.Log.e("ActivityFragment", "❌ Message: " + e.getMessage());
-                    android.util.Log.e("ActivityFragment", "==========================================", e);
-                    
-                    Toast.makeText(requireContext(), "FAILED: " + e.getClass().getSimpleName() + " - " + e.getMessage(), Toast.LENGTH_LONG).show();
-                });
-    }
-
-    // Test method to verify Firebase write
-    private void testFirebaseWrite() {
-        String email = sessionManager.getLoggedInEmail();
-        if (email == null) {
-            Toast.makeText(requireContext(), "Not logged in!", Toast.LENGTH_SHORT).show();
-            return;
-        }
-        
-        String safeUserId = email.replace(".", "_");
-        java.util.Map<String, Object> testData = new java.util.HashMap<>();
-        testData.put("test", "Hello Firebase!");
-        testData.put("timestamp", System.currentTimeMillis());
-        
-        android.util.Log.d("ActivityFragment", "🔥 TEST WRITE to users/" + safeUserId + "/activities/");
-        
-        db.collection("users")
-                .document(safeUserId)
-                .collection("activities")
-                .add(testData)
-                .addOnSuccessListener(ref -> {
-                    String msg = "✅ TEST SUCCESS! Doc ID: " + ref.getId();
-                    android.util.Log.d("ActivityFragment", msg);
-                    Toast.makeText(requireContext(), msg, Toast.LENGTH_LONG).show();
-                })
-                .addOnFailureListener(e -> {
-                    String msg = "❌ TEST FAILED: " + e.getMessage();
-                    android.util.Log.e("ActivityFragment", msg, e);
-                    Toast.makeText(requireContext(), msg, Toast.LENGTH_LONG).show();
+        // Stored locally first; SyncEngine pushes it to users/{safeUserId}/activities
+        activityRepository.addActivity(activityData, () ->
+                android.util.Log.d("ActivityFragment", "Activity saved locally, id: " + activityData.getId()),
+                error -> {
+                    // Offline it just stays pending; a refused one has been removed again
+                    if (error instanceof RejectedWriteException && isAdded()) {
+                        Toast.makeText(requireContext(), "Activité refusée par le serveur ❌", Toast.LENGTH_LONG).show();
+                    }
                 });
     }
 
-
-    private void loadHistory() {
+    // Shows the local history at once; force asks the server even when the last sync is recent
+    private void loadHistory(boolean force) {
         String email = sessionManager.getLoggedInEmail();
         
         if (email == null || email.isEmpty()) {
@@ -354,119 +386,75 @@ public class ActivityFragment extends Fragment implements SensorEventListener {
 
         // Use same pattern as RunHistoryFragment
         String safeUserId = email.replace(".", "_");
-        
-        android.util.Log.d("ActivityFragment", "========== LOAD HISTORY ==========");
-        android.util.Log.d("ActivityFragment", "Email: " + email);
-        android.util.Log.d("ActivityFragment", "Safe UserId: " + safeUserId);
-        android.util.Log.d("ActivityFragment", "Loading from: users/" + safeUserId + "/activities");
-        
-        // Force fetch from server, not cache
-        db.collection("users")
-                .document(safeUserId)
-                .collection("activities")
-                .orderBy("date", com.google.firebase.firestore.Query.Direction.DESCENDING)
-                .limit(10)
-                .get(com.google.firebase.firestore.Source.SERVER) // Force server fetch
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    android.util.Log.d("ActivityFragment", "Firestore query success - " + queryDocumentSnapshots.size() + " documents found");
-                    historyContainer.removeAllViews();
-                    
-                    if (queryDocumentSnapshots.isEmpty()) {
-                        tvHistoryEmpty.setVisibility(View.VISIBLE);
-                        tvHistoryEmpty.setText("No activity history yet. Start tracking to see your progress!");
-                        updateChart(null); // Clear chart
-                        return;
-                    }
-                    
-                    tvHistoryEmpty.setVisibility(View.GONE);
-                    
-                    // Collect all activities for chart
-                    java.util.List<ActivityData> activities = new java.util.ArrayList<>();
-                    
-                    for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
-                        ActivityData activity = document.toObject(ActivityData.class);
-                        android.util.Log.d("ActivityFragment", "Loaded activity: " + activity.getStepCount() + " steps on " + activity.getFormattedDate());
-                        activities.add(activity);
-                        addHistoryItem(activity);
-                    }
-                    
-                    // Update chart with loaded activities
-                    updateChart(activities);
-                })
-                .addOnFailureListener(e -> {
-                    android.util.Log.e("ActivityFragment", "Error loading history: " + e.getMessage(), e);
-                    tvHistoryEmpty.setVisibility(View.VISIBLE);
-                    tvHistoryEmpty.setText("Error loading history: " + e.getMessage());
-                    Toast.makeText(requireContext(), "Failed to load history: " + e.getMessage(), Toast.LENGTH_LONG).show();
-                });
-    }
 
-    private void addHistoryItem(ActivityData activity) {
-        View itemView = LayoutInflater.from(requireContext()).inflate(R.layout.item_activity_history, historyContainer, false);
-        
-        TextView tvDate = itemView.findViewById(R.id.tv_history_date);
-        TextView tvSteps = itemView.findViewById(R.id.tv_history_steps);
-        TextView tvLevel = itemView.findViewById(R.id.tv_history_level);
-        TextView tvTime = itemView.findViewById(R.id.tv_history_time);
-        
-        tvDate.setText(activity.getFormattedDate());
-        tvSteps.setText(activity.getStepCount() + " pas");
-        tvLevel.setText("Niveau: " + activity.getActivityLevel());
-        tvTime.setText("Temps: " + activity.getActiveTime() + " min");
-        
-        historyContainer.addView(itemView);
-    }
-
-    @Override
-    public void onSensorChanged(SensorEvent event) {
-        if (event.sensor.getType() == Sensor.TYPE_STEP_COUNTER) {
-            int currentSteps = (int) event.values[0];
-            
-            android.util.Log.d("ActivityFragment", "=== SENSOR EVENT ===");
-            android.util.Log.d("ActivityFragment", "Current sensor value: " + currentSteps);
-            android.util.Log.d("ActivityFragment", "Is counting: " + isCounting);
-            android.util.Log.d("ActivityFragment", "Current baseline: " + baseline);
-            android.util.Log.d("ActivityFragment", "Current totalSteps: " + totalSteps);
-
-            // Only process if we're actively counting
-            if (!isCounting) {
-                android.util.Log.d("ActivityFragment", "Not counting, ignoring sensor data");
-                return;
+        // History comes from the local database; the sync only refreshes it in the background
+        if (!historyObserved) {
+            historyObserved = true;
+            historyUserId = safeUserId;
+            activityRepository.getRecentActivities(safeUserId, HISTORY_LIMIT)
+                    .observe(getViewLifecycleOwner(), this::showHistory);
+            rollupRepository.rebuildIfMissing(safeUserId);
+            showChart(chartPeriod);
+        }
+        SyncEngine.Callback onSynced = error -> {
+            if (error != null) {
+                android.util.Log.w("ActivityFragment", "History sync failed, showing local data: " + error.getMessage());
             }
+        };
+        if (force) {
+            activityRepository.sync(safeUserId, onSynced);
+        } else {
+            activityRepository.revalidate(safeUserId, HISTORY_MAX_AGE_MS, onSynced);
+        }
+    }
 
-            // Set baseline on first reading when we start counting
-            if (baseline == -1) {
-                baseline = currentSteps;
-                android.util.Log.d("ActivityFragment", "*** BASELINE SET TO: " + baseline + " ***");
-                saveState();
-                // Don't calculate steps on the first reading, just set baseline
-                return;
-            }
+    private void showHistory(List<ActivityData> activities) {
+        // Only the rows that changed are rebound
+        historyAdapter.submitActivities(activities);
 
-            // Calculate steps since we started counting
-            totalSteps = currentSteps - baseline;
-            
-            // Handle sensor reset (rare but possible)
-            if (totalSteps < 0) {
-                android.util.Log.w("ActivityFragment", "Negative steps detected! Sensor may have reset. Resetting baseline.");
-                baseline = currentSteps;
-                totalSteps = 0;
-            }
+        if (activities.isEmpty()) {
+            tvHistoryEmpty.setVisibility(View.VISIBLE);
+            tvHistoryEmpty.setText("No activity history yet. Start tracking to see your progress!");
+            return;
+        }
 
-            android.util.Log.d("ActivityFragment", "*** CALCULATED STEPS: " + totalSteps + " ***");
+        tvHistoryEmpty.setVisibility(View.GONE);
+    }
 
-            saveState();
-            
-            // Update UI on main thread
-            if (getActivity() != null) {
-                getActivity().runOnUiThread(this::updateUI);
-            }
+    // Switches the chart to the last few days, weeks or months
+    private void showChart(String period) {
+        chartPeriod = period;
+        if (historyUserId == null || getView() == null) {
+            return; // Shown once the history is loaded
+        }
+        if (chartRollups != null) {
+            chartRollups.removeObservers(getViewLifecycleOwner());
+            chartRollups = null;
+        }
+        if (chartDays != null) {
+            chartDays.removeObservers(getViewLifecycleOwner());
+            chartDays = null;
+        }
+        if (CHART_HOURS.equals(period)) {
+            long today = StepSeriesRepository.getDayStart(System.currentTimeMillis());
+            // 36 h on is always inside tomorrow, whatever the DST change
+            long tomorrow = StepSeriesRepository.getDayStart(today + 36 * 60 * 60 * 1000L);
+            chartDays = stepSeriesRepository.getDays(historyUserId, today, tomorrow);
+            chartDays.observe(getViewLifecycleOwner(), this::updateHourlyChart);
+            return;
         }
+        int buckets = getChartBuckets(period);
+        long first = ActivityRollupRepository.addPeriods(period,
+                ActivityRollupRepository.getPeriodStart(period, System.currentTimeMillis()), -(buckets - 1));
+        chartRollups = rollupRepository.getRollups(historyUserId, period, first);
+        chartRollups.observe(getViewLifecycleOwner(), rollups -> updateChart(period, first, buckets, rollups));
     }
 
-    @Override
-    public void onAccuracyChanged(Sensor sensor, int accuracy) {
-        // Not needed for step counter
+    private static int getChartBuckets(String period) {
+        if (ActivityRollup.PERIOD_WEEK.equals(period)) {
+            return CHART_WEEKS;
+        }
+        return ActivityRollup.PERIOD_MONTH.equals(period) ? CHART_MONTHS : CHART_DAYS;
     }
 
     private void updateUI() {
@@ -513,6 +501,14 @@ public class ActivityFragment extends Fragment implements SensorEventListener {
     }
 
     private void updateButtons() {
+        if (stepService == null) {
+            // Start, stop and reset all go through the service, so wait for it to connect
+            btnStart.setEnabled(false);
+            btnStop.setEnabled(false);
+            btnReset.setEnabled(false);
+            return;
+        }
+        btnReset.setEnabled(true);
         if (isCounting) {
             btnStart.setEnabled(false);
             btnStart.setText("DÉMARRER");
@@ -526,27 +522,6 @@ public class ActivityFragment extends Fragment implements SensorEventListener {
         }
     }
 
-    private void saveState() {
-        prefs.edit()
-                .putInt(KEY_BASELINE, baseline)
-                .putInt(KEY_TOTAL_STEPS, totalSteps)
-                .putBoolean(KEY_IS_COUNTING, isCounting)
-                .putLong(KEY_START_TIME, startTime)
-                .apply();
-    }
-
-    private void loadSavedState() {
-        baseline = prefs.getInt(KEY_BASELINE, -1);
-        totalSteps = prefs.getInt(KEY_TOTAL_STEPS, 0);
-        isCounting = prefs.getBoolean(KEY_IS_COUNTING, false);
-        startTime = prefs.getLong(KEY_START_TIME, 0);
-
-        // If we were counting before, resume
-        if (isCounting && stepSensor != null) {
-            sensorManager.registerListener(this, stepSensor, SensorManager.SENSOR_DELAY_NORMAL);
-        }
-    }
-
     @Override
     public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions, @NonNull int[] grantResults) {
         super.onRequestPermissionsResult(requestCode, permissions, grantResults);
@@ -559,21 +534,27 @@ public class ActivityFragment extends Fragment implements SensorEventListener {
         }
     }
 
+    @Override
+    public void onStart() {
+        super.onStart();
+        // While bound the service delivers steps live; unbound it goes back to batched delivery
+        requireContext().bindService(new Intent(requireContext(), StepCounterService.class),
+                stepServiceConnection, Context.BIND_AUTO_CREATE);
+    }
+
     @Override
     public void onResume() {
         super.onResume();
-        if (isCounting && stepSensor != null) {
-            sensorManager.registerListener(this, stepSensor, SensorManager.SENSOR_DELAY_NORMAL);
-        }
         updateUI();
     }
 
     @Override
-    public void onPause() {
-        super.onPause();
-        if (isCounting) {
-            sensorManager.unregisterListener(this);
-        }
+    public void onStop() {
+        super.onStop();
+        stopObservingService();
+        requireContext().unbindService(stepServiceConnection);
+        stepService = null;
+        updateButtons();
     }
 
     private void setupChart(com.github.mikephil.charting.charts.BarChart chart) {
@@ -607,39 +588,51 @@ public class ActivityFragment extends Fragment implements SensorEventListener {
         chart.animateY(1000);
     }
 
-    private void updateChart(java.util.List<ActivityData> activities) {
-        if (activityChart == null || activities == null || activities.isEmpty()) {
-            if (activityChart != null) {
-                activityChart.clear();
-                activityChart.invalidate();
-            }
+    // One bar per bucket from first on; buckets without a rollup row are zero
+    private void updateChart(String period, long first, int buckets, List<ActivityRollup> rollups) {
+        if (activityChart == null) {
             return;
         }
+        if (rollups == null || rollups.isEmpty()) {
+            activityChart.clear();
+            activityChart.invalidate();
+            return;
+        }
+
+        java.util.Map<Long, ActivityRollup> byStart = new java.util.HashMap<>();
+        for (ActivityRollup rollup : rollups) {
+            byStart.put(rollup.getPeriodStart(), rollup);
+        }
 
         java.util.List<com.github.mikephil.charting.data.BarEntry> entries = new java.util.ArrayList<>();
         java.util.List<String> labels = new java.util.ArrayList<>();
-        
-        // Reverse to show oldest first (left to right)
-        java.util.List<ActivityData> reversedList = new java.util.ArrayList<>(activities);
-        java.util.Collections.reverse(reversedList);
-        
-        // Take last 7 activities
-        int size = Math.min(reversedList.size(), 7);
-        for (int i = 0; i < size; i++) {
-            ActivityData activity = reversedList.get(i);
-            entries.add(new com.github.mikephil.charting.data.BarEntry(i, activity.getStepCount()));
-            
-            // Format date to MM/DD
-            try {
-                java.text.SimpleDateFormat inputFormat = new java.text.SimpleDateFormat("dd/MM/yyyy", java.util.Locale.getDefault());
-                java.text.SimpleDateFormat outputFormat = new java.text.SimpleDateFormat("MM/dd", java.util.Locale.getDefault());
-                java.util.Date date = inputFormat.parse(activity.getFormattedDate());
-                labels.add(outputFormat.format(date));
-            } catch (Exception e) {
-                labels.add(activity.getFormattedDate());
-            }
+        java.text.SimpleDateFormat labelFormat = ActivityRollup.PERIOD_MONTH.equals(period) ? monthLabelFormat : dayLabelFormat;
+        for (int i = 0; i < buckets; i++) {
+            long start = ActivityRollupRepository.addPeriods(period, first, i);
+            ActivityRollup rollup = byStart.get(start);
+            entries.add(new com.github.mikephil.charting.data.BarEntry(i, rollup != null ? rollup.getStepCount() : 0));
+            labels.add(labelFormat.format(new java.util.Date(start)));
         }
 
+        showBars(entries, labels);
+    }
+
+    // One bar per hour of today; a day without steps has no series row
+    private void updateHourlyChart(List<DailyStepSeries> days) {
+        if (activityChart == null) {
+            return;
+        }
+        int[] hours = days.isEmpty() ? new int[24] : days.get(0).getHourlySteps();
+        java.util.List<com.github.mikephil.charting.data.BarEntry> entries = new java.util.ArrayList<>();
+        java.util.List<String> labels = new java.util.ArrayList<>();
+        for (int hour = 0; hour < hours.length; hour++) {
+            entries.add(new com.github.mikephil.charting.data.BarEntry(hour, hours[hour]));
+            labels.add(hour + "h");
+        }
+        showBars(entries, labels);
+    }
+
+    private void showBars(java.util.List<com.github.mikephil.charting.data.BarEntry> entries, java.util.List<String> labels) {
         com.github.mikephil.charting.data.BarDataSet dataSet = new com.github.mikephil.charting.data.BarDataSet(entries, "Steps");
         dataSet.setColor(android.graphics.Color.parseColor("#6200EE"));
         dataSet.setValueTextColor(android.graphics.Color.BLACK);
@@ -657,8 +650,9 @@ public class ActivityFragment extends Fragment implements SensorEventListener {
     @Override
     public void onDestroyView() {
         super.onDestroyView();
-        if (isCounting) {
-            sensorManager.unregisterListener(this);
-        }
+        historyObserved = false;
+        chartRollups = null;
+        chartDays = null;
+        chartPeriod = ActivityRollup.PERIOD_DAY; // The chips start on Jour again
     }
 }
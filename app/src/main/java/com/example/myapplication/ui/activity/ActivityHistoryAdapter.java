@@ -0,0 +1,126 @@
+package com.example.myapplication.ui.activity;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.myapplication.R;
+import com.example.myapplication.model.ActivityData;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+// Activity history rows. The display strings are built once per row when a list comes in,
+// so binding only sets text; ListAdapter diffs each list off the main thread and rebinds
+// only the rows that changed.
+public class ActivityHistoryAdapter extends ListAdapter<ActivityHistoryAdapter.HistoryRow, ActivityHistoryAdapter.ViewHolder> {
+
+    private static final DiffUtil.ItemCallback<HistoryRow> DIFF_CALLBACK = new DiffUtil.ItemCallback<HistoryRow>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull HistoryRow oldItem, @NonNull HistoryRow newItem) {
+            return oldItem.id.equals(newItem.id);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull HistoryRow oldItem, @NonNull HistoryRow newItem) {
+            return oldItem.date.equals(newItem.date)
+                    && oldItem.steps.equals(newItem.steps)
+                    && oldItem.level.equals(newItem.level)
+                    && oldItem.time.equals(newItem.time);
+        }
+    };
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault());
+
+    public ActivityHistoryAdapter() {
+        super(DIFF_CALLBACK);
+        setHasStableIds(true);
+    }
+
+    public void submitActivities(List<ActivityData> activities) {
+        List<HistoryRow> rows = new ArrayList<>(activities.size());
+        for (ActivityData activity : activities) {
+            rows.add(new HistoryRow(activity.getId(),
+                    dateFormat.format(new Date(activity.getDate())),
+                    activity.getStepCount() + " pas",
+                    "Niveau: " + activity.getActivityLevel(),
+                    "Temps: " + activity.getActiveTime() + " min"));
+        }
+        submitList(rows);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).stableId;
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.item_activity_history, parent, false);
+        return new ViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        HistoryRow row = getItem(position);
+        holder.tvDate.setText(row.date);
+        holder.tvSteps.setText(row.steps);
+        holder.tvLevel.setText(row.level);
+        holder.tvTime.setText(row.time);
+    }
+
+    // What one row shows, formatted up front
+    static final class HistoryRow {
+        final String id;
+        final long stableId;
+        final String date;
+        final String steps;
+        final String level;
+        final String time;
+
+        HistoryRow(String id, String date, String steps, String level, String time) {
+            this.id = id;
+            this.stableId = hash64(id);
+            this.date = date;
+            this.steps = steps;
+            this.level = level;
+            this.time = time;
+        }
+
+        // Document ids are strings; 64-bit FNV-1a keeps collisions out of the picture
+        private static long hash64(String id) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < id.length(); i++) {
+                hash ^= id.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            return hash;
+        }
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        TextView tvDate;
+        TextView tvSteps;
+        TextView tvLevel;
+        TextView tvTime;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            tvDate = itemView.findViewById(R.id.tv_history_date);
+            tvSteps = itemView.findViewById(R.id.tv_history_steps);
+            tvLevel = itemView.findViewById(R.id.tv_history_level);
+            tvTime = itemView.findViewById(R.id.tv_history_time);
+        }
+    }
+}
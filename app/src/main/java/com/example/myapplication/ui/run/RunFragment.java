@@ -87,6 +87,13 @@ public class RunFragment extends Fragment {
         viewModel.getAvgSpeedLive().observe(getViewLifecycleOwner(), speed ->
                 tvSpeed.setText(String.format(Locale.getDefault(), "%.2f", speed )));
 
+        viewModel.getMessage().observe(getViewLifecycleOwner(), message -> {
+            if (message != null) {
+                Toast.makeText(getContext(), message, Toast.LENGTH_SHORT).show();
+                viewModel.onMessageShown();
+            }
+        });
+
         viewModel.getDurationLive().observe(getViewLifecycleOwner(), duration -> {
             long seconds = duration / 1000;
             long hrs = seconds / 3600;
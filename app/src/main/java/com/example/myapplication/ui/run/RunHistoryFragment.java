@@ -14,8 +14,7 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.myapplication.R;
 import com.example.myapplication.controller.SessionManager;
 import com.example.myapplication.model.Course;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.example.myapplication.repository.CourseRepository;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -25,7 +24,7 @@ public class RunHistoryFragment extends Fragment {
     private RecyclerView rvCourses;
     private CourseAdapter adapter;
     private final List<Course> courses = new ArrayList<>();
-    private FirebaseFirestore db;
+    private CourseRepository courseRepository;
     private SessionManager sessionManager;
 
     @Nullable
@@ -45,7 +44,7 @@ public class RunHistoryFragment extends Fragment {
         adapter = new CourseAdapter(courses);
         rvCourses.setAdapter(adapter);
 
-        db = FirebaseFirestore.getInstance();
+        courseRepository = new CourseRepository(requireContext());
         sessionManager = new SessionManager(requireActivity());
 
         loadCourses();
@@ -57,22 +56,17 @@ public class RunHistoryFragment extends Fragment {
 
         String safeUserId = email.replace(".", "_");
 
-        db.collection("users")
-                .document(safeUserId)
-                .collection("courses")
-                .orderBy("startTime")
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    courses.clear();
-                    for (QueryDocumentSnapshot doc : queryDocumentSnapshots) {
-                        Course c = doc.toObject(Course.class);
-                        courses.add(c);
-                    }
-                    adapter.notifyDataSetChanged();
-                })
-                .addOnFailureListener(e -> {
-                    // Si erreur Firestore
-                    e.printStackTrace();
-                });
+        // Lecture depuis la base locale ; la synchro met la copie locale à jour en arrière-plan
+        courseRepository.getCourses(safeUserId).observe(getViewLifecycleOwner(), localCourses -> {
+            courses.clear();
+            courses.addAll(localCourses);
+            adapter.notifyDataSetChanged();
+        });
+        courseRepository.sync(safeUserId, error -> {
+            if (error != null) {
+                // Hors ligne : les courses locales restent affichées
+                error.printStackTrace();
+            }
+        });
     }
 }
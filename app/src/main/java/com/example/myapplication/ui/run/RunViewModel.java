@@ -1,21 +1,22 @@
 package com.example.myapplication.ui.run;
 
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
-import androidx.lifecycle.ViewModel;
 
 import com.example.myapplication.model.Course;
-import com.google.firebase.firestore.FirebaseFirestore;
-
-import java.util.HashMap;
-import java.util.Map;
+import com.example.myapplication.repository.CourseRepository;
+import com.example.myapplication.repository.RejectedWriteException;
 
-public class RunViewModel extends ViewModel {
+public class RunViewModel extends AndroidViewModel {
 
     private final MutableLiveData<Boolean> running = new MutableLiveData<>(false);
     private final MutableLiveData<String> message = new MutableLiveData<>();
 
-    private final FirebaseFirestore db = FirebaseFirestore.getInstance();
+    private final CourseRepository courseRepository;
 
     private Course course;
     private Double lastLatitude = null;
@@ -25,8 +26,14 @@ public class RunViewModel extends ViewModel {
     private final MutableLiveData<Float> avgSpeedLive = new MutableLiveData<>(0f);
     private final MutableLiveData<Long> durationLive = new MutableLiveData<>(0L);
 
+    public RunViewModel(@NonNull Application application) {
+        super(application);
+        courseRepository = new CourseRepository(application);
+    }
+
     public LiveData<Boolean> isRunning() { return running; }
     public LiveData<String> getMessage() { return message; }
+    public void onMessageShown() { message.setValue(null); }
     public LiveData<Float> getDistanceLive() { return distanceLive; }
     public LiveData<Float> getAvgSpeedLive() { return avgSpeedLive; }
     public LiveData<Long> getDurationLive() { return durationLive; }
@@ -83,25 +90,19 @@ public class RunViewModel extends ViewModel {
         avgSpeedLive.setValue(course.getAvgSpeed());
         durationLive.setValue(course.getDuration());
 
-        saveCourseToFirestore(course);
+        saveCourse(course);
     }
 
-    // ================= FIRESTORE =================
-    private void saveCourseToFirestore(Course course) {
-
+    // ================= SAUVEGARDE =================
+    // Enregistrée en local d'abord ; SyncEngine l'envoie vers users/{safeUserId}/courses
+    private void saveCourse(Course course) {
         String safeUserId = course.getUserId().replace(".", "_");
-
-        FirebaseFirestore.getInstance()
-                .collection("users")
-                .document(safeUserId)
-                .collection("courses")
-                .add(course) // ✅ on envoie l'objet Course DIRECTEMENT
-                .addOnSuccessListener(doc -> {
-                    doc.update("id", doc.getId());
-                })
-                .addOnFailureListener(e -> {
-                    message.setValue("Erreur Firestore ❌ " + e.getMessage());
-                });
+        courseRepository.addCourse(course, safeUserId, null, error -> {
+            // Hors ligne, elle reste en attente ; refusée, elle a déjà été retirée
+            if (error instanceof RejectedWriteException) {
+                message.setValue("Course refusée par le serveur ❌");
+            }
+        });
     }
 
 
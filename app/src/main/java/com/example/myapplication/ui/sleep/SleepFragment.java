@@ -24,13 +24,17 @@ import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.ConcatAdapter;
 import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.myapplication.R;
 import com.example.myapplication.controller.SessionManager;
 import com.example.myapplication.databinding.FragmentSleepBinding;
+import com.example.myapplication.databinding.ItemSleepHeaderBinding;
 import com.example.myapplication.model.SleepRecord;
 import com.example.myapplication.service.SleepSensorService;
+import com.example.myapplication.ui.HeaderViewAdapter;
 import com.example.myapplication.ui.sleep.adapter.SleepRecordAdapter;
 
 import java.text.SimpleDateFormat;
@@ -40,7 +44,11 @@ import java.util.Locale;
 
 public class SleepFragment extends Fragment {
 
+    // Rows within this many of the end of the list ask for the next page
+    private static final int LOAD_MORE_AHEAD = 5;
+
     private FragmentSleepBinding binding;
+    private ItemSleepHeaderBinding header; // The form above the records, first item of the list
     private SleepViewModel sleepViewModel;
     private SleepRecordAdapter adapter;
     private SessionManager sessionManager;
@@ -72,6 +80,7 @@ public class SleepFragment extends Fragment {
     public View onCreateView(@NonNull LayoutInflater inflater, ViewGroup container,
                              Bundle savedInstanceState) {
         binding = FragmentSleepBinding.inflate(inflater, container, false);
+        header = ItemSleepHeaderBinding.inflate(inflater, binding.recyclerViewSleepRecords, false);
         return binding.getRoot();
     }
 
@@ -124,20 +133,36 @@ public class SleepFragment extends Fragment {
             sleepViewModel.deleteSleepRecord(record.getId(), record.getUserId());
         });
 
-        binding.recyclerViewSleepRecords.setLayoutManager(new LinearLayoutManager(requireContext()));
-        binding.recyclerViewSleepRecords.setAdapter(adapter);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(requireContext());
+        binding.recyclerViewSleepRecords.setLayoutManager(layoutManager);
+        binding.recyclerViewSleepRecords.setAdapter(new ConcatAdapter(new HeaderViewAdapter(header.getRoot()), adapter));
+
+        // The list scrolls itself and recycles its rows, so pages already read cost no views;
+        // ask for the next page as the last rows come into view
+        binding.recyclerViewSleepRecords.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy <= 0 || !sleepViewModel.hasMoreSleepRecords()) {
+                    return;
+                }
+                int lastVisible = layoutManager.findLastVisibleItemPosition();
+                if (lastVisible >= layoutManager.getItemCount() - LOAD_MORE_AHEAD) {
+                    sleepViewModel.loadMoreSleepRecords();
+                }
+            }
+        });
     }
 
     private void setupListeners() {
         // Time pickers
-        binding.btnSelectStartTime.setOnClickListener(v -> showTimePicker(true));
-        binding.btnSelectEndTime.setOnClickListener(v -> showTimePicker(false));
+        header.btnSelectStartTime.setOnClickListener(v -> showTimePicker(true));
+        header.btnSelectEndTime.setOnClickListener(v -> showTimePicker(false));
 
         // Date pickers
-        binding.btnSelectStartDate.setOnClickListener(v -> showDatePicker(true));
-        binding.btnSelectEndDate.setOnClickListener(v -> showDatePicker(false));
+        header.btnSelectStartDate.setOnClickListener(v -> showDatePicker(true));
+        header.btnSelectEndDate.setOnClickListener(v -> showDatePicker(false));
 
-        binding.btnSaveSleepRecord.setOnClickListener(v -> saveSleepRecord());
+        header.btnSaveSleepRecord.setOnClickListener(v -> saveSleepRecord());
 
         // Setup sleep quality spinner
         ArrayAdapter<CharSequence> qualityAdapter = ArrayAdapter.createFromResource(
@@ -146,20 +171,20 @@ public class SleepFragment extends Fragment {
                 android.R.layout.simple_spinner_item
         );
         qualityAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
-        binding.spinnerSleepQuality.setAdapter(qualityAdapter);
+        header.spinnerSleepQuality.setAdapter(qualityAdapter);
     }
 
     private void setupObservers() {
         sleepViewModel.getSleepRecords().observe(getViewLifecycleOwner(), records -> {
             adapter.submitList(records);
-            binding.textNoRecords.setVisibility(records.isEmpty() ? View.VISIBLE : View.GONE);
+            header.textNoRecords.setVisibility(records.isEmpty() ? View.VISIBLE : View.GONE);
         });
 
         sleepViewModel.getIsLoading().observe(getViewLifecycleOwner(), isLoading -> {
-            binding.progressBar.setVisibility(isLoading ? View.VISIBLE : View.GONE);
-            binding.btnSaveSleepRecord.setEnabled(!isLoading);
-            binding.btnStartSensorTracking.setEnabled(!isLoading);
-            binding.btnStopSensorTracking.setEnabled(!isLoading);
+            // Saving never waits on the network, so the save button stays enabled
+            header.progressBar.setVisibility(isLoading ? View.VISIBLE : View.GONE);
+            header.btnStartSensorTracking.setEnabled(!isLoading);
+            header.btnStopSensorTracking.setEnabled(!isLoading);
         });
 
         sleepViewModel.getErrorMessage().observe(getViewLifecycleOwner(), error -> {
@@ -170,7 +195,7 @@ public class SleepFragment extends Fragment {
     }
 
     private void setupSensorTracking() {
-        binding.btnStartSensorTracking.setOnClickListener(v -> {
+        header.btnStartSensorTracking.setOnClickListener(v -> {
             if (checkPermissions()) {
                 startSensorTracking();
             } else {
@@ -178,7 +203,7 @@ public class SleepFragment extends Fragment {
             }
         });
 
-        binding.btnStopSensorTracking.setOnClickListener(v -> {
+        header.btnStopSensorTracking.setOnClickListener(v -> {
             stopSensorTracking();
         });
 
@@ -186,7 +211,7 @@ public class SleepFragment extends Fragment {
     }
 
     private void setupChronometer() {
-        chronometer = binding.chronometer;
+        chronometer = header.chronometer;
 
         // Set chronometer format
         chronometer.setFormat("%s");
@@ -330,10 +355,10 @@ public class SleepFragment extends Fragment {
         saveChronometerState(true, chronometerBaseTime);
 
         // Show chronometer layout
-        binding.layoutChronometer.setVisibility(View.VISIBLE);
+        header.layoutChronometer.setVisibility(View.VISIBLE);
 
         // Update tracking hint
-        binding.textTrackingHint.setText("Phone is monitoring your sleep...");
+        header.textTrackingHint.setText("Phone is monitoring your sleep...");
     }
 
     private void stopChronometer() {
@@ -344,7 +369,7 @@ public class SleepFragment extends Fragment {
         saveChronometerState(false, 0);
 
         // Hide chronometer layout
-        binding.layoutChronometer.setVisibility(View.GONE);
+        header.layoutChronometer.setVisibility(View.GONE);
     }
 
     private void saveChronometerState(boolean isRunning, long baseTime) {
@@ -366,13 +391,13 @@ public class SleepFragment extends Fragment {
             long elapsedTime = currentTime - savedBaseTime;
 
             // Show chronometer with elapsed time
-            binding.layoutChronometer.setVisibility(View.VISIBLE);
+            header.layoutChronometer.setVisibility(View.VISIBLE);
             chronometerBaseTime = currentTime - elapsedTime;
             chronometer.setBase(chronometerBaseTime);
             chronometer.start();
 
             // Update tracking hint
-            binding.textTrackingHint.setText("Resumed tracking...");
+            header.textTrackingHint.setText("Resumed tracking...");
 
             isSensorMonitoring = true;
             updateSensorUI();
@@ -397,18 +422,18 @@ public class SleepFragment extends Fragment {
 
     private void updateSensorUI() {
         if (isSensorMonitoring) {
-            binding.btnStartSensorTracking.setVisibility(View.GONE);
-            binding.btnStopSensorTracking.setVisibility(View.VISIBLE);
-            binding.textSensorStatus.setText("🟢 Sensor tracking active");
-            binding.textSensorStatus.setTextColor(ContextCompat.getColor(requireContext(), android.R.color.holo_green_dark));
+            header.btnStartSensorTracking.setVisibility(View.GONE);
+            header.btnStopSensorTracking.setVisibility(View.VISIBLE);
+            header.textSensorStatus.setText("🟢 Sensor tracking active");
+            header.textSensorStatus.setTextColor(ContextCompat.getColor(requireContext(), android.R.color.holo_green_dark));
         } else {
-            binding.btnStartSensorTracking.setVisibility(View.VISIBLE);
-            binding.btnStopSensorTracking.setVisibility(View.GONE);
-            binding.textSensorStatus.setText("⚪ Sensor tracking idle");
-            binding.textSensorStatus.setTextColor(ContextCompat.getColor(requireContext(), android.R.color.darker_gray));
+            header.btnStartSensorTracking.setVisibility(View.VISIBLE);
+            header.btnStopSensorTracking.setVisibility(View.GONE);
+            header.textSensorStatus.setText("⚪ Sensor tracking idle");
+            header.textSensorStatus.setTextColor(ContextCompat.getColor(requireContext(), android.R.color.darker_gray));
 
             // Ensure chronometer is hidden when not tracking
-            binding.layoutChronometer.setVisibility(View.GONE);
+            header.layoutChronometer.setVisibility(View.GONE);
         }
     }
 
@@ -451,19 +476,19 @@ public class SleepFragment extends Fragment {
         SimpleDateFormat dateFormat = new SimpleDateFormat("EEE, MMM dd, yyyy", Locale.getDefault());
         SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
 
-        binding.btnSelectStartDate.setText(
+        header.btnSelectStartDate.setText(
                 String.format("Start Date: %s", dateFormat.format(startDateTimeCalendar.getTime()))
         );
 
-        binding.btnSelectStartTime.setText(
+        header.btnSelectStartTime.setText(
                 String.format("Start Time: %s", timeFormat.format(startDateTimeCalendar.getTime()))
         );
 
-        binding.btnSelectEndDate.setText(
+        header.btnSelectEndDate.setText(
                 String.format("End Date: %s", dateFormat.format(endDateTimeCalendar.getTime()))
         );
 
-        binding.btnSelectEndTime.setText(
+        header.btnSelectEndTime.setText(
                 String.format("End Time: %s", timeFormat.format(endDateTimeCalendar.getTime()))
         );
 
@@ -472,9 +497,9 @@ public class SleepFragment extends Fragment {
         if (durationMillis > 0) {
             int hours = (int) (durationMillis / (60 * 60 * 1000));
             int minutes = (int) ((durationMillis / (60 * 1000)) % 60);
-            binding.btnSaveSleepRecord.setText(String.format("Save Sleep Record (%dh %dm)", hours, minutes));
+            header.btnSaveSleepRecord.setText(String.format("Save Sleep Record (%dh %dm)", hours, minutes));
         } else {
-            binding.btnSaveSleepRecord.setText("Save Sleep Record");
+            header.btnSaveSleepRecord.setText("Save Sleep Record");
         }
     }
 
@@ -499,9 +524,9 @@ public class SleepFragment extends Fragment {
             return;
         }
 
-        int sleepQuality = binding.spinnerSleepQuality.getSelectedItemPosition() + 1; // 1-5
-        String notes = binding.editTextNotes.getText() != null ?
-                binding.editTextNotes.getText().toString().trim() : "";
+        int sleepQuality = header.spinnerSleepQuality.getSelectedItemPosition() + 1; // 1-5
+        String notes = header.editTextNotes.getText() != null ?
+                header.editTextNotes.getText().toString().trim() : "";
 
         SleepRecord record = new SleepRecord(
                 userId,
@@ -515,8 +540,8 @@ public class SleepFragment extends Fragment {
         sleepViewModel.addSleepRecord(record, userId);
 
         // Clear form and reset to default times
-        binding.editTextNotes.setText("");
-        binding.spinnerSleepQuality.setSelection(0);
+        header.editTextNotes.setText("");
+        header.spinnerSleepQuality.setSelection(0);
 
 
         // Reset calendars for next entry (default to last night's sleep)
@@ -547,5 +572,6 @@ public class SleepFragment extends Fragment {
     public void onDestroyView() {
         super.onDestroyView();
         binding = null;
+        header = null;
     }
 }
\ No newline at end of file
@@ -1,24 +1,40 @@
 package com.example.myapplication.ui.sleep;
 
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
 import androidx.lifecycle.MutableLiveData;
-import androidx.lifecycle.ViewModel;
 
 import com.example.myapplication.model.SleepRecord;
+import com.example.myapplication.repository.PagedLocalLiveData;
+import com.example.myapplication.repository.RejectedWriteException;
 import com.example.myapplication.repository.SleepRepository;
-import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.ListenerRegistration;
 
-import java.util.ArrayList;
 import java.util.List;
 
-public class SleepViewModel extends ViewModel {
-    private final MutableLiveData<List<SleepRecord>> sleepRecords = new MutableLiveData<>();
+public class SleepViewModel extends AndroidViewModel {
+    // About three weeks of nights: fills the screen with some scroll ahead
+    private static final int PAGE_SIZE = 20;
+
+    private final MediatorLiveData<List<SleepRecord>> sleepRecords = new MediatorLiveData<>();
     private final MutableLiveData<Boolean> isLoading = new MutableLiveData<>(false);
     private final MutableLiveData<String> errorMessage = new MutableLiveData<>();
-    private final SleepRepository repository = new SleepRepository();
+    private final SleepRepository repository;
     private final MutableLiveData<SleepRecord> selectedRecord = new MutableLiveData<>();
 
+    private String observedUserId;
+    private PagedLocalLiveData<SleepRecord> localRecords;
+    private ListenerRegistration remoteListener;
+
+    public SleepViewModel(@NonNull Application application) {
+        super(application);
+        repository = new SleepRepository(application);
+    }
+
     public LiveData<List<SleepRecord>> getSleepRecords() {
         return sleepRecords;
     }
@@ -35,33 +51,25 @@ public class SleepViewModel extends ViewModel {
         return selectedRecord;
     }
 
+    // Shows the first page of local records right away and follows every local change. The
+    // sync catches up with what changed while away, then a snapshot listener applies each
+    // remote change to the local copy as it happens.
     public void loadSleepRecords(String userId) {
+        boolean userChanged = !userId.equals(observedUserId);
+        if (userChanged) {
+            if (localRecords != null) {
+                sleepRecords.removeSource(localRecords);
+            }
+            observedUserId = userId;
+            localRecords = repository.getSleepRecordsByUser(userId, PAGE_SIZE);
+            sleepRecords.addSource(localRecords, sleepRecords::setValue);
+        }
+
         isLoading.setValue(true);
-        repository.getSleepRecordsByUser(userId, task -> {
+        repository.sync(userId, error -> {
             isLoading.setValue(false);
-            if (task.isSuccessful()) {
-                List<SleepRecord> records = new ArrayList<>();
-                for (DocumentSnapshot document : task.getResult()) {
-                    SleepRecord record = document.toObject(SleepRecord.class);
-                    if (record != null) {
-                        record.setId(document.getId());
-                        records.add(record);
-                    }
-                }
-
-                // Sort records by recordDate in descending order (newest first)
-                // This handles both normal queries and fallback queries
-                records.sort((r1, r2) -> {
-                    if (r1.getRecordDate() == null || r2.getRecordDate() == null) {
-                        return 0;
-                    }
-                    return r2.getRecordDate().compareTo(r1.getRecordDate());
-                });
-
-                sleepRecords.setValue(records);
-            } else {
-                Exception exception = task.getException();
-                String errorMsg = exception != null ? exception.getMessage() : "Unknown error";
+            if (error != null) {
+                String errorMsg = error.getMessage() != null ? error.getMessage() : "Unknown error";
 
                 // Handle specific Firestore errors
                 if (errorMsg.contains("FAILED_PRECONDITION")) {
@@ -70,60 +78,51 @@ public class SleepViewModel extends ViewModel {
                     errorMessage.setValue("Permission denied. Please check Firestore security rules.");
                 } else if (errorMsg.contains("UNAUTHENTICATED")) {
                     errorMessage.setValue("Not authenticated. Please log in again.");
-                } else {
-                    errorMessage.setValue("Failed to load sleep records: " + errorMsg);
                 }
+                // Offline or timed out: the local records are already shown, retry on the next load
             }
         });
+
+        if (userChanged) {
+            if (remoteListener != null) {
+                remoteListener.remove();
+            }
+            remoteListener = repository.listen(userId);
+        }
+    }
+
+    // False once every local record is in the list
+    public boolean hasMoreSleepRecords() {
+        return localRecords != null && localRecords.hasMore();
     }
 
+    // Called as the list nears its end
+    public void loadMoreSleepRecords() {
+        if (localRecords != null) {
+            localRecords.loadMore();
+        }
+    }
+
+    // Saved locally first; the list updates immediately with the row marked pending, and no
+    // loading state is shown. A network failure just leaves it pending for the next sync.
     public void addSleepRecord(SleepRecord record, String userId) {
-        isLoading.setValue(true);
         record.setUserId(userId);
-        repository.addSleepRecord(record, task -> {
-            isLoading.setValue(false);
-            if (task.isSuccessful()) {
-                loadSleepRecords(userId);
-            } else {
-                Exception exception = task.getException();
-                String errorMsg = exception != null ? exception.getMessage() : "Unknown error";
-
-                // Check for specific permission/authentication errors
-                if (errorMsg.contains("PERMISSION_DENIED")) {
-                    errorMessage.setValue("Permission denied. Please check Firestore security rules and ensure you're logged in.");
-                } else if (errorMsg.contains("UNAUTHENTICATED")) {
-                    errorMessage.setValue("Not authenticated. Please log in again.");
-                } else if (errorMsg.contains("NETWORK")) {
-                    errorMessage.setValue("Network error. Please check your internet connection.");
-                } else {
-                    errorMessage.setValue("Failed to add sleep record: " + errorMsg);
-                }
-            }
-        });
+        repository.addSleepRecord(record, this::onWriteSynced);
     }
 
     public void updateSleepRecord(String recordId, SleepRecord record) {
-        isLoading.setValue(true);
-        repository.updateSleepRecord(recordId, record, task -> {
-            isLoading.setValue(false);
-            if (task.isSuccessful()) {
-                loadSleepRecords(record.getUserId());
-            } else {
-                errorMessage.setValue("Failed to update sleep record: " + task.getException().getMessage());
-            }
-        });
+        repository.updateSleepRecord(recordId, record, this::onWriteSynced);
     }
 
     public void deleteSleepRecord(String recordId, String userId) {
-        isLoading.setValue(true);
-        repository.deleteSleepRecord(recordId, task -> {
-            isLoading.setValue(false);
-            if (task.isSuccessful()) {
-                loadSleepRecords(userId);
-            } else {
-                errorMessage.setValue("Failed to delete sleep record: " + task.getException().getMessage());
-            }
-        });
+        repository.deleteSleepRecord(recordId, userId, this::onWriteSynced);
+    }
+
+    private void onWriteSynced(Exception error) {
+        if (error instanceof RejectedWriteException) {
+            // The list already shows the server's version again
+            errorMessage.setValue("Your change could not be saved and was undone.");
+        }
     }
 
     public void selectRecord(SleepRecord record) {
@@ -133,4 +132,12 @@ public class SleepViewModel extends ViewModel {
     public void clearSelectedRecord() {
         selectedRecord.setValue(null);
     }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        if (remoteListener != null) {
+            remoteListener.remove();
+        }
+    }
 }
\ No newline at end of file
@@ -6,18 +6,39 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.myapplication.R;
 import com.example.myapplication.model.SleepRecord;
 
 import java.text.SimpleDateFormat;
-import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
 
-public class SleepRecordAdapter extends RecyclerView.Adapter<SleepRecordAdapter.ViewHolder> {
+// ListAdapter diffs each new list against the shown one off the main thread, so a single
+// edited record rebinds a single row
+public class SleepRecordAdapter extends ListAdapter<SleepRecord, SleepRecordAdapter.ViewHolder> {
+
+    private static final DiffUtil.ItemCallback<SleepRecord> DIFF_CALLBACK = new DiffUtil.ItemCallback<SleepRecord>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull SleepRecord oldItem, @NonNull SleepRecord newItem) {
+            return Objects.equals(oldItem.getId(), newItem.getId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull SleepRecord oldItem, @NonNull SleepRecord newItem) {
+            // Every list is read fresh from the database, so compare what the row shows
+            return Objects.equals(oldItem.getSleepStartTime(), newItem.getSleepStartTime())
+                    && Objects.equals(oldItem.getSleepEndTime(), newItem.getSleepEndTime())
+                    && oldItem.getSleepDuration() == newItem.getSleepDuration()
+                    && oldItem.getSleepQuality() == newItem.getSleepQuality()
+                    && Objects.equals(oldItem.getNotes(), newItem.getNotes())
+                    && oldItem.isPendingSync() == newItem.isPendingSync();
+        }
+    };
 
-    private List<SleepRecord> sleepRecords;
     private final OnSleepRecordClickListener clickListener;
     private final OnSleepRecordDeleteListener deleteListener;
     private final SimpleDateFormat dateTimeFormat = new SimpleDateFormat("MMM dd, HH:mm", Locale.getDefault());
@@ -32,6 +53,7 @@ public class SleepRecordAdapter extends RecyclerView.Adapter<SleepRecordAdapter.
 
     public SleepRecordAdapter(OnSleepRecordClickListener clickListener,
                               OnSleepRecordDeleteListener deleteListener) {
+        super(DIFF_CALLBACK);
         this.clickListener = clickListener;
         this.deleteListener = deleteListener;
     }
@@ -46,7 +68,7 @@ public class SleepRecordAdapter extends RecyclerView.Adapter<SleepRecordAdapter.
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        SleepRecord record = sleepRecords.get(position);
+        SleepRecord record = getItem(position);
 
         if (record.getSleepStartTime() != null && record.getSleepEndTime() != null) {
             String startTime = dateTimeFormat.format(record.getSleepStartTime());
@@ -70,6 +92,9 @@ public class SleepRecordAdapter extends RecyclerView.Adapter<SleepRecordAdapter.
             holder.textNotes.setVisibility(View.GONE);
         }
 
+        // Dimmed until the server has the change
+        holder.itemView.setAlpha(record.isPendingSync() ? 0.6f : 1f);
+
         holder.itemView.setOnClickListener(v -> clickListener.onSleepRecordClick(record));
         holder.btnDelete.setOnClickListener(v -> deleteListener.onSleepRecordDelete(record));
     }
@@ -96,16 +121,6 @@ public class SleepRecordAdapter extends RecyclerView.Adapter<SleepRecordAdapter.
         }
     }
 
-    @Override
-    public int getItemCount() {
-        return sleepRecords != null ? sleepRecords.size() : 0;
-    }
-
-    public void submitList(List<SleepRecord> records) {
-        this.sleepRecords = records;
-        notifyDataSetChanged();
-    }
-
     static class ViewHolder extends RecyclerView.ViewHolder {
         TextView textSleepTime;
         TextView textDuration;
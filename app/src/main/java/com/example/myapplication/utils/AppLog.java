@@ -0,0 +1,34 @@
+package com.example.myapplication.utils;
+
+import android.util.Log;
+
+/**
+ * Logging facade for hot paths such as sensor callbacks. LEVEL is a compile-time constant, so
+ * a call guarded with {@code if (AppLog.DEBUG)} is stripped by the compiler, message
+ * concatenation included, whenever the level is above it.
+ */
+public final class AppLog {
+    // Raise to Log.DEBUG / Log.VERBOSE locally to trace sensor events
+    public static final int LEVEL = Log.INFO;
+
+    public static final boolean VERBOSE = LEVEL <= Log.VERBOSE;
+    public static final boolean DEBUG = LEVEL <= Log.DEBUG;
+
+    private AppLog() {}
+
+    public static void v(String tag, String msg) {
+        if (VERBOSE) Log.v(tag, msg);
+    }
+
+    public static void d(String tag, String msg) {
+        if (DEBUG) Log.d(tag, msg);
+    }
+
+    public static void w(String tag, String msg) {
+        Log.w(tag, msg);
+    }
+
+    public static void e(String tag, String msg, Throwable tr) {
+        Log.e(tag, msg, tr);
+    }
+}
@@ -0,0 +1,289 @@
+package com.example.myapplication.utils;
+
+import com.example.myapplication.model.LightData;
+import com.example.myapplication.model.MovementData;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact binary encoding of raw sleep sensor series for upload as a Firestore Blob.
+ *
+ * Layout: format version byte, series kind byte, then a Deflater stream holding the sample
+ * count and one column per field. Timestamps are delta-of-delta coded, values are quantized
+ * to fixed steps and delta coded, and every number is a zigzag varint, so a steady 1 Hz
+ * series costs a byte or two per value before compression. Derived fields (raw magnitude,
+ * significance, darkness) are not stored; the decoder recomputes them via the model constructors.
+ */
+public final class SensorSeriesCodec {
+    public static final int FORMAT_VERSION = 1;
+
+    private static final byte KIND_MOVEMENT = 'M';
+    private static final byte KIND_LIGHT = 'L';
+    private static final float AXIS_SCALE = 100f; // 0.01 m/s² steps
+    private static final float LUX_SCALE = 10f; // 0.1 lux steps
+
+    private SensorSeriesCodec() {}
+
+    /** Encodes accelerometer samples: timestamp, x/y/z and dynamic magnitude. */
+    public static final class MovementEncoder {
+        private final TimestampColumn timestamps = new TimestampColumn();
+        private final ValueColumn x = new ValueColumn(AXIS_SCALE);
+        private final ValueColumn y = new ValueColumn(AXIS_SCALE);
+        private final ValueColumn z = new ValueColumn(AXIS_SCALE);
+        private final ValueColumn dynamic = new ValueColumn(AXIS_SCALE);
+        private int count = 0;
+
+        public void add(long timestamp, float x, float y, float z, float dynamicMagnitude) {
+            timestamps.add(timestamp);
+            this.x.add(x);
+            this.y.add(y);
+            this.z.add(z);
+            dynamic.add(dynamicMagnitude);
+            count++;
+        }
+
+        public int getCount() { return count; }
+
+        public byte[] encode() {
+            return SensorSeriesCodec.encode(KIND_MOVEMENT, count, timestamps.sink, x.sink, y.sink, z.sink, dynamic.sink);
+        }
+    }
+
+    /** Encodes light runs: start time, mean lux and dwell duration. */
+    public static final class LightEncoder {
+        private final TimestampColumn timestamps = new TimestampColumn();
+        private final ValueColumn lux = new ValueColumn(LUX_SCALE);
+        private final ByteSink durations = new ByteSink(); // Whole milliseconds
+        private int count = 0;
+
+        public void add(long timestamp, float lightLevel, float durationSeconds) {
+            timestamps.add(timestamp);
+            lux.add(lightLevel);
+            durations.writeVarint(Math.max(0, Math.round(durationSeconds * 1000)));
+            count++;
+        }
+
+        public int getCount() { return count; }
+
+        public byte[] encode() {
+            return SensorSeriesCodec.encode(KIND_LIGHT, count, timestamps.sink, lux.sink, durations);
+        }
+    }
+
+    public static List<MovementData> decodeMovement(byte[] data) throws IOException {
+        ByteSource in = decode(data, KIND_MOVEMENT);
+        int count = (int) in.readVarint();
+        long[] timestamps = readTimestamps(in, count);
+        float[] x = readValues(in, count, AXIS_SCALE);
+        float[] y = readValues(in, count, AXIS_SCALE);
+        float[] z = readValues(in, count, AXIS_SCALE);
+        float[] dynamic = readValues(in, count, AXIS_SCALE);
+
+        List<MovementData> movements = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            movements.add(new MovementData(new Date(timestamps[i]), x[i], y[i], z[i], dynamic[i]));
+        }
+        return movements;
+    }
+
+    public static List<LightData> decodeLight(byte[] data) throws IOException {
+        ByteSource in = decode(data, KIND_LIGHT);
+        int count = (int) in.readVarint();
+        long[] timestamps = readTimestamps(in, count);
+        float[] lux = readValues(in, count, LUX_SCALE);
+
+        List<LightData> lights = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            lights.add(new LightData(new Date(timestamps[i]), lux[i], in.readVarint() / 1000f));
+        }
+        return lights;
+    }
+
+    private static byte[] encode(byte kind, int count, ByteSink... columns) {
+        ByteSink body = new ByteSink();
+        body.writeVarint(count);
+        for (ByteSink column : columns) {
+            body.write(column);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 2 + 16);
+        out.write(FORMAT_VERSION);
+        out.write(kind);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(body.bytes, 0, body.length);
+            deflater.finish();
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+        } finally {
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    private static ByteSource decode(byte[] data, byte expectedKind) throws IOException {
+        if (data == null || data.length < 2) {
+            throw new IOException("Sensor series is empty");
+        }
+        if (data[0] != FORMAT_VERSION) {
+            throw new IOException("Unsupported sensor series format " + data[0]);
+        }
+        if (data[1] != expectedKind) {
+            throw new IOException("Unexpected sensor series kind " + (char) data[1]);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, 2, data.length - 2);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated sensor series");
+                }
+                out.write(buffer, 0, n);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt sensor series", e);
+        } finally {
+            inflater.end();
+        }
+        return new ByteSource(out.toByteArray());
+    }
+
+    private static long[] readTimestamps(ByteSource in, int count) throws IOException {
+        long[] timestamps = new long[count];
+        long previous = 0;
+        long previousDelta = 0;
+        for (int i = 0; i < count; i++) {
+            long value = in.readZigzag();
+            if (i == 0) {
+                previous = value;
+            } else {
+                previousDelta += value;
+                previous += previousDelta;
+            }
+            timestamps[i] = previous;
+        }
+        return timestamps;
+    }
+
+    private static float[] readValues(ByteSource in, int count, float scale) throws IOException {
+        float[] values = new float[count];
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            previous += in.readZigzag();
+            values[i] = previous / scale;
+        }
+        return values;
+    }
+
+    // First timestamp as is, then the change in the gap between samples
+    private static final class TimestampColumn {
+        final ByteSink sink = new ByteSink();
+        private long previous;
+        private long previousDelta;
+        private boolean first = true;
+
+        void add(long timestamp) {
+            if (first) {
+                sink.writeZigzag(timestamp);
+                first = false;
+            } else {
+                long delta = timestamp - previous;
+                sink.writeZigzag(delta - previousDelta);
+                previousDelta = delta;
+            }
+            previous = timestamp;
+        }
+    }
+
+    // Quantized to 1/scale steps, stored as the difference from the previous value
+    private static final class ValueColumn {
+        final ByteSink sink = new ByteSink();
+        private final float scale;
+        private long previous = 0;
+
+        ValueColumn(float scale) {
+            this.scale = scale;
+        }
+
+        void add(float value) {
+            long quantized = Math.round((double) value * scale);
+            sink.writeZigzag(quantized - previous);
+            previous = quantized;
+        }
+    }
+
+    private static final class ByteSink {
+        byte[] bytes = new byte[256];
+        int length = 0;
+
+        void writeZigzag(long value) {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        void writeVarint(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        void write(ByteSink other) {
+            ensureCapacity(other.length);
+            System.arraycopy(other.bytes, 0, bytes, length, other.length);
+            length += other.length;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > bytes.length) {
+                byte[] grown = new byte[Math.max(bytes.length * 2, length + extra)];
+                System.arraycopy(bytes, 0, grown, 0, length);
+                bytes = grown;
+            }
+        }
+    }
+
+    private static final class ByteSource {
+        private final byte[] bytes;
+        private int position = 0;
+
+        ByteSource(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        long readZigzag() throws IOException {
+            long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        long readVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= bytes.length) {
+                    throw new IOException("Truncated sensor series");
+                }
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint in sensor series");
+        }
+    }
+}
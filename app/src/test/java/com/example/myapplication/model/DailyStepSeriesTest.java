@@ -0,0 +1,78 @@
+package com.example.myapplication.model;
+
+import com.google.firebase.firestore.Blob;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Round-trips minute steps through the packed minuteSteps blob that goes to Firestore, and
+ * checks the range sums the hourly chart reads.
+ */
+public class DailyStepSeriesTest {
+
+    @Test
+    public void minuteSteps_roundTripThroughTheBlob() {
+        DailyStepSeries day = new DailyStepSeries("2024-03-31", "user", 0);
+        day.addSteps(0, 12);
+        day.addSteps(61, 300);
+        day.addSteps(61, 5);
+        day.addSteps(DailyStepSeries.MINUTES_PER_DAY - 1, 4_000);
+
+        DailyStepSeries read = new DailyStepSeries();
+        read.setMinuteSteps(Blob.fromBytes(day.getMinuteSteps().toBytes()));
+        assertEquals(12, read.getSteps(0, 1));
+        assertEquals(305, read.getSteps(61, 62));
+        assertEquals(4_000, read.getSteps(DailyStepSeries.MINUTES_PER_DAY - 1, DailyStepSeries.MINUTES_PER_DAY));
+        assertEquals(12 + 305 + 4_000, read.getSteps(0, DailyStepSeries.MINUTES_PER_DAY));
+        assertArrayEquals(day.getMinuteSteps().toBytes(), read.getMinuteSteps().toBytes());
+    }
+
+    @Test
+    public void minuteSteps_areBigEndianShortsByMinute() {
+        DailyStepSeries day = new DailyStepSeries("2024-03-31", "user", 0);
+        day.addSteps(1, 0x1234);
+        byte[] bytes = day.getMinuteSteps().toBytes();
+        assertEquals(DailyStepSeries.MINUTES_PER_DAY * 2, bytes.length);
+        assertEquals(0, bytes[0]);
+        assertEquals(0, bytes[1]);
+        assertEquals(0x12, bytes[2]);
+        assertEquals(0x34, bytes[3]);
+    }
+
+    @Test
+    public void fullMinute_saturatesButTheTotalKeepsCounting() {
+        DailyStepSeries day = new DailyStepSeries("2024-03-31", "user", 0);
+        day.addSteps(10, Short.MAX_VALUE - 1);
+        day.addSteps(10, 100);
+        assertEquals(Short.MAX_VALUE, day.getSteps(10, 11));
+        assertEquals(Short.MAX_VALUE + 99, day.getTotalSteps());
+    }
+
+    @Test
+    public void shortOrMissingBlob_leavesTheRestAtZero() {
+        DailyStepSeries day = new DailyStepSeries();
+        assertEquals(0, day.getSteps(0, DailyStepSeries.MINUTES_PER_DAY));
+
+        day.setMinuteSteps(Blob.fromBytes(new byte[]{0, 7, 0, 9, 1}));
+        assertEquals(7, day.getSteps(0, 1));
+        assertEquals(9, day.getSteps(1, 2));
+        assertEquals(16, day.getSteps(0, DailyStepSeries.MINUTES_PER_DAY));
+    }
+
+    @Test
+    public void hourlySteps_sumEachHourAndClipTheRange() {
+        DailyStepSeries day = new DailyStepSeries("2024-03-31", "user", 0);
+        day.addSteps(59, 1);
+        day.addSteps(60, 2);
+        day.addSteps(23 * 60 + 30, 3);
+        int[] hours = day.getHourlySteps();
+        assertEquals(24, hours.length);
+        assertEquals(1, hours[0]);
+        assertEquals(2, hours[1]);
+        assertEquals(3, hours[23]);
+        assertEquals(6, day.getSteps(-10, 5000));
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.myapplication.repository;
+
+import com.example.myapplication.model.ActivityRollup;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Puts times into their day, ISO week and month buckets and steps between buckets, in a zone
+ * with DST and with a locale whose weeks start on Sunday, where the Calendar defaults differ
+ * from ISO weeks. Also checks share ids and which sessions the history share covers.
+ */
+public class ActivityRollupRepositoryTest {
+    private static final long HOUR = 60 * 60 * 1000;
+
+    private TimeZone defaultZone;
+    private Locale defaultLocale;
+
+    @Before
+    public void setUp() {
+        defaultZone = TimeZone.getDefault();
+        defaultLocale = Locale.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Europe/Paris"));
+        Locale.setDefault(Locale.US);
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultZone);
+        Locale.setDefault(defaultLocale);
+    }
+
+    @Test
+    public void week_acrossTheYearBoundary_startsOnMonday() {
+        // Friday 1 January 2021 is in ISO week 53 of 2020
+        assertEquals(local(2020, Calendar.DECEMBER, 28, 0),
+                weekStart(local(2021, Calendar.JANUARY, 1, 15)));
+        // Sunday 1 January 2023 ends the week that started on 26 December
+        assertEquals(local(2022, Calendar.DECEMBER, 26, 0),
+                weekStart(local(2023, Calendar.JANUARY, 1, 23)));
+        // Tuesday 31 December 2024 is in ISO week 1 of 2025
+        assertEquals(local(2024, Calendar.DECEMBER, 30, 0),
+                weekStart(local(2024, Calendar.DECEMBER, 31, 8)));
+        assertEquals("week_2020-12-28", ActivityRollupRepository.getRollupId(ActivityRollup.PERIOD_WEEK,
+                weekStart(local(2021, Calendar.JANUARY, 3, 12))));
+    }
+
+    @Test
+    public void week_stepsAcrossTheYearBoundary() {
+        long week53 = local(2020, Calendar.DECEMBER, 28, 0);
+        long week1 = local(2021, Calendar.JANUARY, 4, 0);
+        assertEquals(week1, ActivityRollupRepository.addPeriods(ActivityRollup.PERIOD_WEEK, week53, 1));
+        assertEquals(week53, ActivityRollupRepository.addPeriods(ActivityRollup.PERIOD_WEEK, week1, -1));
+        assertEquals(local(2020, Calendar.NOVEMBER, 9, 0),
+                ActivityRollupRepository.addPeriods(ActivityRollup.PERIOD_WEEK, week1, -8));
+    }
+
+    @Test
+    public void day_ofA23And25HourDay_startsAtLocalMidnight() {
+        // 31 March 2024 loses an hour, 27 October 2024 gains one
+        long spring = local(2024, Calendar.MARCH, 31, 0);
+        assertEquals(spring, dayStart(spring + 23 * HOUR - 1));
+        assertEquals(spring + 23 * HOUR, ActivityRollupRepository.addPeriods(ActivityRollup.PERIOD_DAY, spring, 1));
+
+        long autumn = local(2024, Calendar.OCTOBER, 27, 0);
+        assertEquals(autumn, dayStart(autumn + 25 * HOUR - 1));
+        assertEquals(autumn + 25 * HOUR, ActivityRollupRepository.addPeriods(ActivityRollup.PERIOD_DAY, autumn, 1));
+        assertEquals(autumn, ActivityRollupRepository.addPeriods(ActivityRollup.PERIOD_DAY, autumn + 25 * HOUR, -1));
+    }
+
+    @Test
+    public void week_overADstChange_isSevenLocalDays() {
+        long monday = local(2024, Calendar.MARCH, 25, 0);
+        long next = ActivityRollupRepository.addPeriods(ActivityRollup.PERIOD_WEEK, monday, 1);
+        assertEquals(local(2024, Calendar.APRIL, 1, 0), next);
+        assertEquals(7 * 24 * HOUR - HOUR, next - monday);
+        assertEquals(monday, weekStart(next - 1));
+    }
+
+    @Test
+    public void month_startsOnTheFirstAtMidnight() {
+        long february = local(2024, Calendar.FEBRUARY, 1, 0);
+        assertEquals(february, monthStart(local(2024, Calendar.FEBRUARY, 29, 23)));
+        assertEquals(february, monthStart(february));
+        assertEquals(local(2024, Calendar.JANUARY, 1, 0), monthStart(february - 1));
+        // The month holding the spring change still starts at midnight
+        assertEquals(local(2024, Calendar.MARCH, 1, 0), monthStart(local(2024, Calendar.MARCH, 31, 23)));
+        assertEquals("month_2024-02-01", ActivityRollupRepository.getRollupId(ActivityRollup.PERIOD_MONTH, february));
+    }
+
+    @Test
+    public void month_stepsAcrossYearsAndMonthLengths() {
+        long january = local(2024, Calendar.JANUARY, 1, 0);
+        assertEquals(local(2023, Calendar.FEBRUARY, 1, 0),
+                ActivityRollupRepository.addPeriods(ActivityRollup.PERIOD_MONTH, january, -11));
+        assertEquals(local(2024, Calendar.MARCH, 1, 0),
+                ActivityRollupRepository.addPeriods(ActivityRollup.PERIOD_MONTH, january, 2));
+        assertEquals(local(2025, Calendar.JANUARY, 1, 0),
+                ActivityRollupRepository.addPeriods(ActivityRollup.PERIOD_MONTH, january, 12));
+    }
+
+    @Test
+    public void chartBuckets_areEachTheStartOfTheirOwnPeriod() {
+        // What the activity chart does: step back from the current bucket, then forward bar by bar
+        String[] periods = {ActivityRollup.PERIOD_DAY, ActivityRollup.PERIOD_WEEK, ActivityRollup.PERIOD_MONTH};
+        long now = local(2024, Calendar.APRIL, 2, 10);
+        for (String period : periods) {
+            long first = ActivityRollupRepository.addPeriods(period,
+                    ActivityRollupRepository.getPeriodStart(period, now), -11);
+            for (int i = 0; i < 12; i++) {
+                long start = ActivityRollupRepository.addPeriods(period, first, i);
+                assertEquals(period + " " + i, start, ActivityRollupRepository.getPeriodStart(period, start));
+                assertEquals(period + " " + i, start, ActivityRollupRepository.getPeriodStart(period,
+                        ActivityRollupRepository.addPeriods(period, start, 1) - 1));
+            }
+        }
+    }
+
+    @Test
+    public void shareId_namesTheBucketAndItsContributor() {
+        long day = local(2024, Calendar.MARCH, 31, 0);
+        assertEquals("day_2024-03-31_history", ActivityRollupRepository.getShareId(ActivityRollup.PERIOD_DAY,
+                day, ActivityRollupRepository.HISTORY_CONTRIBUTOR));
+        assertEquals("week_2024-03-25_device", ActivityRollupRepository.getShareId(ActivityRollup.PERIOD_WEEK,
+                weekStart(day), "device"));
+    }
+
+    @Test
+    public void history_coversWhatTheBuilderHadPulled() {
+        long mark = 1_700_000_000_000L;
+        // Up to the builder's high-water mark, whoever saved the session
+        assertTrue(ActivityRollupRepository.isInHistory(mark, mark, false));
+        assertTrue(ActivityRollupRepository.isInHistory(mark - 1, mark, true));
+        // Updated on the server after it: the saving device counts it
+        assertFalse(ActivityRollupRepository.isInHistory(mark + 1, mark, false));
+        assertFalse(ActivityRollupRepository.isInHistory(mark + 1, mark, true));
+        // Not back from the server yet: only the builder had it
+        assertTrue(ActivityRollupRepository.isInHistory(null, mark, true));
+        assertFalse(ActivityRollupRepository.isInHistory(null, mark, false));
+    }
+
+    private static long dayStart(long time) {
+        return ActivityRollupRepository.getPeriodStart(ActivityRollup.PERIOD_DAY, time);
+    }
+
+    private static long weekStart(long time) {
+        return ActivityRollupRepository.getPeriodStart(ActivityRollup.PERIOD_WEEK, time);
+    }
+
+    private static long monthStart(long time) {
+        return ActivityRollupRepository.getPeriodStart(ActivityRollup.PERIOD_MONTH, time);
+    }
+
+    private static long local(int year, int month, int day, int hour) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month, day, hour, 0);
+        return calendar.getTimeInMillis();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.myapplication.repository;
+
+import com.example.myapplication.model.DailyStepSeries;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Maps times onto step series days and minute slots in a zone with DST, where a local day is
+ * 23 or 25 hours long.
+ */
+public class StepSeriesRepositoryTest {
+    private static final long MINUTE = 60 * 1000;
+    private static final long HOUR = 60 * MINUTE;
+
+    private TimeZone defaultZone;
+
+    @Before
+    public void setUp() {
+        defaultZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Europe/Paris"));
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultZone);
+    }
+
+    @Test
+    public void springForward_skipsAnHourOfSlots() {
+        // 31 March 2024: 02:00 becomes 03:00
+        long dayStart = local(2024, Calendar.MARCH, 31, 0, 0);
+        assertEquals(dayStart, StepSeriesRepository.getDayStart(local(2024, Calendar.MARCH, 31, 23, 59)));
+        assertEquals("2024-03-31", StepSeriesRepository.getDayId(dayStart));
+        assertEquals(2 * 60 - 1, StepSeriesRepository.getMinuteOfDay(dayStart + 2 * HOUR - MINUTE));
+        assertEquals(3 * 60, StepSeriesRepository.getMinuteOfDay(dayStart + 2 * HOUR));
+        assertEquals(DailyStepSeries.MINUTES_PER_DAY - 1, StepSeriesRepository.getMinuteOfDay(dayStart + 23 * HOUR - MINUTE));
+    }
+
+    @Test
+    public void fallBack_foldsTheRepeatedHourOntoTheSameSlots() {
+        // 27 October 2024: 03:00 goes back to 02:00
+        long dayStart = local(2024, Calendar.OCTOBER, 27, 0, 0);
+        long firstPass = dayStart + 2 * HOUR + 30 * MINUTE;
+        long secondPass = firstPass + HOUR;
+        assertEquals(150, StepSeriesRepository.getMinuteOfDay(firstPass));
+        assertEquals(150, StepSeriesRepository.getMinuteOfDay(secondPass));
+        long lastMinute = dayStart + 25 * HOUR - MINUTE;
+        assertEquals(DailyStepSeries.MINUTES_PER_DAY - 1, StepSeriesRepository.getMinuteOfDay(lastMinute));
+        assertEquals(dayStart, StepSeriesRepository.getDayStart(lastMinute));
+        assertEquals("2024-10-27", StepSeriesRepository.getDayId(StepSeriesRepository.getDayStart(lastMinute)));
+    }
+
+    @Test
+    public void midnight_startsTheNextDay() {
+        long midnight = local(2024, Calendar.JANUARY, 1, 0, 0);
+        assertEquals(0, StepSeriesRepository.getMinuteOfDay(midnight));
+        assertEquals("2024-01-01", StepSeriesRepository.getDayId(StepSeriesRepository.getDayStart(midnight)));
+        assertEquals("2023-12-31", StepSeriesRepository.getDayId(StepSeriesRepository.getDayStart(midnight - 1)));
+    }
+
+    private static long local(int year, int month, int day, int hour, int minute) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month, day, hour, minute);
+        return calendar.getTimeInMillis();
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.myapplication.service;
+
+import com.example.myapplication.model.LightData;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Feeds light samples through LightRunEncoder and checks the runs it closes: a simulated night
+ * collapses to a few runs without changing time in darkness, the darkness threshold always
+ * splits a run, and finish() closes the open run at the stop time.
+ */
+public class LightRunEncoderTest {
+    private static final long SAMPLE_INTERVAL_MS = 5000; // 5 s light sampling
+    private static final long START = 1_700_000_000_000L;
+
+    @Test
+    public void night_collapsesToThreeRunsWithTheSameDarkPercentage() {
+        // 2.5 h: bedside lamp, dark room, morning light; 1800 samples with sensor noise
+        Random random = new Random(11);
+        float[] samples = new float[1800];
+        for (int i = 0; i < samples.length; i++) {
+            if (i < 360) {
+                samples[i] = 150 + 3 * (float) random.nextGaussian();
+            } else if (i < 1440) {
+                samples[i] = Math.max(0, 1 + 0.2f * (float) random.nextGaussian());
+            } else {
+                samples[i] = 60 + 2 * (float) random.nextGaussian();
+            }
+        }
+        long end = START + samples.length * SAMPLE_INTERVAL_MS;
+
+        LightRunEncoder encoder = new LightRunEncoder();
+        List<long[]> runs = new ArrayList<>();
+        List<Float> luxes = new ArrayList<>();
+        long rawDarkMs = 0;
+        for (int i = 0; i < samples.length; i++) {
+            if (encoder.onSample(START + i * SAMPLE_INTERVAL_MS, samples[i])) {
+                collect(encoder, runs, luxes);
+            }
+            if (samples[i] < LightData.DARK_THRESHOLD_LUX) {
+                rawDarkMs += SAMPLE_INTERVAL_MS;
+            }
+        }
+        assertTrue(encoder.finish(end));
+        collect(encoder, runs, luxes);
+
+        assertEquals(3, runs.size());
+        long totalMs = 0;
+        long runDarkMs = 0;
+        for (int i = 0; i < runs.size(); i++) {
+            totalMs += runs.get(i)[1];
+            if (luxes.get(i) < LightData.DARK_THRESHOLD_LUX) {
+                runDarkMs += runs.get(i)[1];
+            }
+        }
+        assertEquals(end - START, totalMs);
+        assertEquals(rawDarkMs, runDarkMs);
+        assertEquals(150f, luxes.get(0), 1f);
+        assertEquals(60f, luxes.get(2), 1f);
+    }
+
+    @Test
+    public void crossingDarkThreshold_splitsTheRunEvenWithinTheBand() {
+        LightRunEncoder encoder = new LightRunEncoder();
+        assertFalse(encoder.onSample(START, 11f));
+        assertFalse(encoder.onSample(START + SAMPLE_INTERVAL_MS, 11f));
+        // 9.5 lux is within 20% of 11 but on the dark side of the threshold
+        assertTrue(encoder.onSample(START + 2 * SAMPLE_INTERVAL_MS, 9.5f));
+        assertEquals(START, encoder.getClosedStart());
+        assertEquals(2 * SAMPLE_INTERVAL_MS, encoder.getClosedDuration());
+        assertEquals(11f, encoder.getClosedLux(), 0.001f);
+
+        // And back to the light side
+        assertTrue(encoder.onSample(START + 3 * SAMPLE_INTERVAL_MS, 10.5f));
+        assertEquals(START + 2 * SAMPLE_INTERVAL_MS, encoder.getClosedStart());
+        assertEquals(9.5f, encoder.getClosedLux(), 0.001f);
+    }
+
+    @Test
+    public void smallChangesInTheDark_extendTheRun() {
+        // The 1 lux floor keeps sub-lux flicker from splitting a dark run
+        LightRunEncoder encoder = new LightRunEncoder();
+        float[] flicker = {0.2f, 0.9f, 0.1f, 1.0f, 0.4f};
+        for (int i = 0; i < flicker.length; i++) {
+            assertFalse(encoder.onSample(START + i * SAMPLE_INTERVAL_MS, flicker[i]));
+        }
+    }
+
+    @Test
+    public void finish_closesTheOpenRunAtStop() {
+        LightRunEncoder encoder = new LightRunEncoder();
+        encoder.onSample(START, 3f);
+        encoder.onSample(START + SAMPLE_INTERVAL_MS, 3f);
+        long stop = START + SAMPLE_INTERVAL_MS + 1234;
+        assertTrue(encoder.finish(stop));
+        assertEquals(START, encoder.getClosedStart());
+        assertEquals(stop - START, encoder.getClosedDuration());
+        assertEquals(3f, encoder.getClosedLux(), 0.001f);
+
+        // Closed for good: nothing left for a second finish
+        assertFalse(encoder.finish(stop + SAMPLE_INTERVAL_MS));
+    }
+
+    @Test
+    public void finish_beforeTheRunStarted_givesAnEmptyRun() {
+        LightRunEncoder encoder = new LightRunEncoder();
+        encoder.onSample(START, 3f);
+        assertTrue(encoder.finish(START - 1000));
+        assertEquals(0, encoder.getClosedDuration());
+    }
+
+    @Test
+    public void finish_withoutSamples_closesNothing() {
+        assertFalse(new LightRunEncoder().finish(START));
+    }
+
+    private static void collect(LightRunEncoder encoder, List<long[]> runs, List<Float> luxes) {
+        runs.add(new long[]{encoder.getClosedStart(), encoder.getClosedDuration()});
+        luxes.add(encoder.getClosedLux());
+    }
+}
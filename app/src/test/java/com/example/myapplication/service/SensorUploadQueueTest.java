@@ -0,0 +1,161 @@
+package com.example.myapplication.service;
+
+import com.example.myapplication.model.SleepSensorChunk;
+import com.google.firebase.firestore.Blob;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Round-trips chunks through the on-disk upload queue format, and checks the queue's file
+ * handling: upload order, and temp files from an interrupted write.
+ */
+public class SensorUploadQueueTest {
+    private File filesDir;
+    private SensorUploadQueue queue;
+
+    @Before
+    public void setUp() throws IOException {
+        filesDir = Files.createTempDirectory("upload_queue").toFile();
+        queue = new SensorUploadQueue(filesDir);
+    }
+
+    @After
+    public void tearDown() {
+        deleteRecursively(filesDir);
+    }
+
+    @Test
+    public void chunk_roundTripsEveryField() throws IOException {
+        SleepSensorChunk chunk = chunk("session", 7);
+        queue.add(chunk);
+
+        List<File> files = queue.list();
+        assertEquals(1, files.size());
+        SleepSensorChunk read = SensorUploadQueue.read(files.get(0));
+        assertEquals("session", read.getSessionId());
+        assertEquals("user_example_com", read.getUserId());
+        assertEquals(7, read.getChunkIndex());
+        assertEquals(chunk.getStartTime(), read.getStartTime());
+        assertEquals(chunk.getEndTime(), read.getEndTime());
+        assertEquals(1, read.getSeriesFormat());
+        assertEquals(300, read.getMovementCount());
+        assertEquals(4, read.getLightCount());
+        assertArrayEquals(chunk.getMovementSeries().toBytes(), read.getMovementSeries().toBytes());
+        assertArrayEquals(chunk.getLightSeries().toBytes(), read.getLightSeries().toBytes());
+    }
+
+    @Test
+    public void missingUserAndEmptySeries_roundTrip() throws IOException {
+        SleepSensorChunk chunk = chunk("session", 0);
+        chunk.setUserId(null);
+        chunk.setLightSeries(Blob.fromBytes(new byte[0]));
+        queue.add(chunk);
+
+        SleepSensorChunk read = SensorUploadQueue.read(queue.list().get(0));
+        assertNull(read.getUserId());
+        assertEquals(0, read.getLightSeries().toBytes().length);
+    }
+
+    @Test
+    public void list_isInUploadOrder() throws IOException {
+        queue.add(chunk("b", 2));
+        queue.add(chunk("a", 10));
+        queue.add(chunk("b", 1));
+        queue.add(chunk("a", 9));
+
+        List<File> files = queue.list();
+        assertEquals(4, files.size());
+        assertEquals("a_00009.chunk", files.get(0).getName());
+        assertEquals("a_00010.chunk", files.get(1).getName());
+        assertEquals("b_00001.chunk", files.get(2).getName());
+        assertEquals("b_00002.chunk", files.get(3).getName());
+    }
+
+    @Test
+    public void list_deletesStaleTempFilesButLeavesOneBeingWritten() throws IOException {
+        queue.add(chunk("session", 0));
+        File dir = queue.list().get(0).getParentFile();
+        File stale = new File(dir, "session_00001.tmp");
+        File fresh = new File(dir, "session_00002.tmp");
+        try (FileOutputStream out = new FileOutputStream(stale)) {
+            out.write(1);
+        }
+        try (FileOutputStream out = new FileOutputStream(fresh)) {
+            out.write(1);
+        }
+        assertTrue(stale.setLastModified(System.currentTimeMillis() - SensorUploadQueue.STALE_TEMP_MS - 1000));
+
+        List<File> files = queue.list();
+        assertEquals(1, files.size());
+        assertFalse(stale.exists());
+        assertTrue(fresh.exists());
+    }
+
+    @Test
+    public void list_withNothingQueued_isEmpty() {
+        assertTrue(queue.list().isEmpty());
+    }
+
+    @Test
+    public void unknownVersion_isRefused() throws IOException {
+        queue.add(chunk("session", 0));
+        File file = queue.list().get(0);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.write(2);
+        }
+        assertThrows(IOException.class, () -> SensorUploadQueue.read(file));
+    }
+
+    @Test
+    public void truncatedFile_isRefused() throws IOException {
+        queue.add(chunk("session", 0));
+        File file = queue.list().get(0);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 10);
+        }
+        assertThrows(IOException.class, () -> SensorUploadQueue.read(file));
+    }
+
+    private static SleepSensorChunk chunk(String sessionId, int index) {
+        SleepSensorChunk chunk = new SleepSensorChunk(sessionId, "user_example_com", index);
+        chunk.setStartTime(new Date(1_700_000_000_000L + index * 300_000L));
+        chunk.setEndTime(new Date(1_700_000_300_000L + index * 300_000L));
+        chunk.setSeriesFormat(1);
+        chunk.setMovementCount(300);
+        chunk.setLightCount(4);
+        byte[] movement = new byte[700];
+        for (int i = 0; i < movement.length; i++) {
+            movement[i] = (byte) (i * 31 + index);
+        }
+        chunk.setMovementSeries(Blob.fromBytes(movement));
+        chunk.setLightSeries(Blob.fromBytes(new byte[]{1, 'L', 42, -1}));
+        return chunk;
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.myapplication.service;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the per-sample sensor path allocates nothing once warmed up, using the
+ * per-thread allocation counter of the host JVM.
+ */
+public class SleepSampleProcessorAllocationTest {
+    private static final long SESSION_LENGTH = 12 * 60 * 60 * 1000L;
+    private static final long ACCELEROMETER_INTERVAL = 1000;
+    private static final long STILL_ACCELEROMETER_INTERVAL = 10000;
+    private static final long LIGHT_INTERVAL = 5000;
+    private static final int WARM_UP_EVENTS = 50_000;
+    private static final int MEASURED_EVENTS = 100_000;
+    private static final int MEASURED_ROUNDS = 5;
+
+    private File logFile;
+    private SleepSessionLog sessionLog;
+    private SleepSampleProcessor processor;
+    private com.sun.management.ThreadMXBean threadBean;
+    private long timestamp;
+
+    @Before
+    public void setUp() throws Exception {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threadBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        logFile = File.createTempFile("sleep_session", ".wal");
+        sessionLog = new SleepSessionLog(logFile);
+        sessionLog.start("user", "session", 0);
+        timestamp = 1_700_000_000_000L;
+    }
+
+    @After
+    public void tearDown() {
+        if (sessionLog != null) {
+            sessionLog.delete();
+        }
+    }
+
+    @Test
+    public void sensorEvents_allocateNothingInSteadyState() {
+        newProcessor();
+        feed(WARM_UP_EVENTS);
+
+        long threadId = Thread.currentThread().getId();
+        // JIT compilation can still allocate in the first rounds; a per-event allocation
+        // shows up in every round, so the best round is what counts. Each round gets a fresh
+        // processor, so none of them runs past the session length it was sized for.
+        long allocated = Long.MAX_VALUE;
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            newProcessor();
+            long before = allocatedBytes(threadId);
+            feed(MEASURED_EVENTS);
+            long after = allocatedBytes(threadId);
+            allocated = Math.min(allocated, after - before);
+        }
+        assertEquals("Bytes allocated for " + MEASURED_EVENTS + " events", 0, allocated);
+    }
+
+    private void newProcessor() {
+        processor = new SleepSampleProcessor(SESSION_LENGTH, ACCELEROMETER_INTERVAL, STILL_ACCELEROMETER_INTERVAL,
+                LIGHT_INTERVAL, sessionLog);
+    }
+
+    // Accelerometer at 5 Hz and light at 1 Hz, faster than the processor keeps them,
+    // so the throttling path is exercised too
+    private void feed(int events) {
+        for (int i = 0; i < events; i++) {
+            timestamp += 200;
+            float phase = (i % 100) / 100f;
+            processor.onAccelerometer(timestamp, 0.1f * phase, 0.2f - 0.1f * phase, 9.81f + phase);
+            if (i % 5 == 0) {
+                processor.onLight(timestamp, 2f + 20f * phase);
+            }
+        }
+    }
+
+    private long allocatedBytes(long threadId) {
+        return threadBean.getThreadAllocatedBytes(threadId);
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.myapplication.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks how SleepSampleProcessor throttles sensor events to the rates it keeps: events at the
+ * registered rate are all kept despite jitter, a sensor delivering faster than asked is thinned
+ * to one sample per interval, and a gap restarts the schedule instead of causing a burst.
+ */
+public class SleepSampleProcessorThrottleTest {
+    private static final long SESSION_LENGTH = 60 * 60 * 1000L;
+    private static final long ACCELEROMETER_INTERVAL = 1000;
+    private static final long STILL_ACCELEROMETER_INTERVAL = 10000;
+    private static final long LIGHT_INTERVAL = 5000;
+    private static final long START = 1_700_000_000_000L;
+
+    private SleepSessionLog sessionLog;
+    private SleepSampleProcessor processor;
+
+    @Before
+    public void setUp() throws Exception {
+        sessionLog = new SleepSessionLog(File.createTempFile("sleep_session", ".wal"));
+        sessionLog.start("user", "session", START);
+        processor = new SleepSampleProcessor(SESSION_LENGTH, ACCELEROMETER_INTERVAL, STILL_ACCELEROMETER_INTERVAL,
+                LIGHT_INTERVAL, sessionLog);
+    }
+
+    @After
+    public void tearDown() {
+        sessionLog.delete();
+    }
+
+    @Test
+    public void accelerometerAtTheRegisteredRate_keepsEveryJitteredEvent() {
+        // 100 s, shorter than AdaptiveSamplingController.STILL_AFTER_MS so the rate stays active
+        Random random = new Random(3);
+        int kept = 0;
+        for (int i = 0; i < 100; i++) {
+            long jitter = random.nextInt(101) - 50;
+            if (accelerometer(START + i * ACCELEROMETER_INTERVAL + jitter, i)) {
+                kept++;
+            }
+        }
+        assertEquals(100, kept);
+    }
+
+    @Test
+    public void accelerometerFasterThanAsked_keepsOneEventPerInterval() {
+        // 5 Hz over 100 s: the first event, then one per second
+        int kept = 0;
+        for (int i = 0; i <= 500; i++) {
+            if (accelerometer(START + i * 200L, i)) {
+                kept++;
+            }
+        }
+        assertEquals(101, kept);
+    }
+
+    @Test
+    public void lightAtTheRegisteredRate_keepsEveryJitteredEvent() {
+        Random random = new Random(5);
+        int kept = 0;
+        for (int i = 0; i < 120; i++) {
+            long jitter = random.nextInt(1001) - 500;
+            if (processor.onLight(START + i * LIGHT_INTERVAL + jitter, 3f)) {
+                kept++;
+            }
+        }
+        assertEquals(120, kept);
+    }
+
+    @Test
+    public void afterAGap_scheduleRestartsWithoutABurst() {
+        int kept = 0;
+        for (int i = 0; i < 10; i++) {
+            if (accelerometer(START + i * ACCELEROMETER_INTERVAL, i)) {
+                kept++;
+            }
+        }
+        assertEquals(10, kept);
+
+        // 30 s without events, then a sensor delivering at 5 Hz for 10 s: the first event,
+        // then one per second, as from a fresh start
+        long resume = START + 40_000;
+        kept = 0;
+        for (int i = 0; i <= 50; i++) {
+            if (accelerometer(resume + i * 200L, i)) {
+                kept++;
+            }
+        }
+        assertEquals(11, kept);
+    }
+
+    // Alternating tilt so the sampler sees motion and keeps the active rate
+    private boolean accelerometer(long timestamp, int i) {
+        float x = i % 2 == 0 ? 1f : -1f;
+        return processor.onAccelerometer(timestamp, x, 0f, 9.81f);
+    }
+}
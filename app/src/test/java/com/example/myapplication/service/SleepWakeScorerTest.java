@@ -0,0 +1,137 @@
+package com.example.myapplication.service;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Scores known epoch sequences with SleepWakeScorer, and checks that the epoch aggregator's
+ * calibration puts the wake threshold at WAKE_ACTIVITY.
+ */
+public class SleepWakeScorerTest {
+    private static final long EPOCH = ActigraphyEpochAggregator.EPOCH_LENGTH_MS;
+    private static final long SAMPLE_INTERVAL_MS = 1000;
+
+    @Test
+    public void stillNight_isAllSleep() {
+        int[] counts = new int[60];
+        SleepWakeScorer.Result result = SleepWakeScorer.score(counts, counts.length);
+        assertEquals(0, result.sleepOnsetEpoch);
+        assertEquals(60, result.totalSleepEpochs);
+        assertEquals(0, result.wakeAfterSleepOnsetEpochs);
+        assertEquals(0, result.awakenings);
+        assertEquals(100f, result.sleepEfficiency, 0.001f);
+    }
+
+    @Test
+    public void steadyCount_flipsToWakeAtThreshold() {
+        int below = (int) Math.floor(SleepWakeScorer.STEADY_WAKE_COUNT);
+        int[] counts = new int[20];
+        Arrays.fill(counts, below);
+        assertTrue(SleepWakeScorer.isSleep(counts, counts.length, 10));
+        Arrays.fill(counts, below + 1);
+        assertFalse(SleepWakeScorer.isSleep(counts, counts.length, 10));
+    }
+
+    @Test
+    public void movementBout_isOneAwakeningSpreadOverTheWindow() {
+        // Three busy minutes mark themselves, the two before and the four after as wake
+        int[] counts = new int[63];
+        counts[30] = counts[31] = counts[32] = 500;
+        SleepWakeScorer.Result result = SleepWakeScorer.score(counts, counts.length);
+        assertEquals(0, result.sleepOnsetEpoch);
+        assertEquals(54, result.totalSleepEpochs);
+        assertEquals(9, result.wakeAfterSleepOnsetEpochs);
+        assertEquals(1, result.awakenings);
+        assertEquals(54 * 100f / 63, result.sleepEfficiency, 0.001f);
+    }
+
+    @Test
+    public void latency_onsetNeedsTenSleepEpochsInARow() {
+        // Restless first quarter of an hour with a short lull; its trailing window ends at 18
+        int[] counts = new int[40];
+        Arrays.fill(counts, 0, 15, 500);
+        for (int i = 4; i < 6; i++) {
+            counts[i] = 0;
+        }
+        SleepWakeScorer.Result result = SleepWakeScorer.score(counts, counts.length);
+        assertEquals(19, result.sleepOnsetEpoch);
+        assertEquals(21, result.totalSleepEpochs);
+        assertEquals(0, result.awakenings);
+    }
+
+    @Test
+    public void restlessNight_hasNoOnset() {
+        int[] counts = new int[30];
+        Arrays.fill(counts, 200);
+        SleepWakeScorer.Result result = SleepWakeScorer.score(counts, counts.length);
+        assertEquals(-1, result.sleepOnsetEpoch);
+        assertEquals(0, result.totalSleepEpochs);
+        assertEquals(0f, result.sleepEfficiency, 0f);
+    }
+
+    @Test
+    public void singleShortWakeEpoch_isNotAnAwakening() {
+        // Just over the threshold for one epoch only: wake, but below MIN_AWAKENING_EPOCHS
+        int[] counts = new int[40];
+        counts[20] = 75; // 1408 * 75 * 1e-5 > 1, but 598 * 75 * 1e-5 < 1 for its neighbours
+        SleepWakeScorer.Result result = SleepWakeScorer.score(counts, counts.length);
+        assertEquals(1, result.wakeAfterSleepOnsetEpochs);
+        assertEquals(0, result.awakenings);
+    }
+
+    @Test
+    public void aggregator_countsMeanActivityAboveNoiseFloor() {
+        ActigraphyEpochAggregator aggregator = new ActigraphyEpochAggregator(4);
+        long start = 1_700_000_040_000L; // Epoch-aligned
+        feed(aggregator, start, EPOCH, ActigraphyEpochAggregator.NOISE_FLOOR); // Rest noise only
+        feed(aggregator, start + EPOCH, EPOCH, ActigraphyEpochAggregator.NOISE_FLOOR + 0.02f);
+        aggregator.finish();
+        assertEquals(2, aggregator.getEpochCount());
+        assertEquals(start, aggregator.getFirstEpochStart());
+        assertEquals(0, aggregator.getCount(0));
+        assertEquals(Math.round(0.02f * ActigraphyEpochAggregator.COUNT_SCALE), aggregator.getCount(1));
+    }
+
+    @Test
+    public void aggregator_wakeActivityIsTheWakeThreshold() {
+        float floor = ActigraphyEpochAggregator.NOISE_FLOOR;
+        float wake = ActigraphyEpochAggregator.WAKE_ACTIVITY;
+        assertTrue(steadyNightIsSleep(floor + 0.9f * wake));
+        assertFalse(steadyNightIsSleep(floor + 1.1f * wake));
+    }
+
+    @Test
+    public void aggregator_pastCapacity_dropsAndCountsSamples() {
+        ActigraphyEpochAggregator aggregator = new ActigraphyEpochAggregator(3);
+        long start = 1_700_000_040_000L;
+        long samplesPerEpoch = EPOCH / SAMPLE_INTERVAL_MS;
+        feed(aggregator, start, 3 * EPOCH, ActigraphyEpochAggregator.NOISE_FLOOR);
+        // Two more minutes of wake-level activity that has nowhere to go
+        feed(aggregator, start + 3 * EPOCH, 2 * EPOCH, 1f);
+        aggregator.finish();
+        assertEquals(3, aggregator.getEpochCount());
+        assertEquals(0, aggregator.getCount(2));
+        assertEquals(2 * samplesPerEpoch, aggregator.getDroppedSamples());
+
+        aggregator.reset();
+        assertEquals(0, aggregator.getDroppedSamples());
+    }
+
+    private static boolean steadyNightIsSleep(float activity) {
+        ActigraphyEpochAggregator aggregator = new ActigraphyEpochAggregator(20);
+        feed(aggregator, 0, 20 * EPOCH, activity);
+        aggregator.finish();
+        return SleepWakeScorer.isSleep(aggregator.getCounts(), aggregator.getEpochCount(), 10);
+    }
+
+    private static void feed(ActigraphyEpochAggregator aggregator, long start, long duration, float activity) {
+        for (long t = start; t < start + duration; t += SAMPLE_INTERVAL_MS) {
+            aggregator.addSample(t, activity);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.myapplication.service;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays accelerometer traces through SoftwareStepDetector and checks the step count
+ * against the known number of steps, plus speed relative to real time and steady-state
+ * allocation. The traces are synthesized with a fixed seed the way the phone records them:
+ * 50 Hz with timing jitter, a tilted device, a gait with a harmonic and cadence jitter, and
+ * sensor noise.
+ */
+public class SoftwareStepDetectorReplayTest {
+    private static final long SAMPLE_INTERVAL_MS = 20; // 50 Hz, as StepCounterService samples
+    private static final float GRAVITY = 9.81f;
+    private static final double ACCURACY = 0.05; // Counted steps within 5% of the true count
+    private static final int MAX_FALSE_STEPS = 4; // A stray step or two
+    // Replay must beat real time by this much, leaving the CPU idle for almost all of a walk
+    private static final double MIN_SPEEDUP = 100;
+
+    @Test
+    public void walking_countsEveryStep() {
+        Trace trace = new Trace(1).walk(120_000, 1.8, 2.5f, 0.3f);
+        assertAccurate(trace);
+    }
+
+    @Test
+    public void slowWalking_countsEveryStep() {
+        Trace trace = new Trace(2).walk(120_000, 1.2, 1.6f, 0.2f);
+        assertAccurate(trace);
+    }
+
+    @Test
+    public void running_countsEveryStep() {
+        Trace trace = new Trace(3).walk(90_000, 2.8, 7f, 0.6f);
+        assertAccurate(trace);
+    }
+
+    @Test
+    public void walkingWithStops_countsEveryStep() {
+        Trace trace = new Trace(4)
+                .walk(30_000, 1.8, 2.5f, 0.3f)
+                .still(20_000, 0.05f)
+                .walk(40_000, 1.7, 2.2f, 0.3f)
+                .still(10_000, 0.05f)
+                .walk(30_000, 1.9, 2.8f, 0.3f);
+        assertAccurate(trace);
+    }
+
+    @Test
+    public void phoneOnDesk_countsNothing() {
+        Trace trace = new Trace(5).still(300_000, 0.05f);
+        assertAtMost(trace, 0);
+    }
+
+    @Test
+    public void inVehicle_countsNoSteps() {
+        // Engine vibration far above gait frequencies, plus road bumps at random
+        Trace trace = new Trace(6).vibration(300_000, 14, 0.8f, 0.2f, 2.5f);
+        assertAtMost(trace, MAX_FALSE_STEPS);
+    }
+
+    @Test
+    public void shakingPhone_isRejectedByCadenceGating() {
+        Trace trace = new Trace(7).shaking(300_000, 6f);
+        assertAtMost(trace, MAX_FALSE_STEPS);
+    }
+
+    @Test
+    public void replay_isFarFasterThanRealTime() {
+        Trace trace = new Trace(8).walk(600_000, 1.8, 2.5f, 0.3f);
+        replay(trace); // Warm up the JIT
+
+        long start = System.nanoTime();
+        replay(trace);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000L;
+        long traceMs = trace.timestamps[trace.size - 1] - trace.timestamps[0];
+        assertTrue("Replayed " + traceMs + " ms of samples in " + elapsedMs + " ms",
+                elapsedMs * MIN_SPEEDUP < traceMs);
+    }
+
+    @Test
+    public void samples_allocateNothingInSteadyState() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        Trace trace = new Trace(9).walk(300_000, 1.8, 2.5f, 0.3f);
+        SoftwareStepDetector detector = new SoftwareStepDetector();
+        replay(detector, trace);
+
+        long threadId = Thread.currentThread().getId();
+        long allocated = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            long before = threadBean.getThreadAllocatedBytes(threadId);
+            replay(detector, trace);
+            long after = threadBean.getThreadAllocatedBytes(threadId);
+            allocated = Math.min(allocated, after - before);
+        }
+        assertEquals("Bytes allocated for " + trace.size + " samples", 0, allocated);
+    }
+
+    private static void assertAccurate(Trace trace) {
+        int counted = replay(trace);
+        double error = Math.abs(counted - trace.steps) / (double) trace.steps;
+        assertTrue("Counted " + counted + " of " + trace.steps + " steps", error <= ACCURACY);
+    }
+
+    private static void assertAtMost(Trace trace, int maxSteps) {
+        int counted = replay(trace);
+        assertTrue("Counted " + counted + " steps, expected at most " + maxSteps, counted <= maxSteps);
+    }
+
+    private static int replay(Trace trace) {
+        return replay(new SoftwareStepDetector(), trace);
+    }
+
+    private static int replay(SoftwareStepDetector detector, Trace trace) {
+        int steps = 0;
+        long[] timestamps = trace.timestamps;
+        float[] x = trace.x;
+        float[] y = trace.y;
+        float[] z = trace.z;
+        for (int i = 0; i < trace.size; i++) {
+            steps += detector.onSample(timestamps[i], x[i], y[i], z[i]);
+        }
+        return steps;
+    }
+
+    /** A recorded-style accelerometer trace, built segment by segment, with its true step count. */
+    private static final class Trace {
+        // The phone sits tilted in a pocket; gait and gravity act along this axis
+        private static final float[] AXIS = normalize(0.25f, 0.55f, 0.80f);
+
+        private final Random random;
+        long[] timestamps = new long[1024];
+        float[] x = new float[1024];
+        float[] y = new float[1024];
+        float[] z = new float[1024];
+        int size = 0;
+        int steps = 0;
+        private long time = 1_000_000L;
+
+        Trace(long seed) {
+            random = new Random(seed);
+        }
+
+        // Vertical bounce with a second harmonic, one cycle per step; cadence drifts per step
+        Trace walk(long durationMs, double cadenceHz, float amplitude, float noise) {
+            long end = time + durationMs;
+            double phase = 0;
+            double frequency = jitter(cadenceHz, 0.05);
+            while (time < end) {
+                double vertical = amplitude * (Math.sin(phase) + 0.3 * Math.sin(2 * phase + 0.7));
+                add((float) vertical, noise);
+                phase += 2 * Math.PI * frequency * SAMPLE_INTERVAL_MS / 1000.0;
+                if (phase >= 2 * Math.PI) {
+                    phase -= 2 * Math.PI;
+                    steps++;
+                    frequency = jitter(cadenceHz, 0.05);
+                }
+            }
+            return this;
+        }
+
+        Trace still(long durationMs, float noise) {
+            long end = time + durationMs;
+            while (time < end) {
+                add(0, noise);
+            }
+            return this;
+        }
+
+        // Steady vibration plus a bump of random height every few seconds
+        Trace vibration(long durationMs, double frequencyHz, float amplitude, float noise, float bumpAmplitude) {
+            long end = time + durationMs;
+            long nextBump = time + 1000 + random.nextInt(4000);
+            double bump = 0;
+            while (time < end) {
+                if (time >= nextBump) {
+                    bump = bumpAmplitude * (0.5 + random.nextDouble());
+                    nextBump = time + 1000 + random.nextInt(4000);
+                }
+                double vertical = amplitude * Math.sin(2 * Math.PI * frequencyHz * time / 1000.0) + bump;
+                bump *= 0.7;
+                add((float) vertical, noise);
+            }
+            return this;
+        }
+
+        // Jerks of random strength at random intervals, as when the phone is handled or shaken
+        Trace shaking(long durationMs, float amplitude) {
+            long end = time + durationMs;
+            long nextJerk = time;
+            double jerk = 0;
+            double sign = 1;
+            while (time < end) {
+                if (time >= nextJerk) {
+                    sign = -sign;
+                    jerk = sign * amplitude * (0.3 + random.nextDouble());
+                    nextJerk = time + 80 + random.nextInt(1200);
+                }
+                add((float) jerk, 0.3f);
+                jerk *= 0.8;
+            }
+            return this;
+        }
+
+        private void add(float vertical, float noise) {
+            if (size == timestamps.length) {
+                int capacity = size * 2;
+                timestamps = java.util.Arrays.copyOf(timestamps, capacity);
+                x = java.util.Arrays.copyOf(x, capacity);
+                y = java.util.Arrays.copyOf(y, capacity);
+                z = java.util.Arrays.copyOf(z, capacity);
+            }
+            float along = GRAVITY + vertical;
+            timestamps[size] = time;
+            x[size] = along * AXIS[0] + noise * (float) random.nextGaussian();
+            y[size] = along * AXIS[1] + noise * (float) random.nextGaussian();
+            z[size] = along * AXIS[2] + noise * (float) random.nextGaussian();
+            size++;
+            // Android delivers samples with a few milliseconds of jitter
+            time += SAMPLE_INTERVAL_MS + random.nextInt(5) - 2;
+        }
+
+        private double jitter(double value, double fraction) {
+            return value * (1 + fraction * (2 * random.nextDouble() - 1));
+        }
+
+        private static float[] normalize(float x, float y, float z) {
+            float length = (float) Math.sqrt(x * x + y * y + z * z);
+            return new float[]{x / length, y / length, z / length};
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.myapplication.utils;
+
+import com.example.myapplication.model.LightData;
+import com.example.myapplication.model.MovementData;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Round-trips sleep sensor series through SensorSeriesCodec: values come back within half a
+ * quantization step, timestamps exactly whatever the gaps, and damaged or foreign blobs are
+ * refused with an IOException rather than decoded into garbage.
+ */
+public class SensorSeriesCodecTest {
+    private static final float AXIS_STEP = 0.01f;
+    private static final long START = 1_700_000_000_000L;
+
+    @Test
+    public void movement_roundTripsWithinHalfAStep() throws IOException {
+        Random random = new Random(12);
+        long[] timestamps = new long[500];
+        float[][] values = new float[500][4];
+        SensorSeriesCodec.MovementEncoder encoder = new SensorSeriesCodec.MovementEncoder();
+        long time = START;
+        for (int i = 0; i < timestamps.length; i++) {
+            time += 1000 + random.nextInt(7) - 3;
+            timestamps[i] = time;
+            for (int axis = 0; axis < 4; axis++) {
+                values[i][axis] = (float) (random.nextGaussian() * 5);
+            }
+            encoder.add(time, values[i][0], values[i][1], values[i][2], values[i][3]);
+        }
+
+        List<MovementData> decoded = SensorSeriesCodec.decodeMovement(encoder.encode());
+        assertEquals(timestamps.length, decoded.size());
+        for (int i = 0; i < timestamps.length; i++) {
+            MovementData movement = decoded.get(i);
+            assertEquals(timestamps[i], movement.getTimestamp().getTime());
+            assertEquals(values[i][0], movement.getX(), AXIS_STEP / 2 + 1e-4f);
+            assertEquals(values[i][1], movement.getY(), AXIS_STEP / 2 + 1e-4f);
+            assertEquals(values[i][2], movement.getZ(), AXIS_STEP / 2 + 1e-4f);
+            assertEquals(values[i][3], movement.getDynamicMagnitude(), AXIS_STEP / 2 + 1e-4f);
+        }
+    }
+
+    @Test
+    public void quantization_roundsToTheNearestStepAtTheBounds() throws IOException {
+        // Just either side of half a step, sign changes, and the largest readings a phone gives
+        float[] axis = {0.0049f, 0.0051f, -0.0049f, -0.0051f, 78.4532f, -78.4532f, 0f};
+        SensorSeriesCodec.MovementEncoder encoder = new SensorSeriesCodec.MovementEncoder();
+        for (int i = 0; i < axis.length; i++) {
+            encoder.add(START + i * 1000L, axis[i], -axis[i], 9.81f, Math.abs(axis[i]));
+        }
+        List<MovementData> decoded = SensorSeriesCodec.decodeMovement(encoder.encode());
+        float[] expected = {0f, 0.01f, 0f, -0.01f, 78.45f, -78.45f, 0f};
+        for (int i = 0; i < axis.length; i++) {
+            assertEquals(expected[i], decoded.get(i).getX(), 1e-5f);
+            assertEquals(-expected[i], decoded.get(i).getY(), 1e-5f);
+            assertEquals(9.81f, decoded.get(i).getZ(), 1e-5f);
+        }
+
+        float[] lux = {0.04f, 0.06f, 9.96f, 10.04f, 120_000f};
+        SensorSeriesCodec.LightEncoder lights = new SensorSeriesCodec.LightEncoder();
+        for (int i = 0; i < lux.length; i++) {
+            lights.add(START + i * 5000L, lux[i], 5);
+        }
+        List<LightData> decodedLights = SensorSeriesCodec.decodeLight(lights.encode());
+        float[] expectedLux = {0f, 0.1f, 10.0f, 10.0f, 120_000f};
+        for (int i = 0; i < lux.length; i++) {
+            assertEquals(expectedLux[i], decodedLights.get(i).getLightLevel(), 1e-3f);
+        }
+    }
+
+    @Test
+    public void timestamps_surviveGapsAndIrregularSpacing() throws IOException {
+        // Steady, then an hour-long gap, bursts, a repeated timestamp and a step back in time
+        long[] timestamps = {START, START + 1000, START + 2000, START + 3_602_000, START + 3_602_001,
+                START + 3_602_001, START + 3_601_500, START + 3_700_000, Long.MAX_VALUE / 4};
+        SensorSeriesCodec.MovementEncoder encoder = new SensorSeriesCodec.MovementEncoder();
+        for (long timestamp : timestamps) {
+            encoder.add(timestamp, 0, 0, 9.81f, 0);
+        }
+        List<MovementData> decoded = SensorSeriesCodec.decodeMovement(encoder.encode());
+        long[] actual = new long[decoded.size()];
+        for (int i = 0; i < actual.length; i++) {
+            actual[i] = decoded.get(i).getTimestamp().getTime();
+        }
+        assertTrue(Arrays.equals(timestamps, actual));
+    }
+
+    @Test
+    public void light_roundTripsRunsAndRecomputesDarkness() throws IOException {
+        SensorSeriesCodec.LightEncoder encoder = new SensorSeriesCodec.LightEncoder();
+        encoder.add(START, 150.26f, 1800);
+        encoder.add(START + 1_800_000, 0.8f, 2.5004f);
+        encoder.add(START + 7_200_000, 60f, 0);
+        List<LightData> decoded = SensorSeriesCodec.decodeLight(encoder.encode());
+
+        assertEquals(3, decoded.size());
+        assertEquals(START + 1_800_000, decoded.get(1).getTimestamp().getTime());
+        assertEquals(150.3f, decoded.get(0).getLightLevel(), 1e-3f);
+        assertEquals(1800f, decoded.get(0).getDurationSeconds(), 0f);
+        assertEquals(2.5f, decoded.get(1).getDurationSeconds(), 0f); // Whole milliseconds
+        assertEquals(0f, decoded.get(2).getDurationSeconds(), 0f);
+        assertFalse(decoded.get(0).isDark());
+        assertTrue(decoded.get(1).isDark());
+    }
+
+    @Test
+    public void emptySeries_decodeToEmptyLists() throws IOException {
+        assertTrue(SensorSeriesCodec.decodeMovement(new SensorSeriesCodec.MovementEncoder().encode()).isEmpty());
+        assertTrue(SensorSeriesCodec.decodeLight(new SensorSeriesCodec.LightEncoder().encode()).isEmpty());
+    }
+
+    @Test
+    public void unknownVersion_isRefused() {
+        byte[] data = movementBlob();
+        data[0] = (byte) (SensorSeriesCodec.FORMAT_VERSION + 1);
+        assertThrows(IOException.class, () -> SensorSeriesCodec.decodeMovement(data));
+    }
+
+    @Test
+    public void wrongKind_isRefused() {
+        byte[] data = movementBlob();
+        assertThrows(IOException.class, () -> SensorSeriesCodec.decodeLight(data));
+    }
+
+    @Test
+    public void truncatedOrCorruptBlobs_areRefused() {
+        byte[] data = movementBlob();
+        assertThrows(IOException.class, () -> SensorSeriesCodec.decodeMovement(null));
+        assertThrows(IOException.class, () -> SensorSeriesCodec.decodeMovement(new byte[]{1}));
+        assertThrows(IOException.class, () -> SensorSeriesCodec.decodeMovement(Arrays.copyOf(data, data.length / 2)));
+
+        byte[] garbage = data.clone();
+        for (int i = 2; i < garbage.length; i++) {
+            garbage[i] = (byte) 0xFF;
+        }
+        assertThrows(IOException.class, () -> SensorSeriesCodec.decodeMovement(garbage));
+    }
+
+    @Test
+    public void hourOfRestingSamples_staysAFewBytesPerSample() {
+        // 1 Hz for an hour, phone on the mattress: gravity on z, small noise and the odd movement
+        Random random = new Random(13);
+        SensorSeriesCodec.MovementEncoder encoder = new SensorSeriesCodec.MovementEncoder();
+        int samples = 3600;
+        for (int i = 0; i < samples; i++) {
+            boolean moving = random.nextInt(60) == 0;
+            float noise = moving ? 1.5f : 0.02f;
+            float x = 0.3f + noise * (float) random.nextGaussian();
+            float y = -0.2f + noise * (float) random.nextGaussian();
+            float z = 9.79f + noise * (float) random.nextGaussian();
+            encoder.add(START + i * 1000L + random.nextInt(3) - 1, x, y, z, Math.abs(noise * (float) random.nextGaussian()));
+        }
+        int size = encoder.encode().length;
+        assertTrue("Encoded an hour into " + size + " bytes", size < samples * 3);
+    }
+
+    private static byte[] movementBlob() {
+        SensorSeriesCodec.MovementEncoder encoder = new SensorSeriesCodec.MovementEncoder();
+        Random random = new Random(14);
+        for (int i = 0; i < 200; i++) {
+            encoder.add(START + i * 1000L, (float) random.nextGaussian(), (float) random.nextGaussian(),
+                    9.81f + (float) random.nextGaussian(), (float) Math.abs(random.nextGaussian()));
+        }
+        return encoder.encode();
+    }
+}